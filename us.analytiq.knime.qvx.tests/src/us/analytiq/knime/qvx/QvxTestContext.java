@@ -0,0 +1,83 @@
+package us.analytiq.knime.qvx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.container.ContainerTable;
+import org.knime.core.node.DefaultNodeProgressMonitor;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.Node;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.workflow.SingleNodeContainer;
+
+import us.analytiq.knime.qvx.reader.QvxReaderNodeFactory;
+
+/**
+ * Helpers shared by the tests of the reader and the writer: an execution context outside of a
+ * workflow, temporary directories, and tables turned into lines of text that can be compared.
+ */
+public final class QvxTestContext {
+
+	private QvxTestContext() {
+		// Hides the implicit public constructor
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static ExecutionContext createExecutionContext() {
+
+		NodeFactory<NodeModel> factory = (NodeFactory)new QvxReaderNodeFactory();
+		return new ExecutionContext(new DefaultNodeProgressMonitor(), new Node(factory),
+				SingleNodeContainer.MemoryPolicy.CacheSmallInMemory, new HashMap<Integer, ContainerTable>());
+	}
+
+	public static List<String> toLines(DataTable table) {
+
+		// One line for the column names and types, then one line per row with its key and cells
+		List<String> lines = new ArrayList<String>();
+		DataTableSpec spec = table.getDataTableSpec();
+		StringBuilder line = new StringBuilder();
+		for(int i = 0; i < spec.getNumColumns(); i++) {
+			line.append(spec.getColumnSpec(i).getName()).append(':').append(spec.getColumnSpec(i).getType()).append('|');
+		}
+		lines.add(line.toString());
+		for(DataRow row : table) {
+			lines.add(toLine(row));
+		}
+		return lines;
+	}
+
+	public static String toLine(DataRow row) {
+
+		StringBuilder line = new StringBuilder();
+		line.append(row.getKey()).append('|');
+		for(DataCell cell : row) {
+			line.append(cell.isMissing() ? "?" : cell.toString()).append('|');
+		}
+		return line.toString();
+	}
+
+	public static Path createDirectory(String prefix) throws IOException {
+		return Files.createTempDirectory(prefix);
+	}
+
+	public static void delete(Path directory) {
+
+		File[] files = directory.toFile().listFiles();
+		if (files != null) {
+			for(File file : files) {
+				file.delete();
+			}
+		}
+		directory.toFile().delete();
+	}
+}
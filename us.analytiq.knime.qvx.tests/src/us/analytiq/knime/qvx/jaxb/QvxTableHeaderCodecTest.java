@@ -0,0 +1,145 @@
+package us.analytiq.knime.qvx.jaxb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.datatype.DatatypeFactory;
+
+import org.junit.Test;
+
+import us.analytiq.knime.qvx.jaxb.QvxTableHeader.Fields.QvxFieldHeader;
+
+/**
+ * Writes table headers and reads them back, reads the headers of the sample files, and reads headers
+ * with values the codec does not know.
+ */
+public class QvxTableHeaderCodecTest {
+
+	private static final String[] SAMPLE_FILES = {"/us/analytiq/knime/qvx/reader/products.qvx",
+			"/us/analytiq/knime/qvx/reader/Customer.qvx"};
+
+	@Test
+	public void testHeaderReadsBack() throws Exception {
+
+		QvxTableHeader header = new QvxTableHeader();
+		header.setMajorVersion(BigInteger.ONE);
+		header.setMinorVersion(BigInteger.ZERO);
+		header.setCreateUtcTime(DatatypeFactory.newInstance().newXMLGregorianCalendar("2020-02-29T12:34:56"));
+		header.setTableName("Sales & <returns>");
+		header.setUsesSeparatorByte(Boolean.TRUE);
+		header.setBlockSize(BigInteger.ONE);
+		header.setFields(new QvxTableHeader.Fields());
+
+		QvxFieldHeader amount = new QvxFieldHeader();
+		amount.setFieldName("amount");
+		amount.setType(QvxFieldType.QVX_SIGNED_INTEGER);
+		amount.setExtent(QvxFieldExtent.QVX_FIX);
+		amount.setNullRepresentation(QvxNullRepresentation.QVX_NULL_FLAG_SUPPRESS_DATA);
+		amount.setBigEndian(Boolean.FALSE);
+		amount.setByteWidth(BigInteger.valueOf(8));
+		amount.setFixPointDecimals(BigInteger.valueOf(2));
+		FieldAttributes money = new FieldAttributes();
+		money.setType(FieldAttrType.MONEY);
+		money.setNDec(BigInteger.valueOf(2));
+		money.setUseThou(BigInteger.ONE);
+		money.setFmt("#,##0.00");
+		money.setDec(".");
+		money.setThou(",");
+		amount.setFieldFormat(money);
+		header.getFields().getQvxFieldHeader().add(amount);
+
+		QvxFieldHeader city = new QvxFieldHeader();
+		city.setFieldName("city \u00FC\u4E00");
+		city.setType(QvxFieldType.QVX_TEXT);
+		city.setExtent(QvxFieldExtent.QVX_ZERO_TERMINATED);
+		city.setNullRepresentation(QvxNullRepresentation.QVX_NULL_NEVER);
+		city.setCodePage(BigInteger.valueOf(1200));
+		header.getFields().getQvxFieldHeader().add(city);
+
+		byte[] bytes = write(header);
+		QvxTableHeader read = QvxTableHeaderCodec.read(new ByteArrayInputStream(bytes));
+		assertEquals(new String(bytes, StandardCharsets.UTF_8), new String(write(read), StandardCharsets.UTF_8));
+
+		assertEquals("Sales & <returns>", read.getTableName());
+		assertEquals(2, read.getFields().getQvxFieldHeader().size());
+		QvxFieldHeader readAmount = read.getFields().getQvxFieldHeader().get(0);
+		assertEquals(QvxFieldType.QVX_SIGNED_INTEGER, readAmount.getType());
+		assertEquals(BigInteger.valueOf(2), readAmount.getFixPointDecimals());
+		assertEquals(FieldAttrType.MONEY, readAmount.getFieldFormat().getType());
+		assertEquals("#,##0.00", readAmount.getFieldFormat().getFmt());
+		QvxFieldHeader readCity = read.getFields().getQvxFieldHeader().get(1);
+		assertEquals("city \u00FC\u4E00", readCity.getFieldName());
+		assertEquals(BigInteger.valueOf(1200), readCity.getCodePage());
+		assertNull(readCity.getByteWidth());
+		assertNull(readCity.getFieldFormat());
+	}
+
+	@Test
+	public void testHeadersOfTheSampleFiles() throws Exception {
+
+		for(String name : SAMPLE_FILES) {
+			byte[] headerBytes = readHeaderBytes(name);
+			QvxTableHeader header = QvxTableHeaderCodec.read(new ByteArrayInputStream(headerBytes));
+			assertTrue(name, header.getFields().getQvxFieldHeader().size() > 0);
+			for(QvxFieldHeader fieldHeader : header.getFields().getQvxFieldHeader()) {
+				assertTrue(name, fieldHeader.getFieldName() != null && fieldHeader.getType() != null);
+			}
+			byte[] written = write(header);
+			assertEquals(name, new String(written, StandardCharsets.UTF_8),
+					new String(write(QvxTableHeaderCodec.read(new ByteArrayInputStream(written))), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void testUnknownElementsAndValues() throws Exception {
+
+		// Unknown elements are skipped with what they contain, and values that cannot be parsed are null
+		String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><QvxTableHeader>"
+				+ "<MajorVersion>+1</MajorVersion><Comment><Fields><QvxFieldHeader/></Fields></Comment>"
+				+ "<TableName>t</TableName><UsesSeparatorByte>1</UsesSeparatorByte><BlockSize>one</BlockSize>"
+				+ "<CreateUtcTime>yesterday</CreateUtcTime><Fields><Note>n</Note><QvxFieldHeader>"
+				+ "<FieldName>f</FieldName><Type>QVX_SOMETHING</Type><Extent>QVX_FIX</Extent>"
+				+ "<BigEndian>maybe</BigEndian><Unknown><a>1</a></Unknown><ByteWidth>4</ByteWidth>"
+				+ "</QvxFieldHeader></Fields></QvxTableHeader>";
+		QvxTableHeader header = QvxTableHeaderCodec.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+		assertEquals(BigInteger.ONE, header.getMajorVersion());
+		assertEquals("t", header.getTableName());
+		assertEquals(Boolean.TRUE, header.isUsesSeparatorByte());
+		assertNull(header.getBlockSize());
+		assertNull(header.getCreateUtcTime());
+		assertEquals(1, header.getFields().getQvxFieldHeader().size());
+		QvxFieldHeader fieldHeader = header.getFields().getQvxFieldHeader().get(0);
+		assertEquals("f", fieldHeader.getFieldName());
+		assertNull(fieldHeader.getType());
+		assertEquals(QvxFieldExtent.QVX_FIX, fieldHeader.getExtent());
+		assertNull(fieldHeader.isBigEndian());
+		assertEquals(BigInteger.valueOf(4), fieldHeader.getByteWidth());
+	}
+
+	private static byte[] write(QvxTableHeader header) throws Exception {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		QvxTableHeaderCodec.write(header, out);
+		return out.toByteArray();
+	}
+
+	private static byte[] readHeaderBytes(String name) throws IOException {
+
+		// The bytes of the file up to the zero byte that ends the header
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		try (InputStream in = QvxTableHeaderCodecTest.class.getResourceAsStream(name)) {
+			for(int b = in.read(); b > 0; b = in.read()) {
+				header.write(b);
+			}
+		}
+		return header.toByteArray();
+	}
+}
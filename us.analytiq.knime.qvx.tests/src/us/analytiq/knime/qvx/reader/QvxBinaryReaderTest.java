@@ -0,0 +1,313 @@
+package us.analytiq.knime.qvx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.RowIterator;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.ExecutionContext;
+
+import us.analytiq.knime.qvx.QvxTestContext;
+
+/**
+ * Reads the sample files, and files made up for the test, with the sequential decoder and with each
+ * of the other ways of decoding them, which must all return the same rows.
+ */
+public class QvxBinaryReaderTest {
+
+	private static final String[] SAMPLE_FILES = {"products.qvx", "Customer.qvx"};
+	private static final int FALSE_SEPARATOR_RECORDS = 1000000; //About 21 MB, enough for two chunks of 8 MB
+
+	private static ExecutionContext exec;
+	private static Path directory;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+
+		exec = QvxTestContext.createExecutionContext();
+		directory = QvxTestContext.createDirectory("qvx-reader-test");
+		for(String name : SAMPLE_FILES) {
+			try (InputStream in = QvxBinaryReaderTest.class.getResourceAsStream(name)) {
+				Files.copy(in, directory.resolve(name));
+			}
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		QvxTestContext.delete(directory);
+	}
+
+	@Test
+	public void testDecodersReadTheSameRows() throws Exception {
+
+		for(String name : SAMPLE_FILES) {
+			String fileName = directory.resolve(name).toString();
+			List<String> expected = QvxTestContext.toLines(read(fileName, settings -> {}));
+
+			assertEquals(name + " memory-mapped", expected,
+					QvxTestContext.toLines(read(fileName, settings -> settings.setMemoryMapped(true))));
+			assertEquals(name + " in parallel", expected, QvxTestContext.toLines(read(fileName, settings -> {
+				settings.setMemoryMapped(true);
+				settings.setParallel(true);
+			})));
+			assertEquals(name + " read ahead", expected,
+					QvxTestContext.toLines(read(fileName, settings -> settings.setPipelined(true))));
+
+			//The first read builds the index and the second one uses it
+			for(int i = 0; i < 2; i++) {
+				assertEquals(name + " with a record index", expected,
+						QvxTestContext.toLines(read(fileName, settings -> settings.setRecordIndex(true))));
+			}
+			assertEquals(name + " from an offset with a record index",
+					QvxTestContext.toLines(read(fileName, settings -> settings.setRowOffset(3))),
+					QvxTestContext.toLines(read(fileName, settings -> {
+						settings.setRecordIndex(true);
+						settings.setRowOffset(3);
+					})));
+		}
+	}
+
+	@Test
+	public void testStreamedRowsAreTheSame() throws Exception {
+
+		// Streaming chooses the column types differently, so it is compared with itself
+		for(String name : SAMPLE_FILES) {
+			String fileName = directory.resolve(name).toString();
+			List<String> expected = QvxTestContext.toLines(read(fileName, settings -> settings.setStreaming(true)));
+
+			assertEquals(name + " streamed and read ahead", expected, QvxTestContext.toLines(read(fileName, settings -> {
+				settings.setStreaming(true);
+				settings.setPipelined(true);
+			})));
+			QvxFileTable table = new QvxFileTable(fileName);
+			assertEquals(name + " as a QvxFileTable", expected, QvxTestContext.toLines(table));
+			table.dispose();
+		}
+	}
+
+	@Test
+	public void testCompressedFilesReadTheSameRows() throws Exception {
+
+		for(String name : SAMPLE_FILES) {
+			Path file = directory.resolve(name);
+			Path compressedFile = directory.resolve(name + ".gz");
+			try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressedFile))) {
+				Files.copy(file, out);
+			}
+			assertEquals(name + " compressed", QvxTestContext.toLines(read(file.toString(), settings -> {})),
+					QvxTestContext.toLines(read(compressedFile.toString(), settings -> settings.setParallel(true))));
+		}
+	}
+
+	@Test
+	public void testParallelChunksSkipFalseSeparators() throws Exception {
+
+		/* The values are full of separator bytes, so the chunk boundaries that are searched for land
+		 * inside of a record. Chunks are only decoded in parallel with more than one processor
+		 */
+		Path file = directory.resolve("separators.qvx");
+		writeFalseSeparatorFile(file);
+		String fileName = file.toString();
+		BufferedDataTable expected = read(fileName, settings -> {});
+		assertEquals(FALSE_SEPARATOR_RECORDS, expected.size());
+
+		assertSameRows(expected, read(fileName, settings -> settings.setParallel(true)));
+		assertSameRows(expected, read(fileName, settings -> {
+			settings.setParallel(true);
+			settings.setMemoryMapped(true);
+		}));
+	}
+
+	@Test
+	public void testOffsetLimitAndStep() throws Exception {
+
+		for(String name : SAMPLE_FILES) {
+			String fileName = directory.resolve(name).toString();
+			// In streaming mode the column types come from the table header, whichever records are read
+			List<String> all = QvxTestContext.toLines(read(fileName, settings -> settings.setStreaming(true)));
+			int numRecords = all.size() - 1;
+			int[][] selections = {{3, 0, 1}, {0, 5, 1}, {0, 0, 7}, {2, 4, 3}, {numRecords - 1, 0, 1},
+					{numRecords, 0, 1}, {numRecords + 10, 0, 1}, {1, 0, numRecords}};
+			for(int[] selection : selections) {
+				String message = name + " from " + selection[0] + ", at most " + selection[1] + ", every "
+						+ selection[2];
+				List<String> expected = select(all, selection[0], selection[1], selection[2]);
+				Consumer<QvxReaderNodeSettings> options = settings -> {
+					settings.setStreaming(true);
+					settings.setRowOffset(selection[0]);
+					settings.setRowLimit(selection[1]);
+					settings.setRowStep(selection[2]);
+				};
+				assertRows(message, expected, QvxTestContext.toLines(read(fileName, options)));
+				assertRows(message + " with a record index", expected,
+						QvxTestContext.toLines(read(fileName, options.andThen(settings -> settings.setRecordIndex(true)))));
+			}
+		}
+	}
+
+	@Test
+	public void testRecordsOfTheSameLengthAreSkipped() throws Exception {
+
+		// Without separators or null flags every record has the same length, so skipping only seeks
+		Path file = directory.resolve("fixed.qvx");
+		String fieldHeaders = (QvxTestFiles.fieldHeader("a", "QVX_SIGNED_INTEGER", "QVX_FIX", 4)
+				+ QvxTestFiles.fieldHeader("b", "QVX_IEEE_REAL", "QVX_FIX", 8))
+				.replace("QVX_NULL_FLAG_SUPPRESS_DATA", "QVX_NULL_NEVER");
+		ByteBuffer record = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+		QvxTestFiles.write(file, false, fieldHeaders, out -> {
+			for(int i = 0; i < 1000; i++) {
+				record.clear();
+				out.write(record.putInt(i).putDouble(i / 4.0).array());
+			}
+		});
+		String fileName = file.toString();
+		List<String> all = QvxTestContext.toLines(read(fileName, settings -> {}));
+		assertEquals(1001, all.size());
+		assertRows("From 990", select(all, 990, 0, 1), QvxTestContext.toLines(read(fileName,
+				settings -> settings.setRowOffset(990))));
+		assertRows("Every 99th from 5", select(all, 5, 0, 99), QvxTestContext.toLines(read(fileName, settings -> {
+			settings.setRowOffset(5);
+			settings.setRowStep(99);
+		})));
+		assertRows("Past the end", select(all, 1000, 0, 1), QvxTestContext.toLines(read(fileName,
+				settings -> settings.setRowOffset(5000))));
+	}
+
+	@Test
+	public void testSelectedColumns() throws Exception {
+
+		for(String name : SAMPLE_FILES) {
+			String fileName = directory.resolve(name).toString();
+			BufferedDataTable all = read(fileName, settings -> {});
+			DataTableSpec spec = all.getDataTableSpec();
+			int last = spec.getNumColumns() - 1;
+			String lastName = spec.getColumnSpec(last).getName();
+			String firstName = spec.getColumnSpec(0).getName();
+
+			// Columns keep the order of the fields in the file, whatever order they are given in
+			assertEquals(name, project(all, last), QvxTestContext.toLines(read(fileName,
+					settings -> settings.setColumns(lastName))));
+			assertEquals(name, project(all, 0, last), QvxTestContext.toLines(read(fileName,
+					settings -> settings.setColumns(" " + lastName + " , " + firstName + ","))));
+			assertEquals(name + " in parallel", project(all, 0, last), QvxTestContext.toLines(read(fileName, settings -> {
+				settings.setColumns(firstName + "," + lastName);
+				settings.setMemoryMapped(true);
+				settings.setParallel(true);
+			})));
+			assertEquals(name + " streamed", project(read(fileName, settings -> settings.setStreaming(true)), last),
+					QvxTestContext.toLines(read(fileName, settings -> {
+						settings.setColumns(lastName);
+						settings.setStreaming(true);
+					})));
+			try {
+				read(fileName, settings -> settings.setColumns(firstName + ",no such field"));
+				fail(name + ": a field that is not in the file was read");
+			}catch (RuntimeException e) {
+				// Expected
+			}
+		}
+	}
+
+	private static List<String> project(DataTable table, int... columns) {
+
+		// The lines of "table" with only the given columns
+		List<String> lines = new ArrayList<String>();
+		DataTableSpec spec = table.getDataTableSpec();
+		StringBuilder line = new StringBuilder();
+		for(int column : columns) {
+			line.append(spec.getColumnSpec(column).getName()).append(':').append(spec.getColumnSpec(column).getType())
+					.append('|');
+		}
+		lines.add(line.toString());
+		for(DataRow row : table) {
+			DataCell[] cells = new DataCell[columns.length];
+			for(int i = 0; i < columns.length; i++) {
+				cells[i] = row.getCell(columns[i]);
+			}
+			lines.add(QvxTestContext.toLine(new DefaultRow(row.getKey(), cells)));
+		}
+		return lines;
+	}
+
+	private static List<String> select(List<String> lines, int offset, int limit, int step) {
+
+		// The rows that offset, limit and step select from the rows of "lines", which start at its second line
+		List<String> rows = new ArrayList<String>();
+		for(int i = 1 + offset; i < lines.size() && (limit == 0 || rows.size() < limit); i += step) {
+			rows.add(lines.get(i));
+		}
+		return rows;
+	}
+
+	private static void assertRows(String message, List<String> expected, List<String> lines) {
+
+		// Column types are chosen from the values that are read, so only the rows are compared
+		assertEquals(message, expected, lines.subList(1, lines.size()));
+	}
+
+	private static BufferedDataTable read(String fileName, Consumer<QvxReaderNodeSettings> options) throws Exception {
+
+		QvxReaderNodeSettings settings = new QvxReaderNodeSettings();
+		settings.setFileName(fileName);
+		options.accept(settings);
+		return new QvxBinaryReader().readQvx(settings, exec)[0];
+	}
+
+	private static void assertSameRows(DataTable expected, DataTable actual) {
+
+		// Compares the rows one at a time, since the tables are large
+		RowIterator expectedRows = expected.iterator();
+		RowIterator actualRows = actual.iterator();
+		for(long i = 0; expectedRows.hasNext(); i++) {
+			assertEquals("Row " + i, QvxTestContext.toLine(expectedRows.next()), QvxTestContext.toLine(actualRows.next()));
+		}
+		assertFalse("More rows than expected", actualRows.hasNext());
+	}
+
+	private static void writeFalseSeparatorFile(Path file) throws IOException {
+
+		String fieldHeaders = QvxTestFiles.fieldHeader("text", "QVX_TEXT", "QVX_ZERO_TERMINATED", 0)
+				+ QvxTestFiles.fieldHeader("number", "QVX_SIGNED_INTEGER", "QVX_FIX", 4);
+		ByteBuffer number = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+		QvxTestFiles.write(file, true, fieldHeaders, out -> {
+			for(int i = 0; i < FALSE_SEPARATOR_RECORDS; i++) {
+				out.write(QvxTestFiles.RECORD_SEPARATOR);
+				if (i % 5 == 0) {
+					out.write(1); //Null
+				}else {
+					out.write(0);
+					out.write(("\u001E" + i + "\u001E\u001C\u001E value").getBytes(StandardCharsets.US_ASCII));
+					out.write(0);
+				}
+				//The last byte of each record is a false separator, right before the real one
+				out.write(0);
+				number.clear();
+				out.write(number.putInt(0x1E000000 | i).array());
+			}
+			out.write(QvxTestFiles.FILE_SEPARATOR);
+		});
+	}
+}
@@ -0,0 +1,147 @@
+package us.analytiq.knime.qvx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.ExecutionContext;
+
+import us.analytiq.knime.qvx.QvxTestContext;
+
+/**
+ * Decodes text in the code pages of qvx fields, and reads zero-terminated text in single-byte and
+ * UTF-16 code pages from a file.
+ */
+public class QvxCodePageTest {
+
+	private static final String[] VALUES = {"Z\u00FCrich", "ASCII only", "\u0100\u0101 \u4E00"};
+
+	private static ExecutionContext exec;
+	private static Path directory;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+
+		exec = QvxTestContext.createExecutionContext();
+		directory = QvxTestContext.createDirectory("qvx-code-page-test");
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		QvxTestContext.delete(directory);
+	}
+
+	@Test
+	public void testTextDecodesLikeTheCharset() {
+
+		assertDecodes(0, "Z\u00FCrich \u4E00");
+		assertDecodes(65001, "Z\u00FCrich \u4E00");
+		assertDecodes(1252, "Z\u00FCrich caf\u00E9 \u20AC");
+		assertDecodes(1251, "\u041C\u043E\u0441\u043A\u0432\u0430");
+		assertDecodes(28591, "Z\u00FCrich");
+		assertDecodes(28592, "\u0141\u00F3d\u017A");
+		assertDecodes(20127, "ASCII only");
+		assertDecodes(1200, "Z\u00FCrich \u4E00");
+		assertDecodes(1201, "Z\u00FCrich \u4E00");
+	}
+
+	@Test
+	public void testEveryByteOfASingleByteCodePage() {
+
+		// The copy of ASCII text must not change how the other bytes are decoded
+		byte[] bytes = new byte[256];
+		for(int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte)i;
+		}
+		for(int codePage : new int[] {1252, 28591, 28592}) {
+			QvxCodePage decoder = QvxCodePage.forCodePage(codePage);
+			Charset charset = codePage == 1252 ? Charset.forName("windows-1252")
+					: Charset.forName("ISO-8859-" + (codePage - 28590));
+			for(int i = 0; i < bytes.length; i++) {
+				assertEquals("Code page " + codePage + ", byte " + i, new String(bytes, i, 1, charset),
+						decoder.decode(bytes, i, 1));
+			}
+			assertEquals("Code page " + codePage, new String(bytes, charset), decoder.decode(bytes, 0, bytes.length));
+		}
+	}
+
+	@Test
+	public void testTerminatorWidths() {
+
+		assertEquals(2, QvxCodePage.forCodePage(1200).terminatorWidth());
+		assertEquals(2, QvxCodePage.forCodePage(1201).terminatorWidth());
+		assertEquals(1, QvxCodePage.forCodePage(1252).terminatorWidth());
+		assertEquals(1, QvxCodePage.forCodePage(0).terminatorWidth());
+	}
+
+	@Test
+	public void testUnknownCodePagesAreReadAsUtf8() {
+		assertSame(QvxCodePage.UTF_8, QvxCodePage.forCodePage(12345));
+	}
+
+	@Test
+	public void testZeroTerminatedTextInEachCodePage() throws Exception {
+
+		/* In UTF-16, characters such as U+0100 contain a zero byte, which must not end the value; only
+		 * two zero bytes at the start of a character do
+		 */
+		int[] codePages = {1200, 1201, 1252, 65001};
+		StringBuilder fieldHeaders = new StringBuilder();
+		for(int codePage : codePages) {
+			fieldHeaders.append(QvxTestFiles.fieldHeader("cp" + codePage, "QVX_TEXT", "QVX_ZERO_TERMINATED", 0, codePage));
+		}
+		Path file = directory.resolve("code-pages.qvx");
+		QvxTestFiles.write(file, true, fieldHeaders.toString(), out -> {
+			for(int i = 0; i <= VALUES.length; i++) {
+				out.write(QvxTestFiles.RECORD_SEPARATOR);
+				for(int codePage : codePages) {
+					if (i == VALUES.length) {
+						out.write(1); //Null
+						continue;
+					}
+					out.write(0);
+					QvxCodePage decoder = QvxCodePage.forCodePage(codePage);
+					String value = codePage == 1252 ? VALUES[i].replaceAll("[^\\x00-\\xFF]", "?") : VALUES[i];
+					out.write(decoder.encode(value));
+					out.write(new byte[decoder.terminatorWidth()]);
+				}
+			}
+			out.write(QvxTestFiles.FILE_SEPARATOR);
+		});
+
+		QvxReaderNodeSettings settings = new QvxReaderNodeSettings();
+		settings.setFileName(file.toString());
+		BufferedDataTable table = new QvxBinaryReader().readQvx(settings, exec)[0];
+		for(int i = 0; i < codePages.length; i++) {
+			assertEquals(StringCell.TYPE, table.getDataTableSpec().getColumnSpec(i).getType());
+		}
+		List<String> lines = QvxTestContext.toLines(table);
+		assertEquals(Arrays.asList(
+				"Row_0|Z\u00FCrich|Z\u00FCrich|Z\u00FCrich|Z\u00FCrich|",
+				"Row_1|ASCII only|ASCII only|ASCII only|ASCII only|",
+				"Row_2|\u0100\u0101 \u4E00|\u0100\u0101 \u4E00|?? ?|\u0100\u0101 \u4E00|",
+				"Row_3|?|?|?|?|"),
+				lines.subList(1, lines.size()));
+	}
+
+	private static void assertDecodes(int codePage, String text) {
+
+		QvxCodePage decoder = QvxCodePage.forCodePage(codePage);
+		byte[] bytes = decoder.encode(text);
+		assertEquals("Code page " + codePage, text, decoder.decode(bytes, 0, bytes.length));
+		if (codePage == 0 || codePage == 65001) {
+			assertEquals(text, new String(bytes, StandardCharsets.UTF_8));
+		}
+	}
+}
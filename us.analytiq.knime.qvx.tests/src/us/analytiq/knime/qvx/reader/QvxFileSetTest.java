@@ -0,0 +1,207 @@
+package us.analytiq.knime.qvx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.ExecutionContext;
+
+import us.analytiq.knime.qvx.QvxTestContext;
+
+/**
+ * Lists the qvx files of directories and glob patterns, and reads a directory of copies of a sample
+ * file as one table, with records selected across the files.
+ */
+public class QvxFileSetTest {
+
+	private static final String SAMPLE_FILE = "Customer.qvx";
+	private static final int COPIES = 3;
+
+	private static ExecutionContext exec;
+	private static Path directory;
+	private static Path partsDirectory;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+
+		exec = QvxTestContext.createExecutionContext();
+		directory = QvxTestContext.createDirectory("qvx-file-set-test");
+		for(String name : new String[] {"sales_2.qvx", "sales_1.QVX", "sales_3.qvx.gz", "other.qvx",
+				"sales_1.QVX.idx", "sales_2.qvx.idx.tmp", "sales_notes.txt"}) {
+			Files.write(directory.resolve(name), new byte[0]);
+		}
+		Files.createDirectory(directory.resolve("sales_4.qvx"));
+
+		partsDirectory = QvxTestContext.createDirectory("qvx-file-set-parts-test");
+		for(int i = 1; i <= COPIES; i++) {
+			try (InputStream in = QvxFileSetTest.class.getResourceAsStream(SAMPLE_FILE)) {
+				Files.copy(in, partsDirectory.resolve("part" + i + ".qvx"));
+			}
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+
+		directory.resolve("sales_4.qvx").toFile().delete();
+		QvxTestContext.delete(directory);
+		QvxTestContext.delete(partsDirectory);
+	}
+
+	@Test
+	public void testDirectoriesAndPatternsAreFileSets() {
+
+		assertTrue(QvxFileSet.isFileSet(directory.toString()));
+		assertTrue(QvxFileSet.isFileSet(directory.resolve("sales_*").toString()));
+		assertTrue(QvxFileSet.isFileSet(directory.resolve("sales_{1,2}.qvx").toString()));
+		assertFalse(QvxFileSet.isFileSet(directory.resolve("other.qvx").toString()));
+		assertFalse(QvxFileSet.isFileSet(directory.resolve("missing.qvx").toString()));
+		assertFalse(QvxFileSet.isFileSet("http://example.com/sales_*.qvx"));
+		assertFalse(QvxFileSet.isFileSet(""));
+		assertFalse(QvxFileSet.isFileSet(null));
+	}
+
+	@Test
+	public void testQvxFilesAreListedByName() throws Exception {
+
+		// Record index files, other files and directories are left out
+		assertEquals(Arrays.asList("other.qvx", "sales_1.QVX", "sales_2.qvx", "sales_3.qvx.gz"),
+				list(directory.toString()));
+		assertEquals(Arrays.asList("sales_1.QVX", "sales_2.qvx", "sales_3.qvx.gz"),
+				list(directory.resolve("sales_*").toString()));
+		assertEquals(Arrays.asList("sales_2.qvx", "sales_3.qvx.gz"),
+				list(directory.resolve("sales_[23]*").toString()));
+		assertEquals(Arrays.asList("other.qvx", "sales_2.qvx"),
+				list(directory.resolve("{other,sales_2}.qvx").toString()));
+		assertEquals(Arrays.asList("sales_1.QVX"), list(directory.resolve("sales_?.QVX").toString()));
+	}
+
+	@Test
+	public void testNoMatchingFiles() throws Exception {
+
+		for(String fileName : new String[] {directory.resolve("sales_*.txt").toString(),
+				directory.resolve("none_*").toString(), directory.resolve("sales_4.qvx").toString()}) {
+			try {
+				QvxFileSet.list(fileName);
+				fail("Files were found for " + fileName);
+			}catch (FileNotFoundException e) {
+				assertEquals("No qvx files found for " + fileName, e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testRowsOfTheFilesAreConcatenated() throws Exception {
+
+		String sampleFileName = partsDirectory.resolve("part1.qvx").toString();
+		List<String> expected = concatenate(QvxTestContext.toLines(read(sampleFileName, settings -> {})));
+		List<String> lines = QvxTestContext.toLines(read(partsDirectory.toString(), settings -> {}));
+		assertEquals(expected, lines.subList(1, lines.size()));
+		expected = concatenate(QvxTestContext.toLines(read(sampleFileName, settings -> settings.setStreaming(true))));
+		lines = QvxTestContext.toLines(read(partsDirectory.resolve("part*.qvx").toString(),
+				settings -> settings.setStreaming(true)));
+		assertEquals(expected, lines.subList(1, lines.size()));
+
+		// The source column names the file of each row
+		lines = QvxTestContext.toLines(read(partsDirectory.toString(), settings -> settings.setSourceColumn(true)));
+		for(int i = 1; i < lines.size(); i++) {
+			int part = 1 + (i - 1) * COPIES / (lines.size() - 1);
+			assertTrue(lines.get(i), lines.get(i).endsWith("|part" + part + ".qvx|"));
+		}
+	}
+
+	@Test
+	public void testOffsetLimitAndStepCountTheRecordsOfAllFiles() throws Exception {
+
+		String sampleFileName = partsDirectory.resolve("part1.qvx").toString();
+		List<String> all = new ArrayList<String>();
+		all.add("");
+		all.addAll(concatenate(QvxTestContext.toLines(read(sampleFileName, settings -> settings.setStreaming(true)))));
+		int numRecords = all.size() - 1;
+		int fileRecords = numRecords / COPIES;
+		int[][] selections = {{fileRecords - 1, 3, 1}, {0, 0, 7}, {fileRecords + 500, 0, 1000}, {5, 10, 999},
+				{1, fileRecords * 2, 3}, {numRecords - 1, 0, 1}, {numRecords, 0, 1}, {3, 0, numRecords}};
+		for(int[] selection : selections) {
+			String message = "From " + selection[0] + ", at most " + selection[1] + ", every " + selection[2];
+			List<String> expected = select(all, selection[0], selection[1], selection[2]);
+			Consumer<QvxReaderNodeSettings> options = settings -> {
+				settings.setRowOffset(selection[0]);
+				settings.setRowLimit(selection[1]);
+				settings.setRowStep(selection[2]);
+			};
+			List<String> lines = QvxTestContext.toLines(read(partsDirectory.toString(),
+					options.andThen(settings -> settings.setStreaming(true))));
+			assertEquals(message + ", streamed", expected, lines.subList(1, lines.size()));
+
+			// Without streaming, the column types come from the selected values, so only the keys are compared
+			lines = QvxTestContext.toLines(read(partsDirectory.toString(), options));
+			assertEquals(message, keys(expected), keys(lines.subList(1, lines.size())));
+		}
+	}
+
+	private static List<String> concatenate(List<String> lines) {
+
+		// The rows of "lines", which start at its second line, once per copy, with the keys of the copies
+		List<String> rows = new ArrayList<String>();
+		int fileRecords = lines.size() - 1;
+		for(int copy = 0; copy < COPIES; copy++) {
+			for(String line : lines.subList(1, lines.size())) {
+				int key = Integer.parseInt(line.substring("Row_".length(), line.indexOf('|')));
+				rows.add("Row_" + (copy * fileRecords + key) + line.substring(line.indexOf('|')));
+			}
+		}
+		return rows;
+	}
+
+	private static List<String> select(List<String> lines, int offset, int limit, int step) {
+
+		// The rows that offset, limit and step select from the rows of "lines", which start at its second line
+		List<String> rows = new ArrayList<String>();
+		for(int i = 1 + offset; i < lines.size() && (limit == 0 || rows.size() < limit); i += step) {
+			rows.add(lines.get(i));
+		}
+		return rows;
+	}
+
+	private static List<String> keys(List<String> rows) {
+
+		List<String> keys = new ArrayList<String>();
+		for(String row : rows) {
+			keys.add(row.substring(0, row.indexOf('|')));
+		}
+		return keys;
+	}
+
+	private static List<String> list(String fileName) throws FileNotFoundException {
+
+		List<String> names = new ArrayList<String>();
+		for(File file : QvxFileSet.list(fileName)) {
+			names.add(file.getName());
+		}
+		return names;
+	}
+
+	private static BufferedDataTable read(String fileName, Consumer<QvxReaderNodeSettings> options) throws Exception {
+
+		QvxReaderNodeSettings settings = new QvxReaderNodeSettings();
+		settings.setFileName(fileName);
+		options.accept(settings);
+		return new QvxBinaryReader().readQvx(settings, exec)[0];
+	}
+}
@@ -0,0 +1,134 @@
+package us.analytiq.knime.qvx.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import us.analytiq.knime.qvx.reader.QvxTestServer.Validator;
+
+/**
+ * Downloads a file of a few segments from a local web server, in parallel when the server answers
+ * range requests with a strong ETag or a Last-Modified date, and over one connection otherwise.
+ */
+public class QvxHttpChannelTest {
+
+	private static final int FILE_SIZE = 2 * QvxHttpChannel.SEGMENT_SIZE + 12345;
+
+	private static byte[] content;
+	private static byte[] changedContent;
+
+	@BeforeClass
+	public static void setUp() {
+
+		Random random = new Random(42);
+		content = new byte[FILE_SIZE];
+		random.nextBytes(content);
+		changedContent = new byte[FILE_SIZE];
+		random.nextBytes(changedContent);
+	}
+
+	@Test
+	public void testSegmentsAreDownloadedInParallelWithAStrongETag() throws Exception {
+		assertDownloadedInParallel(Validator.STRONG_ETAG, "\"v0\"");
+	}
+
+	@Test
+	public void testSegmentsAreDownloadedInParallelWithLastModified() throws Exception {
+		assertDownloadedInParallel(Validator.LAST_MODIFIED, "Wed, 1 Jan 2020 00:00:00 GMT");
+	}
+
+	@Test
+	public void testWeakOrNoValidatorIsReadOverOneConnection() throws Exception {
+
+		// The first answer is only used for its headers, then the whole file is requested
+		for(Validator validator : new Validator[] {Validator.WEAK_ETAG, Validator.NONE}) {
+			try (QvxTestServer server = new QvxTestServer(content, validator, true)) {
+				assertArrayEquals(validator.name(), content, download(server, true));
+				List<Map<String, String>> requests = server.getRequests();
+				assertEquals(validator.name(), 2, requests.size());
+				assertNull(validator.name(), requests.get(1).get("range"));
+			}
+		}
+	}
+
+	@Test
+	public void testServerWithoutRangesIsReadFromTheFirstAnswer() throws Exception {
+
+		try (QvxTestServer server = new QvxTestServer(content, Validator.STRONG_ETAG, false)) {
+			assertArrayEquals(content, download(server, true));
+			assertEquals(1, server.getRequests().size());
+		}
+	}
+
+	@Test
+	public void testSmallFileAndSequentialReadsUseOneRequest() throws Exception {
+
+		byte[] small = new byte[1000];
+		new Random(7).nextBytes(small);
+		try (QvxTestServer server = new QvxTestServer(small, Validator.STRONG_ETAG, true)) {
+			assertArrayEquals(small, download(server, true));
+			assertEquals(1, server.getRequests().size());
+		}
+		try (QvxTestServer server = new QvxTestServer(content, Validator.STRONG_ETAG, true)) {
+			assertArrayEquals(content, download(server, false));
+			assertEquals(1, server.getRequests().size());
+			assertNull(server.getRequests().get(0).get("range"));
+		}
+	}
+
+	@Test
+	public void testFileThatChangesDuringTheDownloadFails() throws Exception {
+
+		for(Validator validator : new Validator[] {Validator.STRONG_ETAG, Validator.LAST_MODIFIED}) {
+			try (QvxTestServer server = new QvxTestServer(content, validator, true)) {
+				server.changeAfter(1, changedContent);
+				try {
+					download(server, true);
+					fail(validator.name() + ": the download of a changed file did not fail");
+				}catch (IOException e) {
+					assertTrue(e.getMessage(), e.getMessage().startsWith("The file changed during the download"));
+				}
+			}
+		}
+	}
+
+	private static void assertDownloadedInParallel(Validator validator, String expectedIfRange) throws Exception {
+
+		try (QvxTestServer server = new QvxTestServer(content, validator, true)) {
+			assertArrayEquals(content, download(server, true));
+			List<Map<String, String>> requests = server.getRequests();
+			assertEquals(3, requests.size());
+			assertEquals("bytes=0-" + (QvxHttpChannel.SEGMENT_SIZE - 1), requests.get(0).get("range"));
+			for(Map<String, String> request : requests.subList(1, requests.size())) {
+				assertTrue(request.get("range"), request.get("range").startsWith("bytes="));
+				assertEquals(expectedIfRange, request.get("if-range"));
+			}
+		}
+	}
+
+	private static byte[] download(QvxTestServer server, boolean parallel) throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ReadableByteChannel channel = QvxHttpChannel.open(server.getUrl("/data/file.qvx"), parallel)) {
+			ByteBuffer buffer = ByteBuffer.allocate(100000);
+			while (channel.read(buffer) >= 0) {
+				out.write(buffer.array(), 0, buffer.position());
+				buffer.clear();
+			}
+		}
+		return out.toByteArray();
+	}
+}
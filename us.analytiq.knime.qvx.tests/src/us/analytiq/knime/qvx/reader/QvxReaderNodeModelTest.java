@@ -0,0 +1,173 @@
+package us.analytiq.knime.qvx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeSettings;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowOutput;
+
+import us.analytiq.knime.qvx.QvxTestContext;
+
+/**
+ * Runs the streamable operator of the reader node, as the streaming executor does, and compares the
+ * rows it pushes to those of a streamed read of the same file.
+ */
+public class QvxReaderNodeModelTest {
+
+	private static final String[] SAMPLE_FILES = {"products.qvx", "Customer.qvx"};
+
+	private static ExecutionContext exec;
+	private static Path directory;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+
+		exec = QvxTestContext.createExecutionContext();
+		directory = QvxTestContext.createDirectory("qvx-reader-node-test");
+		for(String name : SAMPLE_FILES) {
+			try (InputStream in = QvxReaderNodeModelTest.class.getResourceAsStream(name)) {
+				Files.copy(in, directory.resolve(name));
+			}
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		QvxTestContext.delete(directory);
+	}
+
+	@Test
+	public void testOperatorPushesTheRowsOfAStreamedRead() throws Exception {
+
+		for(String name : SAMPLE_FILES) {
+			String fileName = directory.resolve(name).toString();
+			QvxReaderNodeModel model = createModel(fileName, settings -> {});
+			List<String> expected = QvxTestContext.toLines(read(fileName, settings -> {}));
+			assertPushedRows(name, expected, model);
+		}
+	}
+
+	@Test
+	public void testOperatorAppliesTheSettings() throws Exception {
+
+		String fileName = directory.resolve("Customer.qvx").toString();
+		Consumer<QvxReaderNodeSettings> options = settings -> {
+			settings.setRowOffset(10);
+			settings.setRowLimit(100);
+			settings.setRowStep(3);
+			settings.setColumns("Cust_ID, ZIP");
+			settings.setRowFilter("ZIP >= 10000");
+			settings.setSourceColumn(true);
+		};
+		QvxReaderNodeModel model = createModel(fileName, settings -> {
+			settings.addInt(QvxReaderNodeSettings.CFGKEY_ROW_OFFSET, 10);
+			settings.addInt(QvxReaderNodeSettings.CFGKEY_ROW_LIMIT, 100);
+			settings.addInt(QvxReaderNodeSettings.CFGKEY_ROW_STEP, 3);
+			settings.addString(QvxReaderNodeSettings.CFGKEY_COLUMNS, "Cust_ID, ZIP");
+			settings.addString(QvxReaderNodeSettings.CFGKEY_ROW_FILTER, "ZIP >= 10000");
+			settings.addBoolean(QvxReaderNodeSettings.CFGKEY_SOURCE_COLUMN, true);
+		});
+		assertPushedRows("Customer.qvx", QvxTestContext.toLines(read(fileName, options)), model);
+	}
+
+	@Test
+	public void testOperatorReadsTheFilesOfADirectory() throws Exception {
+
+		Path parts = QvxTestContext.createDirectory("qvx-reader-node-parts-test");
+		try {
+			for(String name : new String[] {"part1.qvx", "part2.qvx"}) {
+				Files.copy(directory.resolve("Customer.qvx"), parts.resolve(name));
+			}
+			QvxReaderNodeModel model = createModel(parts.toString(), settings -> {});
+			assertPushedRows("Directory", QvxTestContext.toLines(read(parts.toString(), settings -> {})), model);
+		}finally {
+			QvxTestContext.delete(parts);
+		}
+	}
+
+	@Test
+	public void testOperatorNeedsStreaming() throws Exception {
+
+		// Without streaming, the column types are only known once the file has been read
+		QvxReaderNodeModel model = createModel(directory.resolve("products.qvx").toString(),
+				settings -> settings.addBoolean(QvxReaderNodeSettings.CFGKEY_STREAMING, false));
+		assertNull(model.configure(new DataTableSpec[0])[0]);
+		try {
+			model.createStreamableOperator(new PartitionInfo(0, 1), new PortObjectSpec[0]);
+			fail("An operator was created without streaming");
+		}catch (InvalidSettingsException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Stream records into the output table"));
+		}
+	}
+
+	private static void assertPushedRows(String message, List<String> expected, QvxReaderNodeModel model)
+			throws Exception {
+
+		// The operator pushes rows of the spec that configure() publishes, and closes the output
+		assertTrue(message + ": no rows to compare", expected.size() > 1);
+		DataTableSpec spec = model.configure(new DataTableSpec[0])[0];
+		List<String> lines = new ArrayList<String>();
+		boolean[] closed = new boolean[1];
+		RowOutput output = new RowOutput() {
+			@Override
+			public void push(DataRow row) {
+				assertEquals(message, spec.getNumColumns(), row.getNumCells());
+				lines.add(QvxTestContext.toLine(row));
+			}
+
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		};
+		model.createStreamableOperator(new PartitionInfo(0, 1), new PortObjectSpec[0])
+				.runFinal(new PortInput[0], new PortOutput[] {output}, exec);
+		assertTrue(message, closed[0]);
+		assertEquals(message, expected.subList(1, expected.size()), lines);
+	}
+
+	private static QvxReaderNodeModel createModel(String fileName, Consumer<NodeSettings> options)
+			throws InvalidSettingsException {
+
+		QvxReaderNodeModel model = new QvxReaderNodeModel();
+		NodeSettings settings = new NodeSettings("reader");
+		model.saveSettingsTo(settings);
+		settings.addString(QvxReaderNodeModel.CFGKEY_FILE_PATH, fileName);
+		settings.addBoolean(QvxReaderNodeSettings.CFGKEY_STREAMING, true);
+		options.accept(settings);
+		model.validateSettings(settings);
+		model.loadValidatedSettingsFrom(settings);
+		return model;
+	}
+
+	private static BufferedDataTable read(String fileName, Consumer<QvxReaderNodeSettings> options) throws Exception {
+
+		QvxReaderNodeSettings settings = new QvxReaderNodeSettings();
+		settings.setFileName(fileName);
+		settings.setStreaming(true);
+		options.accept(settings);
+		return new QvxBinaryReader().readQvx(settings, exec)[0];
+	}
+}
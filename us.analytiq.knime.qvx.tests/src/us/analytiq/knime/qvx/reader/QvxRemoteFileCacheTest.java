@@ -0,0 +1,162 @@
+package us.analytiq.knime.qvx.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import us.analytiq.knime.qvx.reader.QvxTestServer.Validator;
+
+/**
+ * Downloads files from a local web server to the cache, and checks that unchanged files are not
+ * downloaded again, changed ones are, and the least recently used copies that are not in use are
+ * removed once the copies take more than the maximum size.
+ */
+public class QvxRemoteFileCacheTest {
+
+	private static final long MAX_SIZE = 1L << 30;
+
+	private static final List<File> copies = new ArrayList<File>();
+
+	@AfterClass
+	public static void tearDown() {
+
+		for(File copy : copies) {
+			copy.delete();
+			new File(copy.getParentFile(), copy.getName().replace(".qvx", ".meta")).delete();
+		}
+	}
+
+	@Test
+	public void testUnchangedFileIsNotDownloadedAgain() throws Exception {
+
+		byte[] content = createContent(1, 5000);
+		for(Validator validator : new Validator[] {Validator.STRONG_ETAG, Validator.WEAK_ETAG, Validator.LAST_MODIFIED}) {
+			try (QvxTestServer server = new QvxTestServer(content, validator, false)) {
+				URL url = server.getUrl("/unchanged.qvx");
+				File copy = getAndRelease(url, MAX_SIZE);
+				assertArrayEquals(validator.name(), content, Files.readAllBytes(copy.toPath()));
+				long downloaded = copy.lastModified();
+
+				assertEquals(validator.name(), copy, getAndRelease(url, MAX_SIZE));
+				assertEquals(validator.name(), downloaded, copy.lastModified());
+				List<Map<String, String>> requests = server.getRequests();
+				assertEquals(validator.name(), 2, requests.size());
+				if (validator == Validator.LAST_MODIFIED) {
+					assertNotNull(validator.name(), requests.get(1).get("if-modified-since"));
+				}else {
+					assertEquals(validator.name(), validator == Validator.STRONG_ETAG ? "\"v0\"" : "W/\"v0\"",
+							requests.get(1).get("if-none-match"));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testChangedFileIsDownloadedAgain() throws Exception {
+
+		byte[] content = createContent(2, 5000);
+		byte[] changedContent = createContent(3, 6000);
+		try (QvxTestServer server = new QvxTestServer(content, Validator.STRONG_ETAG, false)) {
+			URL url = server.getUrl("/changed.qvx");
+			File copy = getAndRelease(url, MAX_SIZE);
+			server.setContent(changedContent);
+			assertEquals(copy, getAndRelease(url, MAX_SIZE));
+			assertArrayEquals(changedContent, Files.readAllBytes(copy.toPath()));
+			assertEquals("\"v0\"", server.getRequests().get(1).get("if-none-match"));
+			assertEquals(copy, getAndRelease(url, MAX_SIZE));
+			assertEquals("\"v1\"", server.getRequests().get(2).get("if-none-match"));
+		}
+	}
+
+	@Test
+	public void testChangedFileIsNotReplacedWhileItsCopyIsInUse() throws Exception {
+
+		byte[] content = createContent(4, 5000);
+		byte[] changedContent = createContent(5, 5000);
+		try (QvxTestServer server = new QvxTestServer(content, Validator.STRONG_ETAG, false)) {
+			URL url = server.getUrl("/in-use.qvx");
+			File copy = get(url, MAX_SIZE);
+			server.setContent(changedContent);
+			assertNull(QvxRemoteFileCache.get(url, MAX_SIZE, true));
+			assertArrayEquals(content, Files.readAllBytes(copy.toPath()));
+			QvxRemoteFileCache.release(copy);
+			assertEquals(copy, getAndRelease(url, MAX_SIZE));
+			assertArrayEquals(changedContent, Files.readAllBytes(copy.toPath()));
+		}
+	}
+
+	@Test
+	public void testFilesThatAreNotCached() throws Exception {
+
+		byte[] content = createContent(6, 5000);
+		try (QvxTestServer server = new QvxTestServer(content, Validator.NONE, false)) {
+			assertNull(QvxRemoteFileCache.get(server.getUrl("/no-validator.qvx"), MAX_SIZE, true));
+		}
+		try (QvxTestServer server = new QvxTestServer(content, Validator.STRONG_ETAG, false)) {
+			assertNull(QvxRemoteFileCache.get(server.getUrl("/too-large.qvx"), content.length - 1, true));
+			assertNull(QvxRemoteFileCache.get(server.getUrl("/not-downloaded.qvx"), MAX_SIZE, false));
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsedCopiesAreRemoved() throws Exception {
+
+		// Each copy takes more than half of the maximum size, so only one fits
+		byte[] content = createContent(7, 5000);
+		long maxSize = 8000;
+		try (QvxTestServer server = new QvxTestServer(content, Validator.STRONG_ETAG, false)) {
+			File first = getAndRelease(server.getUrl("/first.qvx"), maxSize);
+			File second = getAndRelease(server.getUrl("/second.qvx"), maxSize);
+			assertFalse(first.exists());
+			assertTrue(second.exists());
+
+			// A copy in use is kept, even if it is the least recently used one
+			File inUse = get(server.getUrl("/second.qvx"), maxSize);
+			assertEquals(second, inUse);
+			File third = getAndRelease(server.getUrl("/third.qvx"), maxSize);
+			assertTrue(inUse.exists());
+			assertTrue(third.exists());
+			QvxRemoteFileCache.release(inUse);
+			getAndRelease(server.getUrl("/first.qvx"), maxSize);
+			assertFalse(inUse.exists());
+			assertFalse(third.exists());
+		}
+	}
+
+	private static File get(URL url, long maxSize) throws IOException {
+
+		File copy = QvxRemoteFileCache.get(url, maxSize, true);
+		assertNotNull(url.toString(), copy);
+		copies.add(copy);
+		return copy;
+	}
+
+	private static File getAndRelease(URL url, long maxSize) throws IOException {
+
+		File copy = get(url, maxSize);
+		QvxRemoteFileCache.release(copy);
+		return copy;
+	}
+
+	private static byte[] createContent(long seed, int size) {
+
+		byte[] content = new byte[size];
+		new Random(seed).nextBytes(content);
+		return content;
+	}
+}
@@ -0,0 +1,245 @@
+package us.analytiq.knime.qvx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.node.ExecutionContext;
+
+import us.analytiq.knime.qvx.QvxTestContext;
+import us.analytiq.knime.qvx.jaxb.QvxTableHeader.Fields.QvxFieldHeader;
+
+/**
+ * Parses row filters and evaluates them on made-up values, and compares the rows of a file read with
+ * a filter to the rows of the whole file that satisfy it.
+ */
+public class QvxRowFilterTest {
+
+	private static final String SAMPLE_FILE = "Customer.qvx";
+	private static final List<QvxFieldHeader> FIELDS = Arrays.asList(
+			fieldHeader("amount", 0), fieldHeader("region", 0), fieldHeader("e-mail \"work\"", 0),
+			fieldHeader("city", 1252));
+
+	private static ExecutionContext exec;
+	private static Path directory;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+
+		exec = QvxTestContext.createExecutionContext();
+		directory = QvxTestContext.createDirectory("qvx-row-filter-test");
+		try (InputStream in = QvxRowFilterTest.class.getResourceAsStream(SAMPLE_FILE)) {
+			Files.copy(in, directory.resolve(SAMPLE_FILE));
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		QvxTestContext.delete(directory);
+	}
+
+	@Test
+	public void testNumberConditions() {
+
+		assertTrue(accepts("amount = 100", 100, "NJ", null, null));
+		assertFalse(accepts("amount = 100", 100.5, "NJ", null, null));
+		assertTrue(accepts("amount != 100", 99L, "NJ", null, null));
+		assertTrue(accepts("amount <> 100", 99, "NJ", null, null));
+		assertTrue(accepts("amount < 1e2", 99.9, "NJ", null, null));
+		assertFalse(accepts("amount < 100", 100, "NJ", null, null));
+		assertTrue(accepts("amount <= 100", 100, "NJ", null, null));
+		assertTrue(accepts("amount > -5", -4, "NJ", null, null));
+		assertFalse(accepts("amount >= 0.5", 0.25, "NJ", null, null));
+		assertTrue(accepts("amount IN (1, 2.5, 3)", 2.5, "NJ", null, null));
+		assertFalse(accepts("amount IN (1, 2.5, 3)", 4, "NJ", null, null));
+		assertTrue(accepts("amount NOT IN (1, 2)", 4, "NJ", null, null));
+	}
+
+	@Test
+	public void testTextConditions() {
+
+		assertTrue(accepts("region = 'NJ'", 1, "NJ", null, null));
+		assertFalse(accepts("region = 'NJ'", 1, "NJX", null, null));
+		assertFalse(accepts("region = 'NJ'", 1, "N", null, null));
+		assertTrue(accepts("region != 'NJ'", 1, "NY", null, null));
+		assertTrue(accepts("region IN ('NJ', 'NY')", 1, "NY", null, null));
+		assertFalse(accepts("region NOT IN ('NJ', 'NY')", 1, "NY", null, null));
+		assertTrue(accepts("region = 'it''s'", 1, "it's", null, null));
+		// Text is compared with the bytes in the code page of the field
+		assertTrue(accepts("city = 'Z\u00FCrich'", 1, "NJ", null, "Z\u00FCrich"));
+		assertFalse(accepts("city = 'Zurich'", 1, "NJ", null, "Z\u00FCrich"));
+	}
+
+	@Test
+	public void testNullsAndValuesOfTheOtherKind() {
+
+		// Like in SQL, only IS NULL holds for a null value
+		for(String filter : new String[] {"amount = 1", "amount != 1", "amount < 1", "amount IN (1)",
+				"amount NOT IN (1)", "amount IS NOT NULL"}) {
+			assertFalse(filter, accepts(filter, null, "NJ", null, null));
+		}
+		assertTrue(accepts("amount IS NULL", null, "NJ", null, null));
+		assertFalse(accepts("amount IS NULL", 1, "NJ", null, null));
+
+		// A text for a number condition and a number for a text condition only satisfy the negations
+		assertFalse(accepts("amount = 1", "1", "NJ", null, null));
+		assertFalse(accepts("amount > 0", "1", "NJ", null, null));
+		assertTrue(accepts("amount != 1", "1", "NJ", null, null));
+		assertTrue(accepts("amount NOT IN (1)", "1", "NJ", null, null));
+		assertFalse(accepts("region = 'NJ'", 1, 5, null, null));
+		assertTrue(accepts("region <> 'NJ'", 1, 5, null, null));
+		assertTrue(accepts("region IS NOT NULL", 1, 5, null, null));
+	}
+
+	@Test
+	public void testConditionsAreJoinedByAnd() {
+
+		String filter = "amount >= 10 and amount < 20 AND region IN ('NJ') And \"e-mail \"\"work\"\"\" is not null";
+		assertTrue(accepts(filter, 10, "NJ", "a@b.c", null));
+		assertFalse(accepts(filter, 20, "NJ", "a@b.c", null));
+		assertFalse(accepts(filter, 15, "NY", "a@b.c", null));
+		assertFalse(accepts(filter, 15, "NJ", null, null));
+	}
+
+	@Test
+	public void testSyntaxErrors() {
+
+		String[] filters = {"", "amount", "amount ==", "amount = ", "amount < 'NJ'", "nothing = 1",
+				"amount IN (1, 'NJ')", "amount IN (1, 2", "region = 'NJ", "amount = 1 OR amount = 2",
+				"amount = 1 AND", "amount IS NOTHING", "amount NOT 1", "\"amount = 1"};
+		for(String filter : filters) {
+			try {
+				QvxRowFilter.parse(filter, FIELDS);
+				fail("\"" + filter + "\" was parsed");
+			}catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("Row filter: "));
+			}
+		}
+	}
+
+	@Test
+	public void testFilteredRowsAreTheRowsThatSatisfyTheFilter() throws Exception {
+
+		String fileName = directory.resolve(SAMPLE_FILE).toString();
+		String filter = "Acq_channel IN (1, 4) AND ZIP >= 10000 AND Cust_ID != 'C_39'";
+		DataTable all = read(fileName, settings -> {});
+		DataTableSpec spec = all.getDataTableSpec();
+		int channel = spec.findColumnIndex("Acq_channel");
+		int zip = spec.findColumnIndex("ZIP");
+		int customer = spec.findColumnIndex("Cust_ID");
+		List<String> expected = new ArrayList<String>();
+		Set<String> keys = new HashSet<String>();
+		for(DataRow row : all) {
+			int channelValue = Integer.parseInt(row.getCell(channel).toString());
+			if ((channelValue == 1 || channelValue == 4) && Integer.parseInt(row.getCell(zip).toString()) >= 10000
+					&& !row.getCell(customer).toString().equals("C_39")) {
+				expected.add(QvxTestContext.toLine(row));
+				keys.add(row.getKey().toString());
+			}
+		}
+		assertFalse("The filter selects nothing", expected.isEmpty());
+
+		assertRows("Sequentially", expected, read(fileName, settings -> settings.setRowFilter(filter)));
+		// Streaming chooses the column types differently, so the rows are taken from a streamed read
+		List<String> streamed = new ArrayList<String>();
+		for(DataRow row : read(fileName, settings -> settings.setStreaming(true))) {
+			if (keys.contains(row.getKey().toString())) {
+				streamed.add(QvxTestContext.toLine(row));
+			}
+		}
+		assertRows("Streamed", streamed, read(fileName, settings -> {
+			settings.setRowFilter(filter);
+			settings.setStreaming(true);
+		}));
+		assertRows("In parallel", expected, read(fileName, settings -> {
+			settings.setRowFilter(filter);
+			settings.setMemoryMapped(true);
+			settings.setParallel(true);
+		}));
+
+		// A filter can use fields that are not read
+		List<String> customers = new ArrayList<String>();
+		for(String line : expected) {
+			String[] parts = line.split("\\|");
+			customers.add(parts[0] + "|" + parts[1 + customer] + "|");
+		}
+		assertRows("Other columns", customers, read(fileName, settings -> {
+			settings.setRowFilter(filter);
+			settings.setColumns("Cust_ID");
+		}));
+	}
+
+	private static boolean accepts(String expression, Object... values) {
+
+		// Passes the values of one record to the filter, like a record decoder does
+		QvxRowFilter filter = QvxRowFilter.parse(expression, FIELDS);
+		filter.startRecord();
+		int[] slots = filter.getFieldSlots();
+		for(int i = 0; i < values.length; i++) {
+			int slot = slots[i];
+			Object value = values[i];
+			if (slot < 0) {
+				continue;
+			}else if (value == null) {
+				filter.putNull(slot);
+			}else if (value instanceof Integer) {
+				filter.putInt(slot, (Integer)value);
+			}else if (value instanceof Long) {
+				filter.putLong(slot, (Long)value);
+			}else if (value instanceof Double) {
+				filter.putDouble(slot, (Double)value);
+			}else {
+				byte[] bytes = i == 3 ? QvxCodePage.forCodePage(1252).encode((String)value)
+						: ((String)value).getBytes(StandardCharsets.UTF_8);
+				byte[] buffer = new byte[bytes.length + 4]; //The value is part of a larger buffer
+				System.arraycopy(bytes, 0, buffer, 2, bytes.length);
+				filter.putText(slot, buffer, 2, bytes.length);
+			}
+		}
+		return !filter.isRejected();
+	}
+
+	private static DataTable read(String fileName, Consumer<QvxReaderNodeSettings> options) throws Exception {
+
+		QvxReaderNodeSettings settings = new QvxReaderNodeSettings();
+		settings.setFileName(fileName);
+		options.accept(settings);
+		return new QvxBinaryReader().readQvx(settings, exec)[0];
+	}
+
+	private static void assertRows(String message, List<String> expected, DataTable table) {
+
+		List<String> lines = QvxTestContext.toLines(table);
+		assertEquals(message, expected, lines.subList(1, lines.size()));
+	}
+
+	private static QvxFieldHeader fieldHeader(String name, int codePage) {
+
+		QvxFieldHeader fieldHeader = new QvxFieldHeader();
+		fieldHeader.setFieldName(name);
+		if (codePage != 0) {
+			fieldHeader.setCodePage(BigInteger.valueOf(codePage));
+		}
+		return fieldHeader;
+	}
+}
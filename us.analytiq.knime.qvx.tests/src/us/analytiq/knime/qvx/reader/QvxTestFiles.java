@@ -0,0 +1,53 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes qvx files made up for the tests: a table header with the given field headers, the zero byte
+ * after it, and a body that the test writes itself.
+ */
+final class QvxTestFiles {
+
+	static final byte RECORD_SEPARATOR = 0x1E;
+	static final byte FILE_SEPARATOR = 0x1C;
+
+	interface Body {
+		void write(OutputStream out) throws IOException;
+	}
+
+	private QvxTestFiles() {
+		// Hides the implicit public constructor
+	}
+
+	static void write(Path file, boolean usesSeparatorByte, String fieldHeaders, Body body) throws IOException {
+
+		String header = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><QvxTableHeader>"
+				+ "<MajorVersion>1</MajorVersion><MinorVersion>0</MinorVersion><TableName>test</TableName>"
+				+ "<UsesSeparatorByte>" + usesSeparatorByte + "</UsesSeparatorByte><BlockSize>1</BlockSize>"
+				+ "<Fields>" + fieldHeaders + "</Fields></QvxTableHeader>";
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+			out.write(header.getBytes(StandardCharsets.UTF_8));
+			out.write(0);
+			body.write(out);
+		}
+	}
+
+	static String fieldHeader(String name, String type, String extent, int byteWidth) {
+		return fieldHeader(name, type, extent, byteWidth, 0);
+	}
+
+	static String fieldHeader(String name, String type, String extent, int byteWidth, int codePage) {
+
+		// A field whose null values are written as a flag byte, without a field attribute type
+		return "<QvxFieldHeader><FieldName>" + name + "</FieldName><Type>" + type + "</Type><Extent>" + extent
+				+ "</Extent><NullRepresentation>QVX_NULL_FLAG_SUPPRESS_DATA</NullRepresentation>"
+				+ "<BigEndian>false</BigEndian>" + (codePage == 0 ? "" : "<CodePage>" + codePage + "</CodePage>")
+				+ "<ByteWidth>" + byteWidth + "</ByteWidth>"
+				+ "<FieldFormat><Type>UNKNOWN</Type></FieldFormat></QvxFieldHeader>";
+	}
+}
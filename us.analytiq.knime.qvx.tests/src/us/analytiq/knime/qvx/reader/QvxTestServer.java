@@ -0,0 +1,181 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Web server on the loopback interface that serves one file, for the tests of remote files.
+ *
+ * Each version of the file has an ETag or a Last-Modified date, as set by the validator. Range
+ * requests are answered with the part of the file if the server supports them and If-Range, when
+ * sent, matches the current version, and conditional requests with 304 if they name the current
+ * version. The headers of every request are kept, with lower case names.
+ */
+final class QvxTestServer implements Closeable {
+
+	enum Validator {
+		STRONG_ETAG, WEAK_ETAG, LAST_MODIFIED, NONE
+	}
+
+	private static final Instant FIRST_MODIFIED = Instant.parse("2020-01-01T00:00:00Z");
+
+	private final ServerSocket serverSocket;
+	private final ExecutorService pool = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "QVX test server");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final Validator validator;
+	private final boolean ranges;
+	private final List<Map<String, String>> requests = Collections.synchronizedList(new ArrayList<Map<String, String>>());
+	private byte[] content;
+	private int version;
+	private byte[] nextContent; //Content that replaces the file once "changeAfter" requests were answered
+	private int changeAfter;
+
+	QvxTestServer(byte[] content, Validator validator, boolean ranges) throws IOException {
+
+		this.content = content;
+		this.validator = validator;
+		this.ranges = ranges;
+		this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		pool.execute(() -> {
+			while (!serverSocket.isClosed()) {
+				try {
+					Socket socket = serverSocket.accept();
+					pool.execute(() -> answer(socket));
+				}catch (IOException e) {
+					// Closed
+				}
+			}
+		});
+	}
+
+	URL getUrl(String path) throws MalformedURLException {
+		return new URL("http", "127.0.0.1", serverSocket.getLocalPort(), path);
+	}
+
+	synchronized void setContent(byte[] content) {
+
+		this.content = content;
+		version++;
+	}
+
+	synchronized void changeAfter(int requestCount, byte[] content) {
+
+		// The file changes before the answer to the request after the next "requestCount" ones
+		this.changeAfter = requests.size() + requestCount;
+		this.nextContent = content;
+	}
+
+	List<Map<String, String>> getRequests() {
+
+		synchronized (requests) {
+			return new ArrayList<Map<String, String>>(requests);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		serverSocket.close();
+		pool.shutdownNow();
+	}
+
+	private void answer(Socket socket) {
+
+		try (Socket s = socket) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.ISO_8859_1));
+			if (reader.readLine() == null) {
+				return;
+			}
+			Map<String, String> headers = new HashMap<String, String>();
+			for(String line = reader.readLine(); line != null && !line.isEmpty(); line = reader.readLine()) {
+				int colon = line.indexOf(':');
+				headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+			}
+
+			byte[] body;
+			String validatorHeader;
+			synchronized (this) {
+				if (nextContent != null && requests.size() >= changeAfter) {
+					setContent(nextContent);
+					nextContent = null;
+				}
+				requests.add(headers);
+				body = content;
+				validatorHeader = getValidatorHeader();
+			}
+
+			StringBuilder response = new StringBuilder();
+			int start = 0;
+			int end = body.length - 1;
+			String range = headers.get("range");
+			String ifRange = headers.get("if-range");
+			if (!validatorHeader.isEmpty() && (validatorHeader.endsWith(": " + headers.get("if-none-match"))
+					|| validatorHeader.endsWith(": " + headers.get("if-modified-since")))) {
+				response.append("HTTP/1.1 304 Not Modified\r\n").append(validatorHeader).append("\r\n");
+				response.append("Connection: close\r\n\r\n");
+				s.getOutputStream().write(response.toString().getBytes(StandardCharsets.ISO_8859_1));
+				return;
+			}
+			if (ranges && range != null && range.startsWith("bytes=")
+					&& (ifRange == null || validatorHeader.endsWith(": " + ifRange))) {
+				String[] bounds = range.substring("bytes=".length()).split("-");
+				start = Integer.parseInt(bounds[0]);
+				end = Math.min(end, Integer.parseInt(bounds[1]));
+				response.append("HTTP/1.1 206 Partial Content\r\n");
+				response.append("Content-Range: bytes " + start + "-" + end + "/" + body.length + "\r\n");
+			}else {
+				response.append("HTTP/1.1 200 OK\r\n");
+			}
+			if (ranges) {
+				response.append("Accept-Ranges: bytes\r\n");
+			}
+			if (!validatorHeader.isEmpty()) {
+				response.append(validatorHeader).append("\r\n");
+			}
+			response.append("Content-Length: " + (end - start + 1) + "\r\nConnection: close\r\n\r\n");
+			OutputStream out = s.getOutputStream();
+			out.write(response.toString().getBytes(StandardCharsets.ISO_8859_1));
+			out.write(body, start, end - start + 1);
+			out.flush();
+		}catch (IOException e) {
+			// The client closed the connection before the whole answer was sent
+		}
+	}
+
+	private String getValidatorHeader() {
+
+		switch (validator) {
+			case STRONG_ETAG:
+				return "ETag: \"v" + version + "\"";
+			case WEAK_ETAG:
+				return "ETag: W/\"v" + version + "\"";
+			case LAST_MODIFIED:
+				return "Last-Modified: " + DateTimeFormatter.RFC_1123_DATE_TIME.format(
+						FIRST_MODIFIED.plusSeconds(3600L * version).atOffset(ZoneOffset.UTC));
+			default:
+				return "";
+		}
+	}
+}
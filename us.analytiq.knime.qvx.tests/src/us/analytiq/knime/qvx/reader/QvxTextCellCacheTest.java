@@ -0,0 +1,78 @@
+package us.analytiq.knime.qvx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.def.StringCell;
+
+/**
+ * Looks up the cells of repeated and distinct text values in the cache of a text column.
+ */
+public class QvxTextCellCacheTest {
+
+	@Test
+	public void testRepeatedValuesShareOneCell() {
+
+		QvxTextCellCache cache = new QvxTextCellCache(QvxCodePage.UTF_8);
+		DataCell first = getCell(cache, "NJ");
+		// The same bytes at another offset of another array
+		byte[] bytes = "--NJ--".getBytes(StandardCharsets.UTF_8);
+		assertSame(first, cache.getCell(bytes, 2, 2));
+		assertEquals(new StringCell("NJ"), first);
+
+		DataCell other = getCell(cache, "NY");
+		assertNotSame(first, other);
+		assertEquals(new StringCell("NY"), other);
+		assertSame(other, getCell(cache, "NY"));
+		assertEquals(new StringCell(""), getCell(cache, ""));
+	}
+
+	@Test
+	public void testValuesAreDecodedInTheCodePageOfTheColumn() {
+
+		QvxCodePage codePage = QvxCodePage.forCodePage(1252);
+		QvxTextCellCache cache = new QvxTextCellCache(codePage);
+		byte[] bytes = codePage.encode("caf\u00E9");
+		DataCell cell = cache.getCell(bytes, 0, bytes.length);
+		assertEquals(new StringCell("caf\u00E9"), cell);
+		assertSame(cell, cache.getCell(bytes, 0, bytes.length));
+	}
+
+	@Test
+	public void testLongValuesAreNotCached() {
+
+		QvxTextCellCache cache = new QvxTextCellCache(QvxCodePage.UTF_8);
+		char[] chars = new char[1000];
+		Arrays.fill(chars, 'x');
+		String value = new String(chars);
+		DataCell cell = getCell(cache, value);
+		assertEquals(new StringCell(value), cell);
+		assertNotSame(cell, getCell(cache, value));
+	}
+
+	@Test
+	public void testManyDistinctValuesSwitchTheCacheOff() {
+
+		QvxTextCellCache cache = new QvxTextCellCache(QvxCodePage.UTF_8);
+		DataCell first = getCell(cache, "value 0");
+		for(int i = 1; i <= QvxTextCellCache.MAX_ENTRIES; i++) {
+			assertEquals(new StringCell("value " + i), getCell(cache, "value " + i));
+		}
+		// Once off, the cache no longer shares cells, but still returns the right ones
+		DataCell again = getCell(cache, "value 0");
+		assertNotSame(first, again);
+		assertEquals(first, again);
+	}
+
+	private static DataCell getCell(QvxTextCellCache cache, String value) {
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		return cache.getCell(bytes, 0, bytes.length);
+	}
+}
@@ -0,0 +1,210 @@
+package us.analytiq.knime.qvx.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.LongCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeSettings;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortOutput;
+
+import us.analytiq.knime.qvx.QvxTestContext;
+import us.analytiq.knime.qvx.reader.QvxReader;
+
+/**
+ * Writes tables with the writer and reads them back with the reader. Every way of writing a table,
+ * including the streamable operator of the node, must produce the same file, apart from the time of
+ * creation in the header.
+ */
+public class QvxWriterTest {
+
+	private static final int NUM_ROWS = 3 * QvxParallelEncoder.CHUNK_ROWS + 5; //Several chunks and a partial one
+
+	private static ExecutionContext exec;
+	private static Path directory;
+	private static BufferedDataTable table;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+
+		exec = QvxTestContext.createExecutionContext();
+		directory = QvxTestContext.createDirectory("qvx-writer-test");
+		table = createTable();
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		QvxTestContext.delete(directory);
+	}
+
+	@Test
+	public void testRowsReadBack() throws Exception {
+
+		for(boolean usesSeparatorByte : new boolean[] {false, true}) {
+			String fileName = directory.resolve("rows-" + usesSeparatorByte + ".qvx").toString();
+			QvxWriterNodeSettings settings = createSettings();
+			settings.setUsesSeparatorByte(usesSeparatorByte);
+			new QvxWriter().writeQvxFile(table, fileName, settings);
+
+			assertEquals("Separator bytes: " + usesSeparatorByte, QvxTestContext.toLines(table),
+					QvxTestContext.toLines(new QvxReader(fileName, exec).getTableData()[0]));
+		}
+	}
+
+	@Test
+	public void testAllWaysOfWritingMakeTheSameFile() throws Exception {
+
+		// Encoding in parallel only differs from encoding in order with more than one processor
+		Path expected = directory.resolve("in-order.qvx");
+		QvxWriterNodeSettings settings = createSettings();
+		settings.setUsesSeparatorByte(true);
+		settings.setParallelEncoding(false);
+		new QvxWriter().writeQvxFile(table, expected.toString(), settings);
+
+		Path parallel = directory.resolve("parallel.qvx");
+		settings.setParallelEncoding(true);
+		new QvxWriter().writeQvxFile(table, parallel.toString(), settings);
+		assertEquals("Encoded in parallel", withoutCreateTime(expected), withoutCreateTime(parallel));
+
+		Path streamed = directory.resolve("streamed.qvx");
+		new QvxWriter().writeQvxFile(new DataTableRowInput(table), streamed.toString(), settings);
+		assertEquals("Streamed", withoutCreateTime(expected), withoutCreateTime(streamed));
+	}
+
+	@Test
+	public void testStreamableOperatorWritesTheSameFile() throws Exception {
+
+		// The node writes the rows that the streaming executor hands to its operator
+		Path expected = directory.resolve("table.qvx");
+		QvxWriterNodeSettings settings = createSettings();
+		new QvxWriter().writeQvxFile(table, expected.toString(), settings);
+
+		Path streamed = directory.resolve("operator.qvx");
+		settings.setFileName(streamed.toString());
+		NodeSettings nodeSettings = new NodeSettings("writer");
+		settings.saveSettingsTo(nodeSettings);
+		QvxWriterNodeModel model = new QvxWriterNodeModel();
+		model.loadValidatedSettingsFrom(nodeSettings);
+		assertEquals(InputPortRole.NONDISTRIBUTED_STREAMABLE, model.getInputPortRoles()[0]);
+		model.createStreamableOperator(new PartitionInfo(0, 1), new PortObjectSpec[] {table.getDataTableSpec()})
+				.runFinal(new PortInput[] {new DataTableRowInput(table)}, new PortOutput[0], exec);
+		assertEquals(withoutCreateTime(expected), withoutCreateTime(streamed));
+	}
+
+	@Test
+	public void testStreamableOperatorNeedsAFileName() {
+
+		try {
+			new QvxWriterNodeModel().createStreamableOperator(new PartitionInfo(0, 1),
+					new PortObjectSpec[] {table.getDataTableSpec()});
+			fail("An operator was created without a file name");
+		}catch (InvalidSettingsException e) {
+			assertEquals("No settings available", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testCompressedFileReadsBack() throws Exception {
+
+		Path file = directory.resolve("plain.qvx");
+		Path compressedFile = directory.resolve("compressed.qvx.gz");
+		QvxWriterNodeSettings settings = createSettings();
+		new QvxWriter().writeQvxFile(table, file.toString(), settings);
+		new QvxWriter().writeQvxFile(table, compressedFile.toString(), settings);
+
+		Path decompressedFile = directory.resolve("decompressed.qvx");
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(compressedFile))) {
+			Files.copy(in, decompressedFile);
+		}
+		assertEquals("Decompressed", withoutCreateTime(file), withoutCreateTime(decompressedFile));
+		assertEquals("Read back", QvxTestContext.toLines(table),
+				QvxTestContext.toLines(new QvxReader(compressedFile.toString(), exec).getTableData()[0]));
+	}
+
+	@Test
+	public void testFailedWriteLeavesNoFile() throws Exception {
+
+		DataTableSpec spec = new DataTableSpec(DataTableSpec.createColumnSpecs(new String[] {"date"},
+				new DataType[] {StringCell.TYPE}));
+		BufferedDataContainer container = exec.createDataContainer(spec);
+		for(int i = 0; i < NUM_ROWS; i++) {
+			container.addRowToTable(new DefaultRow("Row_" + i, new StringCell(i == NUM_ROWS / 2 ? "2020-xx-01" : "2020-01-01")));
+		}
+		container.close();
+		QvxWriterNodeSettings settings = createSettings();
+		settings.setSelectedFieldAttrs(new String[] {"DATE"});
+		settings.setSelectedNDecs(new int[1]);
+
+		Path file = directory.resolve("failed.qvx");
+		try {
+			new QvxWriter().writeQvxFile(container.getTable(), file.toString(), settings);
+			fail("A date that cannot be parsed was written");
+		}catch (RuntimeException e) {
+			assertFalse("The partial file was left behind", Files.exists(file));
+		}
+	}
+
+	private static BufferedDataTable createTable() {
+
+		/* Values full of separator bytes, and missing values in every column type. The row keys are the
+		 * ones that the reader gives the records
+		 */
+		DataTableSpec spec = new DataTableSpec(DataTableSpec.createColumnSpecs(new String[] {"s", "i", "d", "l"},
+				new DataType[] {StringCell.TYPE, IntCell.TYPE, DoubleCell.TYPE, LongCell.TYPE}));
+		BufferedDataContainer container = exec.createDataContainer(spec);
+		Random random = new Random(1);
+		DataCell missing = DataType.getMissingCell();
+		for(int i = 0; i < NUM_ROWS; i++) {
+			container.addRowToTable(new DefaultRow("Row_" + i,
+					i % 7 == 0 ? missing : new StringCell("text \u001E" + random.nextInt() + "\u001C"),
+					i % 13 == 0 ? missing : new IntCell(i % 3 == 0 ? 0x1E1E1E1E : random.nextInt()),
+					i % 17 == 0 ? missing : new DoubleCell(random.nextDouble()),
+					i % 11 == 0 ? missing : new LongCell(random.nextLong())));
+		}
+		container.close();
+		return container.getTable();
+	}
+
+	private static QvxWriterNodeSettings createSettings() {
+
+		QvxWriterNodeSettings settings = new QvxWriterNodeSettings();
+		settings.setTableName("test");
+		settings.setSelectedFieldAttrs(new String[0]);
+		settings.setSelectedNDecs(new int[0]);
+		return settings;
+	}
+
+	private static String withoutCreateTime(Path file) throws IOException {
+
+		// The bytes of the file as characters, without the time of creation in the header
+		String content = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+		return content.replaceFirst("<CreateUtcTime>[^<]*</CreateUtcTime>", "");
+	}
+}
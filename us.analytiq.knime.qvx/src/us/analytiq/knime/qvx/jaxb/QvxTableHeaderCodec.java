@@ -0,0 +1,256 @@
+package us.analytiq.knime.qvx.jaxb;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.List;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import us.analytiq.knime.qvx.jaxb.QvxTableHeader.Fields.QvxFieldHeader;
+
+/**
+ * Reads and writes the xml table header of a qvx file with StAX.
+ *
+ * Creating a JAXBContext for {@link QvxTableHeader} takes far longer than reading or writing the
+ * few kilobytes of a header, and was paid on every read and every write. The codec maps the elements
+ * of the header to the same classes directly. Like JAXB, it ignores unknown elements and leaves
+ * values that are not in the header, or that cannot be parsed, null.
+ */
+public final class QvxTableHeaderCodec {
+
+	private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+	private static DatatypeFactory datatypeFactory; //Created when the first CreateUtcTime is read
+
+	private QvxTableHeaderCodec() {
+	}
+
+	private static XMLInputFactory createInputFactory() {
+
+		//The header is data from the file; it may not pull in other documents
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+
+	/**
+	 * Reads a table header. The stream must end with the header, i.e. at the zero byte that separates
+	 * it from the body; the encoding is taken from the xml declaration.
+	 */
+	public static QvxTableHeader read(InputStream in) throws XMLStreamException {
+
+		XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+		try {
+			reader.nextTag();
+			reader.require(XMLStreamConstants.START_ELEMENT, null, "QvxTableHeader");
+			QvxTableHeader header = new QvxTableHeader();
+			while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				switch (reader.getLocalName()) {
+					case "MajorVersion": header.setMajorVersion(readInteger(reader)); break;
+					case "MinorVersion": header.setMinorVersion(readInteger(reader)); break;
+					case "CreateUtcTime": header.setCreateUtcTime(readDateTime(reader)); break;
+					case "TableName": header.setTableName(reader.getElementText()); break;
+					case "UsesSeparatorByte": header.setUsesSeparatorByte(readBoolean(reader)); break;
+					case "BlockSize": header.setBlockSize(readInteger(reader)); break;
+					case "Fields": header.setFields(readFields(reader)); break;
+					default: skipElement(reader);
+				}
+			}
+			return header;
+		}finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Writes a table header as an UTF-8 xml document, without the zero byte that ends it. The stream
+	 * is flushed, but not closed.
+	 */
+	public static void write(QvxTableHeader header, OutputStream out) throws XMLStreamException {
+
+		XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+		writer.writeStartDocument("UTF-8", "1.0");
+		writer.writeStartElement("QvxTableHeader");
+		writeElement(writer, "MajorVersion", header.getMajorVersion());
+		writeElement(writer, "MinorVersion", header.getMinorVersion());
+		if (header.getCreateUtcTime() != null) {
+			writeElement(writer, "CreateUtcTime", header.getCreateUtcTime().toXMLFormat());
+		}
+		writeElement(writer, "TableName", header.getTableName());
+		writeElement(writer, "UsesSeparatorByte", header.isUsesSeparatorByte());
+		writeElement(writer, "BlockSize", header.getBlockSize());
+		if (header.getFields() != null) {
+			writer.writeStartElement("Fields");
+			for(QvxFieldHeader fieldHeader : header.getFields().getQvxFieldHeader()) {
+				writeFieldHeader(writer, fieldHeader);
+			}
+			writer.writeEndElement();
+		}
+		writer.writeEndElement();
+		writer.writeEndDocument();
+		writer.flush();
+		writer.close();
+	}
+
+	private static QvxTableHeader.Fields readFields(XMLStreamReader reader) throws XMLStreamException {
+
+		QvxTableHeader.Fields fields = new QvxTableHeader.Fields();
+		List<QvxFieldHeader> fieldHeaders = fields.getQvxFieldHeader();
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			if (reader.getLocalName().equals("QvxFieldHeader")) {
+				fieldHeaders.add(readFieldHeader(reader));
+			}else {
+				skipElement(reader);
+			}
+		}
+		return fields;
+	}
+
+	private static QvxFieldHeader readFieldHeader(XMLStreamReader reader) throws XMLStreamException {
+
+		QvxFieldHeader fieldHeader = new QvxFieldHeader();
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (reader.getLocalName()) {
+				case "FieldName": fieldHeader.setFieldName(reader.getElementText()); break;
+				case "Type": fieldHeader.setType(readEnum(reader, QvxFieldType.class)); break;
+				case "Extent": fieldHeader.setExtent(readEnum(reader, QvxFieldExtent.class)); break;
+				case "NullRepresentation":
+					fieldHeader.setNullRepresentation(readEnum(reader, QvxNullRepresentation.class));
+					break;
+				case "BigEndian": fieldHeader.setBigEndian(readBoolean(reader)); break;
+				case "CodePage": fieldHeader.setCodePage(readInteger(reader)); break;
+				case "ByteWidth": fieldHeader.setByteWidth(readInteger(reader)); break;
+				case "FixPointDecimals": fieldHeader.setFixPointDecimals(readInteger(reader)); break;
+				case "FieldFormat": fieldHeader.setFieldFormat(readFieldAttributes(reader)); break;
+				default: skipElement(reader);
+			}
+		}
+		return fieldHeader;
+	}
+
+	private static FieldAttributes readFieldAttributes(XMLStreamReader reader) throws XMLStreamException {
+
+		FieldAttributes fieldAttributes = new FieldAttributes();
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (reader.getLocalName()) {
+				case "Type": fieldAttributes.setType(readEnum(reader, FieldAttrType.class)); break;
+				case "nDec": fieldAttributes.setNDec(readInteger(reader)); break;
+				case "UseThou": fieldAttributes.setUseThou(readInteger(reader)); break;
+				case "Fmt": fieldAttributes.setFmt(reader.getElementText()); break;
+				case "Dec": fieldAttributes.setDec(reader.getElementText()); break;
+				case "Thou": fieldAttributes.setThou(reader.getElementText()); break;
+				default: skipElement(reader);
+			}
+		}
+		return fieldAttributes;
+	}
+
+	private static BigInteger readInteger(XMLStreamReader reader) throws XMLStreamException {
+
+		String text = reader.getElementText().trim();
+		try {
+			return new BigInteger(text.startsWith("+") ? text.substring(1) : text);
+		}catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static Boolean readBoolean(XMLStreamReader reader) throws XMLStreamException {
+
+		String text = reader.getElementText().trim();
+		if (text.equals("true") || text.equals("1")) {
+			return Boolean.TRUE;
+		}else if (text.equals("false") || text.equals("0")) {
+			return Boolean.FALSE;
+		}
+		return null;
+	}
+
+	private static XMLGregorianCalendar readDateTime(XMLStreamReader reader) throws XMLStreamException {
+
+		String text = reader.getElementText().trim();
+		try {
+			synchronized (QvxTableHeaderCodec.class) {
+				if (datatypeFactory == null) {
+					datatypeFactory = DatatypeFactory.newInstance();
+				}
+			}
+			return datatypeFactory.newXMLGregorianCalendar(text);
+		}catch (DatatypeConfigurationException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private static <E extends Enum<E>> E readEnum(XMLStreamReader reader, Class<E> enumClass)
+			throws XMLStreamException {
+
+		String text = reader.getElementText().trim();
+		for(E value : enumClass.getEnumConstants()) {
+			if (value.name().equals(text)) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+
+		// Moves the reader to the end of the current element, including the elements it contains
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			}else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	private static void writeFieldHeader(XMLStreamWriter writer, QvxFieldHeader fieldHeader)
+			throws XMLStreamException {
+
+		writer.writeStartElement("QvxFieldHeader");
+		writeElement(writer, "FieldName", fieldHeader.getFieldName());
+		writeElement(writer, "Type", fieldHeader.getType());
+		writeElement(writer, "Extent", fieldHeader.getExtent());
+		writeElement(writer, "NullRepresentation", fieldHeader.getNullRepresentation());
+		writeElement(writer, "BigEndian", fieldHeader.isBigEndian());
+		writeElement(writer, "CodePage", fieldHeader.getCodePage());
+		writeElement(writer, "ByteWidth", fieldHeader.getByteWidth());
+		writeElement(writer, "FixPointDecimals", fieldHeader.getFixPointDecimals());
+		FieldAttributes fieldFormat = fieldHeader.getFieldFormat();
+		if (fieldFormat != null) {
+			writer.writeStartElement("FieldFormat");
+			writeElement(writer, "Type", fieldFormat.getType());
+			writeElement(writer, "nDec", fieldFormat.getNDec());
+			writeElement(writer, "UseThou", fieldFormat.getUseThou());
+			writeElement(writer, "Fmt", fieldFormat.getFmt());
+			writeElement(writer, "Dec", fieldFormat.getDec());
+			writeElement(writer, "Thou", fieldFormat.getThou());
+			writer.writeEndElement();
+		}
+		writer.writeEndElement();
+	}
+
+	private static void writeElement(XMLStreamWriter writer, String name, Object value) throws XMLStreamException {
+
+		// Values that are not set are left out, like JAXB does
+		if (value == null) {
+			return;
+		}
+		writer.writeStartElement(name);
+		writer.writeCharacters(value instanceof Enum ? ((Enum<?>)value).name() : value.toString());
+		writer.writeEndElement();
+	}
+}
@@ -0,0 +1,119 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.knime.core.node.CanceledExecutionException;
+
+/**
+ * Hands batches of decoded records from the thread that decodes them to a thread that turns them
+ * into rows.
+ *
+ * The records are decoded into one of DEPTH column stores. A full store is passed to the row thread,
+ * and the decoder continues with an empty one; the row thread clears each store it is done with and
+ * gives it back. When all stores are full, the decoder waits for the row thread, so at most DEPTH
+ * batches are held in memory. An error of the row thread is thrown to the decoder at the next hand-off.
+ */
+final class QvxBatchPipeline {
+
+	static final int DEPTH = 4;
+	private static final Object END = new Object(); //Follows the last batch
+
+	interface BatchHandler {
+		void addRows(QvxColumnStore batch) throws CanceledExecutionException;
+	}
+
+	private final BlockingQueue<Object> fullStores = new ArrayBlockingQueue<>(DEPTH + 1);
+	private final BlockingQueue<QvxColumnStore> freeStores = new ArrayBlockingQueue<>(DEPTH);
+	private final ExecutorService thread;
+	private final Future<Void> result;
+
+	QvxBatchPipeline(Supplier<QvxColumnStore> storeFactory, BatchHandler handler) {
+
+		//The decoder starts with a store of its own
+		for(int i = 0; i < DEPTH - 1; i++) {
+			freeStores.add(storeFactory.get());
+		}
+		thread = Executors.newSingleThreadExecutor(runnable -> {
+			Thread rowThread = new Thread(runnable, "QVX reader rows");
+			rowThread.setDaemon(true);
+			return rowThread;
+		});
+		result = thread.submit((Callable<Void>)() -> {
+			while (true) {
+				Object batch = fullStores.take();
+				if (batch == END) {
+					return null;
+				}
+				QvxColumnStore store = (QvxColumnStore)batch;
+				handler.addRows(store);
+				store.clear();
+				freeStores.put(store);
+			}
+		});
+	}
+
+	QvxColumnStore handOff(QvxColumnStore batch) throws CanceledExecutionException {
+
+		// Passes a full store to the row thread and returns an empty one for the next batch
+		fullStores.add(batch);
+		try {
+			while (true) {
+				QvxColumnStore store = freeStores.poll(100, TimeUnit.MILLISECONDS);
+				if (store != null) {
+					return store;
+				}
+				if (result.isDone()) { //The row thread failed
+					waitForRows();
+					throw new IllegalStateException("The row thread stopped before the last batch");
+				}
+			}
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new CanceledExecutionException("Reading was interrupted");
+		}
+	}
+
+	void finish() throws CanceledExecutionException {
+
+		// Waits until the rows of all batches that were handed off have been added
+		fullStores.add(END);
+		waitForRows();
+		thread.shutdown();
+	}
+
+	void close() {
+
+		// Stops the row thread without waiting for the batches that are left
+		result.cancel(true);
+		thread.shutdownNow();
+	}
+
+	private void waitForRows() throws CanceledExecutionException {
+
+		try {
+			result.get();
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new CanceledExecutionException("Reading was interrupted");
+		}catch (ExecutionException e) {
+			close();
+			Throwable cause = e.getCause();
+			if (cause instanceof CanceledExecutionException) {
+				throw (CanceledExecutionException)cause;
+			}else if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+}
@@ -1,28 +1,27 @@
 package us.analytiq.knime.qvx.reader;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.StringReader;
-import java.math.BigInteger;
+import java.io.RandomAccessFile;
 import java.net.URL;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.stream.XMLStreamException;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DataType;
@@ -30,694 +29,1030 @@ import org.knime.core.data.MissingCell;
 import org.knime.core.data.def.DefaultRow;
 import org.knime.core.data.def.DoubleCell;
 import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.LongCell;
 import org.knime.core.data.def.StringCell;
 import org.knime.core.data.date.DateAndTimeCell;
 import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.NodeLogger;
+import org.knime.core.node.streamable.RowOutput;
 
 import us.analytiq.knime.qvx.jaxb.FieldAttrType;
 import us.analytiq.knime.qvx.jaxb.FieldAttributes;
-import us.analytiq.knime.qvx.jaxb.QvxFieldExtent;
-import us.analytiq.knime.qvx.jaxb.QvxFieldType;
-import us.analytiq.knime.qvx.jaxb.QvxNullRepresentation;
 import us.analytiq.knime.qvx.jaxb.QvxTableHeader;
+import us.analytiq.knime.qvx.jaxb.QvxTableHeaderCodec;
 import us.analytiq.knime.qvx.jaxb.QvxTableHeader.Fields.QvxFieldHeader;
-import us.analytiq.knime.qvx.writer.QvxWriterNodeModel;
 
 import static us.analytiq.knime.qvx.jaxb.FieldAttrType.DATE;
-import static us.analytiq.knime.qvx.jaxb.FieldAttrType.FIX;
 import static us.analytiq.knime.qvx.jaxb.FieldAttrType.INTERVAL;
-import static us.analytiq.knime.qvx.jaxb.FieldAttrType.MONEY;
-import static us.analytiq.knime.qvx.jaxb.FieldAttrType.REAL;
 import static us.analytiq.knime.qvx.jaxb.FieldAttrType.TIME;
 import static us.analytiq.knime.qvx.jaxb.FieldAttrType.TIMESTAMP;
-import static us.analytiq.knime.qvx.jaxb.QvxFieldType.QVX_QV_DUAL;
-import static us.analytiq.knime.qvx.jaxb.QvxFieldType.QVX_SIGNED_INTEGER;
-import static us.analytiq.knime.qvx.jaxb.QvxFieldType.QVX_UNSIGNED_INTEGER;
-import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_DOUBLE;
-import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_DOUBLE_AND_STRING;
-import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_INT;
-import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_INT_AND_STRING;
-import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_NULL;
-import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_STRING;
-import static us.analytiq.knime.qvx.reader.QvxReaderUtil.getDateFromQvxReal;
-import static us.analytiq.knime.qvx.reader.QvxReaderUtil.getDateFromString;
-import static us.analytiq.knime.qvx.reader.QvxReaderUtil.getTimeFromString;
-import static us.analytiq.knime.qvx.reader.QvxReaderUtil.objectToString;
+import static us.analytiq.knime.qvx.reader.QvxReaderUtil.getCalendarFromMillis;
 
 public class QvxBinaryReader {
 
     public static final NodeLogger LOGGER = NodeLogger.getLogger(QvxBinaryReader.class);
 
-	private static final byte FS_BYTE = 0x1C;
-	private static final byte RS_BYTE = 0x1E;
-	private static final int WEB_STREAM_MAX_SIZE = 16384;
+	private static final int PROGRESS_INTERVAL = 10000; //Number of records between progress updates
+	static final int STREAMING_BATCH_SIZE = 1000;
+	private static final String SOURCE_COLUMN_NAME = "Source file";
 	
 	private QvxTableHeader qvxTableHeader;
-	private List<QvxFieldHeader> fieldHeaders;
+	private List<QvxFieldHeader> fieldHeaders; //The headers of the fields that are read
+	private String[] selectedColumns; //The names of the fields that are read, or null for all fields
+	private int[] fieldColumns; //For each field of the file, its column in the output, or -1 if not read
 	private String inFileName;
 	private ExecutionContext exec;
 	private String[] fieldNames;
-	private byte[] buffer;
-	private int bufferIndex = 0;
-	private int zeroByteIndex;
-	private List<Object[]> data = new ArrayList<>();
+	private QvxInputBuffer in;
+	private File localFile; //The file that is read, or its copy in the cache; null if read from a url
+	private long fileLength = -1; //-1 if the length is not known in advance
+	private File cachedFile; //The copy in the cache that is read, released when the input is closed; or null
+	private QvxColumnStore data;
+	private List<QvxColumnStore> stores; //The decoded records, in file order; "data" unless decoded in parallel
+	private List<String> storeSources; //With several files, the name of the file of each store; otherwise null
+	private long numRecords; //Number of records of the body that were gone through by readBody()
+	private long recordBase; //With several files, the number of records of the files before this one
+	private QvxTextCellCache[] textCellCaches;
 	
 	/*For each field, this value is true if it should be stored in KNIME as a date,
 	  false if it should be stored as time or some other format, and null if neither date nor time */
 	private Boolean[] fieldUsesDate;
 	
+	/*Streaming mode: the first records are kept in "data" as a sample until the column types are
+	  known; after that, "data" is emptied into "container" every STREAMING_BATCH_SIZE records */
+	private boolean streaming;
+	private boolean memoryMapped;
+	private boolean parallel;
+	private boolean pipelined; //True to read ahead and, in streaming mode, create the rows on threads of their own
+	private boolean useRecordIndex;
+	private long remoteCacheSize; //Maximum size of the copies of remote files, in bytes; 0 to read them directly
+	private boolean downloadToCache = true; //False to only use copies in the cache that are up to date
+	private boolean sourceColumn; //True to add a column with the name of the file of each row
+	private String source; //Name of the file that is read
+	
+	//Records that are read: every rowStep-th record from record rowOffset on, at most rowLimit (0: all)
+	private long rowOffset;
+	private long rowLimit;
+	private long rowStep;
+	private String rowFilter; //Conditions records must satisfy to be read, or empty
+	private BufferedDataContainer container;
+	private RowOutput rowOutput; //Receives the rows instead of "container" when the node is streamed
+	private DataType[] outputTypes; //Types of the columns that the rows must have, or null to choose them
+	private DataType[] streamingTypes; //Null until the types of the columns have been chosen
+	
+	//State of the record loop of readBody(), so that the body can also be decoded a part at a time
+	private QvxRecordDecoder recordDecoder;
+	private QvxRecordIndex newIndex; //Index that is built while reading, or null
+	private long nextRecord; //Number of the next record of the body
+	private long numRows; //Number of records of the body that were decoded
+	private boolean endOfBody;
+	private QvxBatchPipeline pipeline; //Hands the batches to the row thread in pipelined mode, or null
+	private List<String> fileNames; //The files whose rows readRows() pushes to the output
+	private int nextFile; //Index in "fileNames" of the file that is opened next
+	
 	QvxBinaryReader(){
 		
 	}
 	
-	BufferedDataTable[] readQvx(String inFileName, ExecutionContext exec) throws IOException {
+	BufferedDataTable[] readQvx(QvxReaderNodeSettings settings, ExecutionContext exec)
+			throws IOException, CanceledExecutionException {
 		
-		this.inFileName = inFileName;
 		this.exec = exec;
+		applySettings(settings);
+		if (QvxFileSet.isFileSet(inFileName)) {
+			return new BufferedDataTable[] {readFiles(QvxFileSet.list(inFileName), settings)};
+		}
+		
+		in = openInputBuffer();
+		try {
+			readQvxTableHeader();
+			readBody();
+		}finally {
+			closeInput();
+		}
 		
-		readQvxTableHeader();
-		readBody();
+		if (streaming) {
+			container.close();
+			return new BufferedDataTable[] {container.getTable()};
+		}
 		
-		fieldUsesDate = new Boolean[data.size()];
+		fieldUsesDate = new Boolean[fieldNames.length];
 		
 		return new BufferedDataTable[] {dataToDataTable()};
 	}
 	
-	private boolean attemptConversionToDateOrTime(int column) {
+	void readQvx(QvxReaderNodeSettings settings, DataTableSpec spec, RowOutput output, ExecutionContext exec)
+			throws IOException, CanceledExecutionException, InterruptedException {
 		
-		return attemptConvertColumnToDate(column) || attemptConvertColumnToTime(column);
-	}
+		/* Pushes the rows to "output" while the records are decoded, for the streaming executor of
+		 * KNIME. The rows get the column types of "spec", the spec that was published when the node was
+		 * configured; a value that does not fit them fails the node.
+		 */
 		
-	private boolean attemptConvertColumnToDate(int column) {
+		openRows(settings, spec, output, exec);
+		readAllRows();
+		output.close();
+	}
+	
+	void openRows(QvxReaderNodeSettings settings, DataTableSpec spec, RowOutput output, ExecutionContext exec)
+			throws IOException {
 		
-		/* If every non-null item in data[:,column] can be converted into a Calendar date, do the
-		 * conversions and return true. Otherwise, return false, without doing any of the conversions.
+		/* Prepares pushing the rows of the file, or of the files of a directory or glob pattern, to
+		 * "output" with readRows(). The rows get the column types of "spec".
 		 */
 		
-		Calendar[] calendars = new Calendar[data.size()];
-		for(int i = 0; i < data.size(); i++) {
-			Object dataPt = data.get(i)[column];
-			if (dataPt == null) { //Ignore empty dates
-				calendars[i] = null;
-				continue;
+		this.exec = exec;
+		applySettings(settings);
+		streaming = true;
+		rowOutput = output;
+		outputTypes = new DataType[sourceColumn ? spec.getNumColumns() - 1 : spec.getNumColumns()];
+		for(int i = 0; i < outputTypes.length; i++) {
+			outputTypes[i] = spec.getColumnSpec(i).getType();
+		}
+		
+		fileNames = new ArrayList<String>();
+		if (QvxFileSet.isFileSet(inFileName)) {
+			List<File> files = QvxFileSet.list(inFileName);
+			checkHeaders(files, settings);
+			for(File file : files) {
+				fileNames.add(file.getPath());
 			}
-			
-			String s = null;
-			if (dataPt.getClass() == java.lang.String.class) {
-				s = (String)dataPt;
-				calendars[i] = getDateFromString(s);
-			}else{
+		}else {
+			fileNames.add(inFileName);
+		}
+		nextFile = 0;
+	}
+	
+	boolean readRows(long maxRecords) throws IOException, CanceledExecutionException {
+		
+		/* Goes through at most "maxRecords" more records of the files, one file after the other; the
+		 * decoded rows are pushed to the output a batch at a time. Returns false once all files have
+		 * been read.
+		 */
+		
+		if (in == null) {
+			if (nextFile == fileNames.size()) {
 				return false;
 			}
-			
-			if (calendars[i] == null) {
-				return false;
+			inFileName = fileNames.get(nextFile++);
+			source = new File(inFileName).getName();
+			localFile = null;
+			fileLength = -1;
+			in = openInputBuffer();
+			readQvxTableHeader();
+			startBody(); //Records are streamed, so the body is never decoded in parallel here
+		}
+		if (readRecords(maxRecords)) {
+			closeInput();
+			if (!selectInNextFile(numRecords, numRows)) {
+				nextFile = fileNames.size();
 			}
-		}	
+			recordBase += numRecords;
+		}
+		return true;
+	}
+	
+	private boolean selectInNextFile(long fileRecords, long fileRows) {
 		
-		/*If the program gets to this point, it means that all data points could be successfully converted
-		 * to Calendars. Therefore, assign all of the data points a Calendar value
+		/* Offset, limit and step count the records and rows of all files as if they were one file, so
+		 * they are moved on past a file of "fileRecords" records from which "fileRows" rows were read.
+		 * Returns false once the row limit is reached.
 		 */
-		for(int i = 0; i < data.size(); i++) {
-			data.get(i)[column] = calendars[i];
+		if (rowOffset >= fileRecords) {
+			rowOffset -= fileRecords;
+		}else {
+			rowOffset = (rowStep - (fileRecords - rowOffset) % rowStep) % rowStep;
+		}
+		if (rowLimit > 0) {
+			rowLimit -= fileRows;
+			return rowLimit > 0;
 		}
-		
-		fieldUsesDate[column] = true;
 		return true;
 	}
+	
+	void closeInput() throws IOException {
+		
+		// Closes the file that readRows() is reading, if any
+		if (pipeline != null) {
+			pipeline.close();
+			pipeline = null;
+		}
+		if (in != null) {
+			in.close();
+			in = null;
+		}
+		releaseCachedFile();
+	}
+	
+	private void releaseCachedFile() {
 		
-	private boolean attemptConvertColumnToTime(int column) {
+		if (cachedFile != null) {
+			QvxRemoteFileCache.release(cachedFile);
+			cachedFile = null;
+		}
+	}
+	
+	private void readAllRows() throws IOException, CanceledExecutionException {
 		
-		/* If every non-null item in data[:,column] can be converted into a Calendar time, do the
-		 * conversions and return true. Otherwise, return false, without doing any of the conversions.
+		try {
+			boolean more = true;
+			while (more) {
+				more = readRows(Long.MAX_VALUE);
+			}
+		}finally {
+			closeInput();
+		}
+	}
+	
+	DataTableSpec readSpec(QvxReaderNodeSettings settings) throws IOException {
+		
+		/* Returns the spec of the table that readQvx() creates with the same settings, reading only the
+		 * table header and at most SAMPLE_SIZE records. In streaming mode the types are chosen exactly
+		 * as while reading, so the spec is the one of the output. Otherwise the type of each column is
+		 * inferred from the sampled values, and can still change once all values have been read.
 		 */
 		
-		Calendar[] calendars = new Calendar[data.size()];
-		for(int i = 0; i < data.size(); i++) {
-			Object dataPt = data.get(i)[column];
-			if (dataPt == null) { //Ignore empty dates
-				calendars[i] = null;
-				continue;
+		boolean streamingTypes = settings.isStreaming();
+		applySettings(settings);
+		
+		//The spec of several files is the one of the first file, once their headers have been checked
+		if (QvxFileSet.isFileSet(inFileName)) {
+			List<File> files = QvxFileSet.list(inFileName);
+			checkHeaders(files, settings);
+			inFileName = files.get(0).getPath();
+			source = files.get(0).getName();
+		}
+		
+		//Remote files are not downloaded completely for the spec
+		parallel = false;
+		pipelined = false;
+		downloadToCache = false;
+		in = openInputBuffer();
+		try {
+			readQvxTableHeader();
+			QvxTableSpecCreator specCreator = new QvxTableSpecCreator(fieldHeaders);
+			DataType[] dataTypes = new DataType[fieldNames.length];
+			if (streamingTypes && !specCreator.needsSample()) {
+				dataTypes = specCreator.createTypes(null);
+			}else {
+				/* Read the sample sequentially into "data". It ends after SAMPLE_SIZE records, however few
+				 * of them pass the row filter, so that the whole file is not read for a selective filter
+				 */
+				streaming = false;
+				rowLimit = rowLimit == 0 ? QvxTableSpecCreator.SAMPLE_SIZE
+						: Math.min(rowLimit, QvxTableSpecCreator.SAMPLE_SIZE);
+				startBody();
+				readRecords(QvxTableSpecCreator.SAMPLE_SIZE);
+				if (streamingTypes) {
+					dataTypes = specCreator.createTypes(data);
+				}else {
+					for(int i = 0; i < dataTypes.length; i++) {
+						dataTypes[i] = QvxColumnStore.getType(stores, i);
+					}
+				}
 			}
-			
-			String s = null;
-			if (dataPt.getClass() == java.lang.String.class) {
-				s = (String)dataPt;
-				calendars[i] = getTimeFromString(s);
-			}else{
-				return false;
+			return createSpec(dataTypes);
+		}catch (CanceledExecutionException e) { //Not thrown without an execution context
+			throw new IllegalStateException(e);
+		}finally {
+			closeInput();
+		}
+	}
+	
+	private void applySettings(QvxReaderNodeSettings settings) {
+		
+		this.inFileName = settings.getFileName();
+		this.streaming = settings.isStreaming();
+		this.memoryMapped = settings.isMemoryMapped();
+		this.parallel = settings.isParallel();
+		this.pipelined = settings.isPipelined();
+		this.useRecordIndex = settings.isRecordIndex();
+		this.remoteCacheSize = settings.isRemoteCache() ? (long)settings.getRemoteCacheSize() << 20 : 0;
+		this.rowOffset = settings.getRowOffset();
+		this.rowLimit = settings.getRowLimit();
+		this.rowStep = settings.getRowStep();
+		this.rowFilter = settings.getRowFilter();
+		this.selectedColumns = settings.getColumnNames();
+		this.sourceColumn = settings.isSourceColumn();
+		this.source = new File(inFileName).getName();
+	}
+	
+	private BufferedDataTable readFiles(List<File> files, QvxReaderNodeSettings settings)
+			throws IOException, CanceledExecutionException {
+		
+		/* Reads several files with compatible headers into one table; their rows are concatenated in
+		 * the order of the files, and row keys count the records of all files one after the other.
+		 * Without streaming, the files are decoded at the same time, each on a thread of a pool with at
+		 * most one thread per processor. In streaming mode they are read one after the other, so that
+		 * only one batch of rows is in memory at a time, and so are they when records are selected by
+		 * offset, limit or step, which count the records of all files.
+		 */
+		
+		checkHeaders(files, settings);
+		
+		if (streaming) {
+			fileNames = new ArrayList<String>();
+			for(File file : files) {
+				fileNames.add(file.getPath());
 			}
-			
-			if (calendars[i] == null) {
-				return false;
+			readAllRows();
+			container.close();
+			return container.getTable();
+		}
+		
+		stores = new ArrayList<QvxColumnStore>();
+		storeSources = new ArrayList<String>();
+		if (rowOffset > 0 || rowLimit > 0 || rowStep > 1) {
+			for(File file : files) {
+				QvxBinaryReader reader = decodeFile(file, settings, rowOffset, rowLimit, false,
+						exec.createSubExecutionContext(1.0 / files.size()));
+				addFileStores(reader, file);
+				if (!selectInNextFile(reader.numRecords, reader.numRows)) {
+					break;
+				}
 			}
+			fieldUsesDate = new Boolean[fieldNames.length];
+			return dataToDataTable();
 		}
 		
-		/*If the program gets to this point, it means that all data points could be successfully converted
-		 * to Calendars. Therefore, assign all of the data points a Calendar value
-		 */
-		for(int i = 0; i < data.size(); i++) {
-			data.get(i)[column] = calendars[i];
+		//With one file at a time, the file itself can be decoded in parallel
+		int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+		final boolean parallelFile = parallel && threads == 1;
+		ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "QVX reader");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<QvxBinaryReader>> readers = new ArrayList<Future<QvxBinaryReader>>();
+			for(final File file : files) {
+				final ExecutionContext fileExec = exec.createSubExecutionContext(1.0 / files.size());
+				readers.add(pool.submit(() -> decodeFile(file, settings, 0, 0, parallelFile, fileExec)));
+			}
+			for(int i = 0; i < files.size(); i++) {
+				addFileStores(getReader(readers.get(i)), files.get(i));
+				exec.checkCanceled();
+			}
+		}finally {
+			pool.shutdownNow();
 		}
 		
-		fieldUsesDate[column] = false;
-		return true;
+		fieldUsesDate = new Boolean[fieldNames.length];
+		return dataToDataTable();
 	}
 	
-	private BufferedDataTable dataToDataTable() {
+	private void addFileStores(QvxBinaryReader reader, File file) {
 		
-		//Convert object array (which was read from qvx file) into a KNIME data table
+		// Appends the records that "reader" decoded from one of several files to those of the files before
+		if (fieldNames == null) { //The headers of the files are compatible, so the first one describes all
+			qvxTableHeader = reader.qvxTableHeader;
+			fieldHeaders = reader.fieldHeaders;
+			fieldNames = reader.fieldNames;
+			textCellCaches = reader.textCellCaches;
+		}
+		for(QvxColumnStore store : reader.stores) {
+			store.shiftRecords(recordBase);
+			stores.add(store);
+			storeSources.add(file.getName());
+		}
+		recordBase += reader.numRecords;
+	}
+	
+	private static QvxBinaryReader decodeFile(File file, QvxReaderNodeSettings settings, long rowOffset,
+			long rowLimit, boolean parallel, ExecutionContext exec) throws IOException, CanceledExecutionException {
 		
-		int numRows = data.size();
-		int numCols = data.get(0).length;
+		// Decodes one of several files into the stores of a new reader
 		
-		DataType[] dataTypes = new DataType[fieldNames.length];
+		QvxBinaryReader reader = new QvxBinaryReader();
+		reader.exec = exec;
+		reader.applySettings(settings);
+		reader.inFileName = file.getPath();
+		reader.streaming = false;
+		reader.rowOffset = rowOffset;
+		reader.rowLimit = rowLimit;
+		reader.parallel = parallel;
+		reader.in = reader.openInputBuffer();
+		try {
+			reader.readQvxTableHeader();
+			reader.readBody();
+		}finally {
+			reader.closeInput();
+		}
+		return reader;
+	}
+	
+	private static QvxBinaryReader getReader(Future<QvxBinaryReader> future)
+			throws IOException, CanceledExecutionException {
 		
-		//Cache the FieldAttrType for each field
-		FieldAttrType[] fieldAttrTypes = new FieldAttrType[fieldHeaders.size()];
-		for(int i = 0; i < fieldHeaders.size(); i++) {
-			FieldAttributes fieldFormat = fieldHeaders.get(i).getFieldFormat();
-			if (fieldFormat != null) {
-				fieldAttrTypes[i] = fieldFormat.getType();
+		try {
+			return future.get();
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CanceledExecutionException("Reading was interrupted");
+		}catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException)cause;
+			}else if (cause instanceof CanceledExecutionException) {
+				throw (CanceledExecutionException)cause;
+			}else if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
 			}
+			throw new RuntimeException(cause);
 		}
+	}
+	
+	private static void checkHeaders(List<File> files, QvxReaderNodeSettings settings) throws IOException {
 		
-		for(int i = 0; i < fieldNames.length; i++) {
-			
-			//Get the first non-null value in data
-			int j = 0;
-			Object dataPt;
+		/* Reads the header of each file and checks that its fields can be concatenated with those of the
+		 * first file: the same names in the same order, with the same field attribute type and code page
+		 */
+		
+		List<QvxFieldHeader> firstHeaders = null;
+		for(File file : files) {
+			QvxBinaryReader reader = new QvxBinaryReader();
+			reader.applySettings(settings);
+			reader.inFileName = file.getPath();
+			reader.in = reader.openInputBuffer();
 			try {
-				while((dataPt = data.get(j)[i]) == null) {
-					j += 1;
-				}
-			}catch(IndexOutOfBoundsException e) {
-				throw new IndexOutOfBoundsException("All values in column \"" + fieldNames[i] + "\" are" +
-						" null");
+				reader.readQvxTableHeader();
+			}finally {
+				reader.closeInput();
 			}
 			
-			//Get the type of dataPt and create the appropriate cell type
-			Class<?> dataClass = dataPt.getClass();
-			if(dataClass.equals(java.lang.Double.class) || usesFixedPointDecimals(fieldHeaders.get(i))) {
-				dataTypes[i] = isIntegerColumn(i) ? IntCell.TYPE : DoubleCell.TYPE;
-			}else if (usesFixedPointDecimals(fieldHeaders.get(i))) {
-				dataTypes[i] = DoubleCell.TYPE;
-			}else if(dataClass.equals(java.lang.Integer.class)){
-				dataTypes[i] = IntCell.TYPE;
-			}else if(dataClass.equals(java.lang.String.class)) {
-				dataTypes[i] = attemptConversionToDateOrTime(i) ? DateAndTimeCell.TYPE : StringCell.TYPE;
-			}else if(dataClass.equals(java.util.GregorianCalendar.class)){
-				dataTypes[i] = DateAndTimeCell.TYPE;
-			}else {
-				throw new RuntimeException("Unknown data type: " + dataClass);
+			if (firstHeaders == null) {
+				firstHeaders = reader.fieldHeaders;
+				continue;
+			}
+			String difference = null;
+			if (reader.fieldHeaders.size() != firstHeaders.size()) {
+				difference = "it has " + reader.fieldHeaders.size() + " fields instead of " + firstHeaders.size();
+			}
+			for(int i = 0; difference == null && i < firstHeaders.size(); i++) {
+				QvxFieldHeader expected = firstHeaders.get(i);
+				QvxFieldHeader actual = reader.fieldHeaders.get(i);
+				if (!expected.getFieldName().equals(actual.getFieldName())) {
+					difference = "field " + (i + 1) + " is \"" + actual.getFieldName() + "\" instead of \""
+							+ expected.getFieldName() + "\"";
+				}else if (getFieldAttrType(expected) != getFieldAttrType(actual)) {
+					difference = "field \"" + actual.getFieldName() + "\" has the field attribute type "
+							+ getFieldAttrType(actual) + " instead of " + getFieldAttrType(expected);
+				}else if (getCodePage(expected) != getCodePage(actual)) {
+					difference = "field \"" + actual.getFieldName() + "\" has the code page "
+							+ getCodePage(actual) + " instead of " + getCodePage(expected);
+				}
+			}
+			if (difference != null) {
+				String message = "The header of " + file + " does not match the one of " + files.get(0)
+						+ ": " + difference;
+				LOGGER.error(message);
+				throw new RuntimeException(message);
 			}
 		}
+	}
+	
+	private static FieldAttrType getFieldAttrType(QvxFieldHeader fieldHeader) {
+		return fieldHeader.getFieldFormat() == null ? null : fieldHeader.getFieldFormat().getType();
+	}
+	
+	private static int getCodePage(QvxFieldHeader fieldHeader) {
 		
-		//Start creating the KNIME data by iterating through the data
-		DataColumnSpec[] columnSpecs = DataTableSpec.createColumnSpecs(fieldNames, dataTypes);
-		DataTableSpec spec = new DataTableSpec(columnSpecs);
-		BufferedDataContainer buf = exec.createDataContainer(spec);
-		for (int i = 0; i < numRows; i++) {
-		    DataCell[] cells = new DataCell[numCols];
-		    for (int j = 0; j < numCols; j++) {
-		    	Object dataPt = data.get(i)[j];
-		    	if (dataPt == null) {
-		    		cells[j] = new MissingCell("");
-		    		continue;
-		    	}
-
-		    	if (dataTypes[j].equals(IntCell.TYPE)) {
-		    		cells[j] = new IntCell((int)dataPt);
-		    	}else if(dataTypes[j].equals(DoubleCell.TYPE)) {
-		    		cells[j] = new DoubleCell((double)dataPt);
-		    	}else if(dataTypes[j].equals(StringCell.TYPE)) {
-		    		cells[j] = new StringCell(objectToString(dataPt));
-		    	}else if(dataTypes[j].equals(DateAndTimeCell.TYPE)) {
-		    		Calendar cal = (Calendar)dataPt;
-		    		cells[j] = getCorrectDateAndTimeCell(cal, fieldAttrTypes[j], j);
-				}else {
-					throw new RuntimeException("Unknown data type: " + dataTypes[j]);
-
+		// 0 and 65001 both stand for UTF-8
+		int codePage = fieldHeader.getCodePage() == null ? 0 : fieldHeader.getCodePage().intValue();
+		return codePage == 65001 ? 0 : codePage;
+	}
+	
+	private DataTableSpec createSpec(DataType[] dataTypes) {
+		
+		// Returns the spec of the output, with the source column after the fields if it is added
+		
+		DataColumnSpec[] fieldSpecs = DataTableSpec.createColumnSpecs(fieldNames, dataTypes);
+		if (!sourceColumn) {
+			return new DataTableSpec(fieldSpecs);
+		}
+		String name = SOURCE_COLUMN_NAME;
+		for(int i = 1; Arrays.asList(fieldNames).contains(name); i++) {
+			name = SOURCE_COLUMN_NAME + " (#" + i + ")";
+		}
+		DataColumnSpec[] columnSpecs = Arrays.copyOf(fieldSpecs, fieldSpecs.length + 1);
+		columnSpecs[fieldSpecs.length] = new DataColumnSpecCreator(name, StringCell.TYPE).createSpec();
+		return new DataTableSpec(columnSpecs);
+	}
+	
+	private BufferedDataTable dataToDataTable() {
+		
+		//Convert the columns (which were read from qvx file) into a KNIME data table
+		
+		int numCols = fieldNames.length;
+		
+		DataType[] dataTypes = new DataType[fieldNames.length];
+		FieldAttrType[] fieldAttrTypes = getFieldAttrTypes();
+		
+		//The type of each column was inferred while its values were read
+		for(int i = 0; i < fieldNames.length; i++) {
+			dataTypes[i] = QvxColumnStore.getType(stores, i);
+			Boolean textDateFormat = QvxColumnStore.getTextDateFormat(stores, i);
+			if (dataTypes[i].equals(DateAndTimeCell.TYPE) && textDateFormat != null) {
+				fieldUsesDate[i] = textDateFormat;
+				for(QvxColumnStore store : stores) {
+					if (store.hasKind(i, QvxColumnStore.TEXT)) {
+						store.convertTextToDateTimes(i);
+					}
 				}
-		    }
-		    DataRow row = new DefaultRow("Row_" + i, cells);
-		    buf.addRowToTable(row);
+			}
+		}
+		
+		//Start creating the KNIME data by iterating through the data, store by store
+		DataTableSpec spec = createSpec(dataTypes);
+		BufferedDataContainer buf = exec.createDataContainer(spec);
+		for (int s = 0; s < stores.size(); s++) {
+			QvxColumnStore store = stores.get(s);
+			DataCell sourceCell = new StringCell(storeSources != null ? storeSources.get(s) : source);
+			for (int i = 0; i < store.getNumRows(); i++) {
+			    DataCell[] cells = new DataCell[spec.getNumColumns()];
+			    for (int j = 0; j < numCols; j++) {
+			    	cells[j] = createCell(store, j, i, dataTypes[j], fieldAttrTypes[j]);
+			    	if (cells[j] == null) {
+			    		throw new RuntimeException("Column \"" + fieldNames[j] + "\" of type " +
+			    				dataTypes[j].getName() + " contains a value of a different type");
+			    	}
+			    }
+			    if (sourceColumn) {
+			    	cells[numCols] = sourceCell;
+			    }
+			    DataRow row = new DefaultRow(getRowKey(store, i), cells);
+			    buf.addRowToTable(row);
+			}
 		}
 		buf.close();
 		
 		return buf.getTable();
 	}
 	
-	private boolean isIntegerColumn(int column) {
+	private DataCell createCell(QvxColumnStore store, int column, int row, DataType dataType, FieldAttrType fieldAttrType) {
 		
-		/* If every non-null item in data[:,column] can be converted into a an integer value, do the
-		 * conversions and return true. Otherwise, return false, without doing any of the conversions.
+		/* Creates the cell of the given type for store[row, column], or returns null if the value does
+		 * not fit the type
 		 */
 		
-		for(int i = 0; i < data.size(); i++) {
-			try {
-				Object obj = data.get(i)[column];
-				if (obj == null) {
-					continue;
-				}
-				
-				double dValue = (double)obj;
-				int iValue = (int)dValue;
-				if (dValue != iValue) {
-					return false;
-				}
-			}catch(ClassCastException e) {
-				return false;
-			}
+		byte kind = store.getKind(column, row);
+		if (kind == QvxColumnStore.NULL) {
+			return new MissingCell("");
 		}
 		
-		//Cast all of the double values to integers
-		for(int i = 0; i < data.size(); i++) {
-			Object obj = data.get(i)[column];
-			if (obj == null) {
-				continue;
+		if (dataType.equals(IntCell.TYPE)) {
+			if (kind == QvxColumnStore.INT) {
+				return new IntCell(store.getInt(column, row));
+			}else if (kind == QvxColumnStore.DOUBLE) { //Whole numbers stored as doubles
+				return new IntCell((int)store.getDouble(column, row));
 			}
-			
-			double dValue = (double)obj;
-			int iValue = (int)dValue;
-			data.get(i)[column] = iValue;
+		}else if (dataType.equals(LongCell.TYPE)) {
+			if (kind == QvxColumnStore.INT) {
+				return new LongCell(store.getInt(column, row));
+			}else if (kind == QvxColumnStore.LONG) {
+				return new LongCell(store.getLong(column, row));
+			}
+		}else if(dataType.equals(DoubleCell.TYPE)) {
+			if (kind == QvxColumnStore.INT) {
+				return new DoubleCell(store.getInt(column, row));
+			}else if (kind == QvxColumnStore.LONG) {
+				return new DoubleCell(store.getLong(column, row));
+			}else if (kind == QvxColumnStore.DOUBLE) {
+				return new DoubleCell(store.getDouble(column, row));
+			}
+		}else if(dataType.equals(StringCell.TYPE)) {
+			if (kind == QvxColumnStore.TEXT) { //Repeated values share one cell
+				return textCellCaches[column].getCell(store.getTextBytes(column),
+						store.getTextOffset(column, row), store.getTextLength(column, row));
+			}else if (kind == QvxColumnStore.DOUBLE) {
+				return new StringCell(Double.toString(store.getDouble(column, row)));
+			}else if (kind == QvxColumnStore.INT) {
+				return new StringCell(Integer.toString(store.getInt(column, row)));
+			}else if (kind == QvxColumnStore.LONG) {
+				return new StringCell(Long.toString(store.getLong(column, row)));
+			}
+		}else if(dataType.equals(DateAndTimeCell.TYPE)) {
+			if (kind == QvxColumnStore.DATE_TIME) {
+				Calendar cal = getCalendarFromMillis(store.getDateTime(column, row));
+				return getCorrectDateAndTimeCell(cal, fieldAttrType, column);
+			}
+		}else {
+			throw new RuntimeException("Unknown data type: " + dataType);
 		}
+		return null;
+	}
+	
+	private static String getRowKey(QvxColumnStore store, int row) {
 		
-		return true;
+		// Rows are named after the number of their record in the file
+		return "Row_" + store.getRecord(row);
 	}
 	
-	private void readQvxTableHeader() throws IOException {
+	private FieldAttrType[] getFieldAttrTypes() {
 		
-		/* Reads the entire "inFileName", creates QvxTableHeader object, and stores the location of the
-		 * zero-byte
+		//Cache the FieldAttrType for each field
+		FieldAttrType[] fieldAttrTypes = new FieldAttrType[fieldHeaders.size()];
+		for(int i = 0; i < fieldHeaders.size(); i++) {
+			FieldAttributes fieldFormat = fieldHeaders.get(i).getFieldFormat();
+			if (fieldFormat != null) {
+				fieldAttrTypes[i] = fieldFormat.getType();
+			}
+		}
+		return fieldAttrTypes;
+	}
+	
+	private void endRow(long record) throws CanceledExecutionException {
+		
+		/* Keeps the record in "data", or, in streaming mode, moves the records to the KNIME table as
+		 * soon as the column types are known
 		 */
 		
-		readInputStreamIntoBuffer();
+		data.endRow(recordBase + record);
+		if (!streaming) {
+			return;
+		}else if (streamingTypes == null) {
+			if (data.getNumRows() == QvxTableSpecCreator.SAMPLE_SIZE) {
+				createStreamingContainer();
+			}
+		}else if (data.getNumRows() == STREAMING_BATCH_SIZE) {
+			addStreamingRows();
+		}
+	}
+	
+	private void createStreamingContainer() throws CanceledExecutionException {
 		
-		// Extract the xml portion of buffer
-		zeroByteIndex = indexOf(buffer, (byte)0);
-		String xmlString = byteArrayToString(Arrays.copyOfRange(buffer, 0, zeroByteIndex));
+		/* Derive the column types from the field headers and the sampled records (unless the types of
+		 * the output are given), then move the sampled records into the new container
+		 */
 		
-		// Unmarshal "xmlString" into a QvxTableHeader object
-		try {
-			JAXBContext jaxbContext;
-			jaxbContext = JAXBContext.newInstance( QvxTableHeader.class );
-			Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-			qvxTableHeader = (QvxTableHeader) jaxbUnmarshaller.unmarshal(
-					new StreamSource(new StringReader(xmlString)));
-		}catch(JAXBException e) {
-			LOGGER.error("Error reading qvx file; QvxTableHeader is invalid");
+		if (outputTypes != null) {
+			streamingTypes = outputTypes;
+		}else {
+			streamingTypes = new QvxTableSpecCreator(fieldHeaders).createTypes(data);
 		}
+		fieldUsesDate = new Boolean[fieldNames.length];
 		
-		//Add field names to "data"
-		fieldHeaders = qvxTableHeader.getFields().getQvxFieldHeader();
-		fieldNames = new String[fieldHeaders.size()];
-		for(int i = 0; i < fieldHeaders.size(); i++) {
-			fieldNames[i] = fieldHeaders.get(i).getFieldName();
-		}	
+		if (rowOutput == null) {
+			container = exec.createDataContainer(createSpec(streamingTypes));
+		}
+		addStreamingRows();
 	}
 	
-	private void readInputStreamIntoBuffer() throws IOException {
+	private void addStreamingRows() throws CanceledExecutionException {
 		
-		// Read the entire "inFileName" into a buffer, from either the local file system or Internet
+		// Moves the records in "data" to the container or the row output, or hands them to the row thread
+		if (pipeline != null) {
+			data = pipeline.handOff(data);
+		}else {
+			addRows(data);
+			data.clear();
+		}
+	}
+	
+	private void addRows(QvxColumnStore batch) throws CanceledExecutionException {
 		
-		InputStream inputStream = null;
-		if (new File(inFileName).exists()) {
-			
-			inputStream = new FileInputStream(inFileName);
-			
-			//Set bufferSize
-			File f = new File(inFileName);
-			int bufferSize = (int)f.length();
-			
-			//Read "inFileName" into "buffer"
-			buffer = new byte[bufferSize];
-			try {
-				int bytesRead = inputStream.read(buffer);
-				if (bytesRead != buffer.length) {
-					String errorMessage = "Number of bytes read does match buffer size";
-					LOGGER.error(errorMessage);
-					throw new IllegalStateException(errorMessage);
-				}
-			}catch(IOException e) {
-				String errorMessage = "Error reading from buffer";
-				LOGGER.error(errorMessage);
-				throw new RuntimeException(errorMessage);
-			}finally {
-				inputStream.close();
+		//Given types can be dates where the file has text; text that is all dates or times is converted
+		for(int j = 0; j < fieldNames.length; j++) {
+			if (streamingTypes[j].equals(DateAndTimeCell.TYPE) && batch.hasKind(j, QvxColumnStore.TEXT)
+					&& batch.getTextDateFormat(j) != null) {
+				fieldUsesDate[j] = batch.getTextDateFormat(j);
+				batch.convertTextToDateTimes(j);
 			}
-		}else if (inFileName.startsWith("http")){ //Try finding the file on the Internet
-			
-			try{
-				if (inFileName.startsWith("http")) {
-					inputStream = new BufferedInputStream(new URL(inFileName).openStream());
-					
-					/*Keep reading bytes from inputStream until the inputStream ends; store these bytes
-					in "bytes", then add every item in bytes to a large "buffer" array. This simulates
-					the act of reading the entire file into one buffer with a single read statement.*/
-					
-					List<byte[]> bytes = new ArrayList<>();
-					int totalLength = 0;
-					int numRead = 0;
-					int previousRead = 0;
-					byte[] currBuffer = new byte[WEB_STREAM_MAX_SIZE];
-					while ((numRead = inputStream.read(currBuffer)) != -1) {
-						previousRead = numRead;
-						bytes.add(currBuffer.clone());
-						totalLength += numRead;
-					}
-					bytes.set(bytes.size()-1, Arrays.copyOfRange(
-						bytes.get(bytes.size()-1), 0, previousRead));		
-					buffer = new byte[totalLength];
-					
-					int idx = 0;
-					for(int i = 0; i < bytes.size(); i++) {
-						currBuffer = bytes.get(i);
-						for (int j = 0; j < currBuffer.length; j++) {
-							buffer[idx++] = currBuffer[j];
-						}
-					}						
-				}else {
-					String errorMessage = "File not found: " + inFileName;
+		}
+		
+		FieldAttrType[] fieldAttrTypes = getFieldAttrTypes();
+		DataCell sourceCell = new StringCell(source);
+		for(int i = 0; i < batch.getNumRows(); i++) {
+			DataCell[] cells = new DataCell[sourceColumn ? fieldNames.length + 1 : fieldNames.length];
+			for(int j = 0; j < fieldNames.length; j++) {
+				cells[j] = createCell(batch, j, i, streamingTypes[j], fieldAttrTypes[j]);
+				if (cells[j] == null) {
+					/* The types were published before the file was read (or chosen from the sampled
+					 * records, as in the configured spec), so they cannot change */
+					String errorMessage = "Column \"" + fieldNames[j] + "\" of type " +
+							streamingTypes[j].getName() + " contains a value of a different type in record " +
+							batch.getRecord(i) + "; uncheck \"Stream records into the output table\" to choose" +
+							" the column types from all values";
 					LOGGER.error(errorMessage);
-					throw new FileNotFoundException(errorMessage);
+					throw new RuntimeException(errorMessage);
 				}
-			}catch(FileNotFoundException e2) {
-				String errorMessage = "File not found: " + inFileName;
-				LOGGER.error(errorMessage);
-				throw new FileNotFoundException(errorMessage);
-			}finally {
-				if (inputStream != null) {
-					inputStream.close();
+			}
+			if (sourceColumn) {
+				cells[fieldNames.length] = sourceCell;
+			}
+			DataRow row = new DefaultRow(getRowKey(batch, i), cells);
+			if (rowOutput == null) {
+				container.addRowToTable(row);
+			}else {
+				try {
+					rowOutput.push(row);
+				}catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CanceledExecutionException("Reading was interrupted");
 				}
 			}
 		}
+	}
+	
+	private void readQvxTableHeader() throws IOException {
+		
+		/* Reads "inFileName" up to the zero-byte and creates QvxTableHeader object. The input buffer is
+		 * left at the start of the body.
+		 */
+		
+		//The header of a local file that has not changed since it was last read is not parsed again
+		QvxTableHeaderCache.Entry cached = localFile != null ? QvxTableHeaderCache.get(localFile) : null;
+		if (cached != null) {
+			qvxTableHeader = cached.getHeader();
+			in.seek(cached.getBodyStart());
+			selectFields(qvxTableHeader.getFields().getQvxFieldHeader());
+			return;
+		}
+		
+		// Extract the xml portion of the file
+		int xmlLength = in.readZeroTerminated(1);
+		
+		/* Parse the xml bytes into a QvxTableHeader object; the xml parser decodes them with the
+		 * encoding of the xml declaration */
+		try {
+			qvxTableHeader = QvxTableHeaderCodec.read(
+					new ByteArrayInputStream(in.textArray(), in.textOffset(), xmlLength));
+		}catch(XMLStreamException e) {
+			String message = "Error reading qvx file; QvxTableHeader is invalid: " + e.getMessage();
+			LOGGER.error(message);
+			throw new RuntimeException(message);
+		}
 		
-		if (inputStream != null) {
-			inputStream.close();
+		if (localFile != null) {
+			QvxTableHeaderCache.put(localFile, qvxTableHeader, in.position());
 		}
+		selectFields(qvxTableHeader.getFields().getQvxFieldHeader());
 	}
 	
-	private void readBody() {
+	private void selectFields(List<QvxFieldHeader> allFieldHeaders) {
 		
-		/* Reads the body of the qvx file and populates "data"
+		/* Chooses the fields that become columns of the output, in the order of the file. The other
+		 * fields are skipped while reading.
 		 */
-				
-		boolean usesSeparatorByte = qvxTableHeader.isUsesSeparatorByte();
-		int endOfRecords = usesSeparatorByte ? buffer.length - 1 : buffer.length;
 		
-		int numFields = qvxTableHeader.getFields().getQvxFieldHeader().size();
-		bufferIndex = zeroByteIndex + 1; //Starting index of the body
+		fieldColumns = new int[allFieldHeaders.size()];
+		fieldHeaders = new ArrayList<QvxFieldHeader>();
+		for(int i = 0; i < allFieldHeaders.size(); i++) {
+			QvxFieldHeader fieldHeader = allFieldHeaders.get(i);
+			if (selectedColumns == null || Arrays.asList(selectedColumns).contains(fieldHeader.getFieldName())) {
+				fieldColumns[i] = fieldHeaders.size();
+				fieldHeaders.add(fieldHeader);
+			}else {
+				fieldColumns[i] = -1;
+			}
+		}
 		
-		//Keep reading until the end of the body is reached
-		while(bufferIndex < endOfRecords) {
-			
-			Object[] row = new Object[numFields];
-			
-			//Check for record separator byte if required
-			if (usesSeparatorByte) {
-				if (readBytesFromBuffer(1)[0] != RS_BYTE) {
-					throw new IllegalStateException("Record separator byte is expected");
+		if (selectedColumns != null) {
+			for(String column : selectedColumns) {
+				boolean found = false;
+				for(QvxFieldHeader fieldHeader : fieldHeaders) {
+					found |= column.equals(fieldHeader.getFieldName());
 				}
-			}
-			
-			//Read each field in the row
-			for(int i = 0; i < numFields; i++) {
-				QvxFieldHeader fieldHeader = qvxTableHeader.getFields().getQvxFieldHeader().get(i);
-				QvxFieldType fieldType = fieldHeader.getType();
-				if (!fieldType.equals(QVX_QV_DUAL)) {
-					QvxNullRepresentation nullRepresentation = fieldHeader.getNullRepresentation();
-					switch(nullRepresentation) {
-					
-					case QVX_NULL_FLAG_SUPPRESS_DATA:
-						byte nullFlag = readBytesFromBuffer(1)[0];
-						if (nullFlag == 0) {
-							row[i] = readValueFromBuffer(fieldHeader);
-						}else if (nullFlag == 1) { //Null flag of 1 means a field value is not used
-							row[i] = null;
-						}else {
-							throw new IllegalStateException("Unrecognized QVX_NULL_FLAG_SUPPRESS_DATA flag: " +
-									nullFlag);
-						}
-						break;
-					case QVX_NULL_NEVER:
-						row[i] = readValueFromBuffer(fieldHeader);
-						break;
-					default:
-						throw new RuntimeException("Unrecognized null representation: " + nullRepresentation);
-					}
-				} else { //QVX_QV_DUAL is used; readValueFromBuffer deals with the QvxQvSpecialFlag
-					row[i] = readValueFromBuffer(fieldHeader);
+				if (!found) {
+					throw new RuntimeException("Column \"" + column + "\" is not a field of " + inFileName);
 				}
 			}
-			data.add(row);
 		}
 		
-		//Check for file separator byte if required
-		if (usesSeparatorByte) {
-			if (readBytesFromBuffer(1)[0] != FS_BYTE) {
-				throw new IllegalStateException("File separator byte is expected");
-			}
+		//Add field names to "data"
+		fieldNames = new String[fieldHeaders.size()];
+		for(int i = 0; i < fieldHeaders.size(); i++) {
+			fieldNames[i] = fieldHeaders.get(i).getFieldName();
 		}
 	}
 	
-	private Object readValueFromBuffer(QvxFieldHeader fieldHeader) {
+	private QvxInputBuffer openInputBuffer() throws IOException {
 		
-		int byteWidth = fieldHeader.getByteWidth().intValue();
-		ByteOrder byteOrder = fieldHeader.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		// Open "inFileName" from either the local file system or the Internet
 		
-		switch (fieldHeader.getType()) {
-			case QVX_BLOB:
-				throw new RuntimeException(
-					"Problem with input file: Qvx Reader does not support QvxFieldType: QVX_BLOB");
-			case QVX_IEEE_REAL:
-				if (byteWidth == 4) {
-					Float f = ByteBuffer.wrap(readBytesFromBuffer(4)).order(byteOrder).getFloat();
-					return (float)applyFieldAttr(f, fieldHeader);
-				}else if(byteWidth == 8) {
-					Double d = ByteBuffer.wrap(readBytesFromBuffer(8)).order(byteOrder).getDouble();
-					return applyFieldAttr(d, fieldHeader);
-				}
-				return null;
-			case QVX_PACKED_BCD:
-				throw new RuntimeException(	
-					"Problem with input file: Qvx Reader does not support QvxFieldType: QVX_PACKED_BCD");
-			case QVX_UNSIGNED_INTEGER:
-			case QVX_SIGNED_INTEGER:
-				if(byteWidth == 2) {
-					short s = ByteBuffer.wrap(readBytesFromBuffer(2)).order(byteOrder).getShort();
-					return (short)applyFieldAttr(s, fieldHeader);
-				}else if(byteWidth == 4) {
-					int i = ByteBuffer.wrap(readBytesFromBuffer(4)).order(byteOrder).getInt();
-					return applyFieldAttr(i, fieldHeader);
-				}else if(byteWidth == 8) {
-					long l = ByteBuffer.wrap(readBytesFromBuffer(8)).order(byteOrder).getLong();
-					return (long)applyFieldAttr(l, fieldHeader);
-				}
-				return null;
-			case QVX_TEXT:
-				return bufferToString_zeroTerminated();
-			case QVX_QV_DUAL:
-				if(fieldHeader.getExtent() == QvxFieldExtent.QVX_QV_SPECIAL) {
-					return readQvDualBytes(fieldHeader);
-				}else {
-					throw new IllegalStateException("Fields of type QVX_QV_DUAL must use field extent" +
-							"QVX_QV_SPECIAL");
+		File file = new File(inFileName);
+		if (file.exists()) {
+			return openLocalFile(file);
+		}else if (inFileName.startsWith("http")){ //Try finding the file on the Internet
+			try {
+				//A copy in the cache is read like a local file
+				if (remoteCacheSize > 0) {
+					cachedFile = QvxRemoteFileCache.get(new URL(inFileName), remoteCacheSize, downloadToCache);
+					if (cachedFile != null) {
+						try {
+							return openLocalFile(cachedFile);
+						}catch (IOException | RuntimeException e) {
+							releaseCachedFile();
+							throw e;
+						}
+					}
 				}
-			default:
-				throw new RuntimeException("Unrecognized field type of " + fieldHeader.getType());
+				return new QvxInputBuffer(readAhead(QvxCompressedInput.decompress(QvxHttpChannel.open(new URL(inFileName), parallel))),
+						QvxInputBuffer.DEFAULT_CAPACITY);
+			}catch(FileNotFoundException e) {
+				//Handled below
+			}
 		}
+		
+		String errorMessage = "File not found: " + inFileName;
+		LOGGER.error(errorMessage);
+		throw new FileNotFoundException(errorMessage);
 	}
 	
-	private Object readQvDualBytes(QvxFieldHeader fieldHeader) {
+	private QvxInputBuffer openLocalFile(File file) throws IOException {
 		
-		byte flag = readBytesFromBuffer(1)[0];
-		if (flag == QVX_QV_SPECIAL_NULL.getValue()) {
-			return null;
-			
-		}else if(flag == QVX_QV_SPECIAL_INT.getValue()) {
-			throw new RuntimeException(
-				"Problem with input file: Qvx Reader does not support QvxSpecialFlag: " +
-					QVX_QV_SPECIAL_INT.getValue());
-			
-		}else if(flag == QVX_QV_SPECIAL_DOUBLE.getValue()){
-			ByteOrder byteOrder = fieldHeader.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
-			Object value = ByteBuffer.wrap(readBytesFromBuffer(8)).order(byteOrder).getDouble();
-			return applyFieldAttr(value, fieldHeader);
-			
-		}else if(flag == QVX_QV_SPECIAL_STRING.getValue()) {
-			return applyFieldAttr(bufferToString_zeroTerminated(), fieldHeader);
-			
-		}else if(flag == QVX_QV_SPECIAL_INT_AND_STRING.getValue()) {
-			throw new RuntimeException(
-					"Problem with input file: Qvx Reader does not support QvxSpecialFlag: " +
-						QVX_QV_SPECIAL_INT_AND_STRING.getValue());
-			
-		}else if(flag == QVX_QV_SPECIAL_DOUBLE_AND_STRING.getValue()) {
-			readBytesFromBuffer(8); //Skip the "double" part of this value; it is not used
-			int oldBufferIndex = bufferIndex;
-			try {
-				return applyFieldAttr(Double.parseDouble(bufferToString_zeroTerminated()), fieldHeader);
-			}catch(NumberFormatException e) { //If it is not a number
-				bufferIndex = oldBufferIndex;
-				return applyFieldAttr(bufferToString_zeroTerminated(), fieldHeader);
-			}
+		//Compressed files are decompressed while they are read, from the start to the end
+		if (QvxCompressedInput.isCompressed(file)) {
+			return new QvxInputBuffer(readAhead(QvxCompressedInput.open(file)), QvxInputBuffer.DEFAULT_CAPACITY);
 		}
+		localFile = file;
+		fileLength = file.length();
 		
-		throw new RuntimeException("Unknown QvxQvSpecialFlag: " + flag);
+		/* Memory-mapped files are read ahead by the operating system, files decoded in parallel are not
+		 * read through "in", and jumps with the record index need a channel that can be repositioned */
+		if (pipelined && !memoryMapped && (streaming || !parallel) && !(useRecordIndex && rowOffset > 0)) {
+			return new QvxInputBuffer(readAhead(new RandomAccessFile(file, "r").getChannel()),
+					QvxInputBuffer.DEFAULT_CAPACITY);
+		}
+		return QvxInputBuffer.open(file, 0, memoryMapped);
 	}
 	
-	//Helper methods ------------------------------------
+	private ReadableByteChannel readAhead(ReadableByteChannel channel) {
+		
+		// In pipelined mode, the next parts of the file are read on a thread of their own
+		return pipelined ? new QvxReadAheadChannel(channel, source) : channel;
+	}
 	
-	private String byteArrayToString(byte[] bytes) {
+	private void readBody() throws IOException, CanceledExecutionException {
 		
-		/* Converts each byte in bytes into a character, then concatenates all of these characters
+		/* Reads the body of the qvx file and populates "stores" (or, in streaming mode, the container)
 		 */
 		
-		String s = "";
-		for(int i = 0; i < bytes.length; i++) {
-			s += (char)bytes[i];
+		boolean bodyRead = startBody();
+		while (!bodyRead) {
+			bodyRead = readRecords(Long.MAX_VALUE);
 		}
-		return s;
 	}
 	
-	private int indexOf(byte[] bytes, byte search) {
+	private boolean startBody() throws IOException, CanceledExecutionException {
 		
-		/* Returns the index of the first occurrence of "search" in bytes
-		 * */
+		/* Prepares the record loop for the body, which starts at the current position of the input
+		 * buffer. Returns true if the whole body was already decoded in parallel.
+		 */
+		
+		recordDecoder = new QvxRecordDecoder(
+				QvxFieldDecoder.compile(qvxTableHeader.getFields().getQvxFieldHeader(), fieldColumns),
+				qvxTableHeader.isUsesSeparatorByte());
+		if (!rowFilter.isEmpty()) {
+			List<QvxFieldHeader> allHeaders = qvxTableHeader.getFields().getQvxFieldHeader();
+			QvxRowFilter filter = QvxRowFilter.parse(rowFilter, allHeaders);
+			recordDecoder.setFilter(filter, QvxFieldDecoder.compile(allHeaders, filter.getFieldSlots()));
+		}
+		QvxCodePage[] codePages = QvxCodePage.forFields(fieldHeaders);
+		textCellCaches = new QvxTextCellCache[codePages.length];
+		for(int i = 0; i < codePages.length; i++) {
+			textCellCaches[i] = new QvxTextCellCache(codePages[i]);
+		}
+		
+		boolean selectsRecords = rowOffset > 0 || rowLimit > 0 || rowStep > 1;
 		
-		for(int i = 0; i < bytes.length; i++) {
-			if (bytes[i] == search) {
-				return i;
+		/* Local files can keep a record index; if there is no valid one, it is built while reading
+		 * every record
+		 */
+		File file = localFile;
+		QvxRecordIndex index = null;
+		newIndex = null;
+		if (useRecordIndex && fileLength > 0) {
+			index = QvxRecordIndex.load(file);
+			if (index == null && !selectsRecords) {
+				newIndex = new QvxRecordIndex(file);
 			}
 		}
-		return -1;
-	}
-	
-	private byte[] readBytesFromBuffer(int n) {
 		
-		// Read n bytes from buffer, and set bufferIndex to the index of the next data in the buffer
-		byte[] bytes = Arrays.copyOfRange(buffer, bufferIndex, bufferIndex + n);
-		bufferIndex += n;
+		//Local files can be decoded in chunks on several threads, unless records are streamed or selected
+		if (parallel && !streaming && !selectsRecords && fileLength > 0) {
+			QvxParallelDecoder parallelDecoder = new QvxParallelDecoder(file, memoryMapped, recordDecoder, codePages);
+			stores = parallelDecoder.decode(in.position(), index, newIndex, exec);
+			if (stores != null) {
+				if (newIndex != null) {
+					newIndex.save(file);
+				}
+				numRecords = parallelDecoder.getNumRecords();
+				return true;
+			}
+		}
 		
-		return bytes;
-	}
-	
-	private String bufferToString_zeroTerminated() {
+		final boolean inferTextDates = !streaming || outputTypes != null;
+		data = new QvxColumnStore(codePages, inferTextDates);
+		stores = Collections.singletonList(data);
+		numRows = 0;
 		
-		String s = "";
-		byte b;
-		while ((b = buffer[bufferIndex++]) != 0 ) {
-			s += (char)b;
+		//In pipelined mode, the rows of the streamed batches are added to the container on another thread
+		if (pipelined && streaming && rowOutput == null) {
+			pipeline = new QvxBatchPipeline(() -> new QvxColumnStore(codePages, inferTextDates), this::addRows);
 		}
 		
-		return s;
+		//An offset past the last record selects nothing, which the record index tells without reading
+		if (index != null && rowOffset >= index.getNumRecords()) {
+			nextRecord = index.getNumRecords();
+			endOfBody = true;
+			return false;
+		}
+		
+		//Skip to the first selected record; the record index, if any, allows jumping most of the way
+		long skipped = 0;
+		if (index != null && rowOffset > 0) {
+			int entry = index.findEntry(rowOffset);
+			if (entry >= 0) {
+				in.seek(index.getOffset(entry));
+				skipped = index.getRecord(entry);
+			}
+		}
+		nextRecord = skipped + recordDecoder.skip(in, rowOffset - skipped);
+		endOfBody = nextRecord < rowOffset;
+		return false;
 	}
 	
-	private Object applyFieldAttr(Object data, QvxFieldHeader fieldHeader) {
-				
-		Object returnVal = null;
-		QvxFieldType type = fieldHeader.getType();
+	private boolean readRecords(long maxRecords) throws IOException, CanceledExecutionException {
 		
-		//If there is no formatting for this field, return the original data
-		if (fieldHeader.getFieldFormat() == null || fieldHeader.getFieldFormat().getType() == null) {
-			returnVal = data;
-		}else {	
-			FieldAttrType fieldAttrType = fieldHeader.getFieldFormat().getType();			
-			if (fieldAttrType == FIX || fieldAttrType == REAL) {
-				
-				try {
-					data = (double)data;
-				}catch(ClassCastException e) {
-					//Type of REAL/FIX/MONEY does not necessarily mean data is a number
-					return data;
-				}
-				
-				int nDec = 0; //nDec is 0 if not specified
-				if (fieldHeader.getFieldFormat().getNDec() != null) {
-					nDec = fieldHeader.getFieldFormat().getNDec().intValue();
-				}
-				returnVal = Math.round((double)data * Math.pow(10, nDec))/Math.pow(10, nDec);
-				
-			}else if (fieldAttrType == MONEY) {
-				
-				try {
-					data = (double)data;
-				}catch(ClassCastException e) {
-					//Type of REAL/FIX/MONEY does not necessarily mean data is a number
-					return data;
-				}
-				returnVal = Math.round((double)data * 100.0) / 100.0;
-			}else if (fieldAttrType == DATE || fieldAttrType == INTERVAL || fieldAttrType == TIME
-					|| fieldAttrType == TIMESTAMP ) {
-				
-				if (type == QVX_QV_DUAL) { 
-					Calendar cal = null;
-					try {
-						//It is expected that value is a double that represents days since 1900
-						cal = getDateFromQvxReal((double)data);
-					}catch(ClassCastException e1) {
-						try {
-							cal = getDateFromString((String)data);
-						}catch(ClassCastException e2) {
-							return null;
-						}
-					}catch(Exception e) {
-						String errorMessage = "Error reading qvx file";
-						LOGGER.error(errorMessage);
-						throw new RuntimeException(errorMessage);
-					}
-					
-					return cal;
-				}else {
-					LOGGER.warn("WARNING: Unimplemented QvxFieldType-FieldAttrType combination: " +
-							type + ", " + fieldAttrType + "; This field will not be stored as a " +
-							fieldAttrType);
-					return data;
+		/* Goes through at most "maxRecords" more records of the body; returns true once the end of the
+		 * body or the row limit is reached
+		 */
+		
+		//Records rejected by the row filter are counted, but not kept
+		long record = nextRecord;
+		long recordStart = in.position();
+		for(long n = 0; n < maxRecords && !endOfBody && (rowLimit == 0 || numRows < rowLimit); n++) {
+			int result = recordDecoder.decode(in, data);
+			if (result == QvxRecordDecoder.END_OF_BODY) {
+				endOfBody = true;
+				break;
+			}
+			if (newIndex != null && record % QvxRecordIndex.INTERVAL == 0) {
+				newIndex.add(record, recordStart);
+			}
+			if (result == QvxRecordDecoder.DECODED) {
+				endRow(record);
+				numRows++;
+			}
+			
+			if (++record % PROGRESS_INTERVAL == 0 && exec != null) {
+				exec.checkCanceled();
+				if (fileLength > 0) {
+					exec.setProgress((double)in.position() / fileLength, "Read " + record + " records");
 				}
+			}
+			
+			//Skip the records between two selected records
+			if (rowStep > 1) {
+				long stepSkipped = recordDecoder.skip(in, rowStep - 1);
+				record += stepSkipped;
+				endOfBody = stepSkipped < rowStep - 1;
+			}
+			recordStart = in.position();
+		}
+		nextRecord = record;
+		if (!endOfBody && (rowLimit == 0 || numRows < rowLimit)) {
+			return false;
+		}
+		
+		numRecords = record;
+		if (newIndex != null) {
+			newIndex.setNumRecords(record);
+			newIndex.save(localFile);
+		}
+		
+		if (streaming) {
+			if (streamingTypes == null) { //Fewer records than the sample size
+				createStreamingContainer();
 			}else {
-				returnVal = data;
-			}
-		}
-		
-		//Apply fixPointDecimals if it has a non-zero integer value
-		QvxFieldType fieldType = fieldHeader.getType();
-		if (fieldType == QVX_SIGNED_INTEGER || fieldType == QVX_UNSIGNED_INTEGER
-			|| fieldType == QVX_QV_DUAL)
-		{
-			if (usesFixedPointDecimals(fieldHeader)) {
-				int fixPointDecimals = fieldHeader.getFixPointDecimals().intValue();
-				if (returnVal.getClass().equals(java.lang.Integer.class)) {
-					double dReturnVal = Double.parseDouble(Integer.toString((int)returnVal));
-					return dReturnVal / Math.pow(10.0, fixPointDecimals);
-				}else if (returnVal.getClass().equals(java.lang.Double.class)) {
-					return (double)returnVal / Math.pow(10.0, fixPointDecimals);
-				}
+				addStreamingRows();
+			}
+			if (pipeline != null) {
+				pipeline.finish();
+				pipeline = null;
 			}
 		}
-		return returnVal;
+		return true;
 	}
 	
-	private boolean usesFixedPointDecimals(QvxFieldHeader fieldHeader) {
-		BigInteger fixPointDecimals = fieldHeader.getFixPointDecimals();
-		return fixPointDecimals != null && fixPointDecimals.intValue() != 0;
-	}
+	//Helper methods ------------------------------------
 	
 	private DataCell getCorrectDateAndTimeCell(
 		Calendar cal, FieldAttrType fieldAttrType, int column)
 	{
 		
-		if (fieldAttrType.equals(DATE) || (fieldUsesDate[column] != null && fieldUsesDate[column])) {
+		if (fieldAttrType == DATE || (fieldUsesDate[column] != null && fieldUsesDate[column])) {
 			if (cal.get(Calendar.YEAR) < 1900) { // Dates less than 1900 are not supported by this class
 				return new MissingCell("");
 			}else {
 				return new DateAndTimeCell(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH),
 					cal.get(Calendar.DAY_OF_MONTH));
 			}
-		}else if (fieldAttrType.equals(TIMESTAMP)) {
+		}else if (fieldAttrType == TIMESTAMP) {
 			if (cal.get(Calendar.YEAR) < 1900) { // Dates less than 1900 are not supported by this class
 				return new DateAndTimeCell(cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE),
 					cal.get(Calendar.SECOND), cal.get(Calendar.MILLISECOND));
@@ -726,7 +1061,7 @@ public class QvxBinaryReader {
 					cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE),
 					cal.get(Calendar.SECOND), cal.get(Calendar.MILLISECOND));
 			}
-		}else if (fieldAttrType.equals(INTERVAL) || fieldAttrType.equals(TIME)
+		}else if (fieldAttrType == INTERVAL || fieldAttrType == TIME
 					|| (fieldUsesDate[column] != null  && !fieldUsesDate[column])) {
 			return new DateAndTimeCell(cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE),
 					cal.get(Calendar.SECOND), cal.get(Calendar.MILLISECOND));
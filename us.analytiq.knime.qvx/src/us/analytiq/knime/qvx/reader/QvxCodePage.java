@@ -0,0 +1,105 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.knime.core.node.NodeLogger;
+
+import us.analytiq.knime.qvx.jaxb.QvxTableHeader.Fields.QvxFieldHeader;
+
+/**
+ * Decodes the text of a qvx field according to the CodePage of its field header.
+ *
+ * Code pages are Windows code page identifiers; a field without a code page is read as UTF-8. Text
+ * that only consists of ASCII characters is copied into the String directly when the code page is
+ * ASCII-compatible.
+ */
+final class QvxCodePage {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(QvxCodePage.class);
+
+	static final QvxCodePage UTF_8 = new QvxCodePage(StandardCharsets.UTF_8);
+
+	private final Charset charset;
+	private final int terminatorWidth; //Number of zero bytes that end a zero-terminated value
+	private final boolean asciiCompatible;
+
+	private QvxCodePage(Charset charset) {
+
+		this.charset = charset;
+		this.terminatorWidth = charset.name().startsWith("UTF-16") ? 2 : 1;
+		String name = charset.name();
+		this.asciiCompatible = terminatorWidth == 1 && (charset.equals(StandardCharsets.UTF_8)
+			|| charset.equals(StandardCharsets.US_ASCII) || name.startsWith("ISO-8859-")
+			|| name.startsWith("windows-125"));
+	}
+
+	static QvxCodePage[] forFields(List<QvxFieldHeader> fieldHeaders) {
+
+		QvxCodePage[] codePages = new QvxCodePage[fieldHeaders.size()];
+		for(int i = 0; i < codePages.length; i++) {
+			QvxFieldHeader fieldHeader = fieldHeaders.get(i);
+			codePages[i] = forCodePage(
+				fieldHeader.getCodePage() == null ? 0 : fieldHeader.getCodePage().intValue());
+		}
+		return codePages;
+	}
+
+	static QvxCodePage forCodePage(int codePage) {
+
+		switch (codePage) {
+			case 0:
+			case 65001:
+				return UTF_8;
+			case 1200:
+				return new QvxCodePage(StandardCharsets.UTF_16LE);
+			case 1201:
+				return new QvxCodePage(StandardCharsets.UTF_16BE);
+			case 20127:
+				return new QvxCodePage(StandardCharsets.US_ASCII);
+			case 28591:
+				return new QvxCodePage(StandardCharsets.ISO_8859_1);
+			default:
+				break;
+		}
+
+		//Other code pages are looked up by the names Java uses for them
+		String[] names = codePage >= 28592 && codePage <= 28606 ?
+			new String[] {"ISO-8859-" + (codePage - 28590)} :
+			new String[] {"windows-" + codePage, "x-windows-" + codePage, "cp" + codePage, "x-IBM" + codePage};
+		for(String name : names) {
+			if (Charset.isSupported(name)) {
+				return new QvxCodePage(Charset.forName(name));
+			}
+		}
+		LOGGER.warn("Code page " + codePage + " is not supported; its text is read as UTF-8");
+		return UTF_8;
+	}
+
+	int terminatorWidth() {
+		return terminatorWidth;
+	}
+
+	String decode(byte[] bytes, int offset, int length) {
+
+		if (asciiCompatible && isAscii(bytes, offset, length)) {
+			return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+		}
+		return new String(bytes, offset, length, charset);
+	}
+
+	byte[] encode(String s) {
+		return s.getBytes(charset);
+	}
+
+	private static boolean isAscii(byte[] bytes, int offset, int length) {
+
+		for(int i = offset; i < offset + length; i++) {
+			if (bytes[i] < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,458 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import org.knime.core.data.DataType;
+import org.knime.core.data.date.DateAndTimeCell;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.LongCell;
+import org.knime.core.data.def.StringCell;
+
+import static us.analytiq.knime.qvx.reader.QvxReaderUtil.getDateFromString;
+import static us.analytiq.knime.qvx.reader.QvxReaderUtil.getTimeFromString;
+
+/**
+ * Column-oriented store for the decoded records of a qvx table.
+ *
+ * Each column keeps its values in primitive arrays indexed by row: ints, longs, doubles, date/times
+ * (as milliseconds in the longs), and text as one byte array with an offset per row. Null values are
+ * kept in a bitmap. A column only allocates the arrays for the kinds of values it receives, and it
+ * only keeps a kind per row once it has received values of more than one kind (which QVX_QV_DUAL
+ * fields can do).
+ *
+ * Values are added through the {@link QvxValueSink} methods, one per column, and a record is
+ * finished with {@link #endRow(long)}, which also keeps the number of the record in the file. The
+ * record numbers are only stored per row once the rows stop being consecutive records.
+ *
+ * While values are added, each column also moves up a type lattice (int, long, double, date, time,
+ * string), so its KNIME type is known as soon as the last record has been read, without another pass
+ * over the values. Text that parses as a date or time is parsed only once; the result is kept next
+ * to the text until the column either turns out to be plain text or is converted.
+ */
+final class QvxColumnStore implements QvxValueSink {
+
+	static final byte NULL = 0;
+	static final byte INT = 1;
+	static final byte LONG = 2;
+	static final byte DOUBLE = 3;
+	static final byte TEXT = 4;
+	static final byte DATE_TIME = 5;
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int NUMBER_KINDS = (1 << INT) | (1 << LONG) | (1 << DOUBLE);
+
+	//Whether the text values of a column are all dates, all times or neither
+	private static final byte TEXT_UNKNOWN = 0;
+	private static final byte TEXT_DATE = 1;
+	private static final byte TEXT_TIME = 2;
+	private static final byte TEXT_PLAIN = 3;
+
+	private final Column[] columns;
+	private final boolean inferTextDates;
+	private int numRows = 0;
+	private long firstRecord = 0; //Record number of the first row
+	private long[] records; //Record number of each row, once the rows are not consecutive records
+
+	QvxColumnStore(QvxCodePage[] codePages, boolean inferTextDates) {
+
+		this.inferTextDates = inferTextDates;
+		columns = new Column[codePages.length];
+		for(int i = 0; i < codePages.length; i++) {
+			columns[i] = new Column(codePages[i]);
+		}
+	}
+
+	void endRow(long record) {
+
+		if (numRows == 0) {
+			firstRecord = record;
+		}else if (records == null && record != firstRecord + numRows) {
+			records = new long[Math.max(INITIAL_CAPACITY, 2 * numRows)];
+			for(int i = 0; i < numRows; i++) {
+				records[i] = firstRecord + i;
+			}
+		}
+		if (records != null) {
+			if (numRows == records.length) {
+				records = Arrays.copyOf(records, 2 * numRows);
+			}
+			records[numRows] = record;
+		}
+		numRows++;
+	}
+
+	long getRecord(int row) {
+		return records == null ? firstRecord + row : records[row];
+	}
+
+	void shiftRecords(long offset) {
+
+		// Adds "offset" to the record number of every row
+		firstRecord += offset;
+		if (records != null) {
+			for(int i = 0; i < numRows; i++) {
+				records[i] += offset;
+			}
+		}
+	}
+
+	void clear() {
+
+		// Removes all rows; the arrays are kept for the next rows
+		for(Column column : columns) {
+			column.clear();
+		}
+		numRows = 0;
+		records = null;
+	}
+
+	int getNumRows() {
+		return numRows;
+	}
+
+	int getNumColumns() {
+		return columns.length;
+	}
+
+	byte getKind(int column, int row) {
+		return columns[column].getKind(row);
+	}
+
+	int getInt(int column, int row) {
+		return columns[column].ints[row];
+	}
+
+	long getLong(int column, int row) {
+		return columns[column].longs[row];
+	}
+
+	double getDouble(int column, int row) {
+		return columns[column].doubles[row];
+	}
+
+	long getDateTime(int column, int row) {
+		return columns[column].longs[row];
+	}
+
+	String getText(int column, int row) {
+
+		Column c = columns[column];
+		int start = c.textOffsets[row];
+		return c.codePage.decode(c.textBytes, start, c.textOffsets[row + 1] - start);
+	}
+
+	byte[] getTextBytes(int column) {
+		return columns[column].textBytes;
+	}
+
+	int getTextOffset(int column, int row) {
+		return columns[column].textOffsets[row];
+	}
+
+	int getTextLength(int column, int row) {
+
+		Column c = columns[column];
+		return c.textOffsets[row + 1] - c.textOffsets[row];
+	}
+
+	boolean hasKind(int column, byte kind) {
+
+		// Returns true if at least one value of the column is of the given kind
+		return columns[column].hasKind(kind);
+	}
+
+	DataType getType(int column) {
+
+		// Returns the KNIME type of the column at the current top of its type lattice
+		return columns[column].getType();
+	}
+
+	Boolean getTextDateFormat(int column) {
+
+		/* Returns true if every value of the column is text that can be converted into a date,
+		 * false if every value is text that can be converted into a time, and null otherwise
+		 */
+		return columns[column].getTextDateFormat();
+	}
+
+	static DataType getType(List<QvxColumnStore> stores, int column) {
+
+		// Returns the KNIME type of a column whose rows are split over several stores, in order
+		return mergeLattices(stores, column).getType();
+	}
+
+	static Boolean getTextDateFormat(List<QvxColumnStore> stores, int column) {
+		return mergeLattices(stores, column).getTextDateFormat();
+	}
+
+	private static Column mergeLattices(List<QvxColumnStore> stores, int column) {
+
+		Column merged = new Column(null);
+		for(QvxColumnStore store : stores) {
+			Column c = store.columns[column];
+			merged.kindMask |= c.kindMask;
+			merged.wholeNumbers &= c.wholeNumbers;
+			if (merged.textFormat == TEXT_UNKNOWN) {
+				merged.textFormat = c.textFormat;
+			}else if (c.textFormat != TEXT_UNKNOWN && c.textFormat != merged.textFormat) {
+				merged.textFormat = TEXT_PLAIN;
+			}
+		}
+		return merged;
+	}
+
+	void convertTextToDateTimes(int column) {
+
+		// Replaces the values of a column of date or time text with the dates or times parsed from it
+
+		Column c = columns[column];
+		if (getTextDateFormat(column) == null) {
+			throw new IllegalStateException("Column " + column + " does not consist of dates or times");
+		}
+		c.kindMask = 1 << DATE_TIME;
+		c.kind = DATE_TIME;
+		c.textBytes = null;
+		c.textOffsets = null;
+		c.textLength = 0;
+	}
+
+	@Override
+	public void putNull(int column) {
+
+		Column c = columns[column];
+		c.set(numRows, NULL);
+		c.nulls[numRows >> 6] |= 1L << numRows;
+	}
+
+	@Override
+	public void putInt(int column, int value) {
+
+		Column c = columns[column];
+		c.set(numRows, INT);
+		if (c.ints == null) {
+			c.ints = new int[c.capacity];
+		}
+		c.ints[numRows] = value;
+	}
+
+	@Override
+	public void putLong(int column, long value) {
+
+		Column c = columns[column];
+		c.set(numRows, LONG);
+		if (c.longs == null) {
+			c.longs = new long[c.capacity];
+		}
+		c.longs[numRows] = value;
+	}
+
+	@Override
+	public void putDouble(int column, double value) {
+
+		Column c = columns[column];
+		c.set(numRows, DOUBLE);
+		if (c.doubles == null) {
+			c.doubles = new double[c.capacity];
+		}
+		c.doubles[numRows] = value;
+		if (c.wholeNumbers && value != (int)value) {
+			c.wholeNumbers = false;
+		}
+	}
+
+	@Override
+	public void putText(int column, byte[] bytes, int offset, int length) {
+
+		Column c = columns[column];
+		if (c.textOffsets == null) {
+			c.textOffsets = new int[c.capacity + 1];
+			c.textBytes = new byte[Math.max(length, INITIAL_CAPACITY)];
+		}
+		c.set(numRows, TEXT);
+		if (c.textLength + length > c.textBytes.length) {
+			long newLength = Math.max((long)c.textLength + length, 2L * c.textBytes.length);
+			if (newLength > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("Text values of a column exceed 2 GB; " +
+						"use streaming mode for this file");
+			}
+			c.textBytes = Arrays.copyOf(c.textBytes, (int)newLength);
+		}
+		System.arraycopy(bytes, offset, c.textBytes, c.textLength, length);
+		c.textLength += length;
+		c.textOffsets[numRows + 1] = c.textLength;
+
+		if (inferTextDates && c.textFormat != TEXT_PLAIN) {
+			updateTextFormat(c, c.codePage.decode(bytes, offset, length));
+		}
+	}
+
+	private void updateTextFormat(Column c, String s) {
+
+		/* The first text value decides whether the column can be a date or a time column; every later
+		 * value must be of the same format. Once a value does not match, the column is plain text and
+		 * no more values are parsed.
+		 */
+
+		Calendar cal = null;
+		if (c.textFormat == TEXT_UNKNOWN) {
+			cal = getDateFromString(s);
+			if (cal != null) {
+				c.textFormat = TEXT_DATE;
+			}else {
+				cal = getTimeFromString(s);
+				c.textFormat = cal != null ? TEXT_TIME : TEXT_PLAIN;
+			}
+		}else {
+			cal = c.textFormat == TEXT_DATE ? getDateFromString(s) : getTimeFromString(s);
+			if (cal == null) {
+				c.textFormat = TEXT_PLAIN;
+			}
+		}
+
+		if (cal != null) {
+			if (c.longs == null) {
+				c.longs = new long[c.capacity];
+			}
+			c.longs[numRows] = cal.getTimeInMillis();
+		}
+	}
+
+	@Override
+	public void putDateTime(int column, long millis) {
+
+		Column c = columns[column];
+		c.set(numRows, DATE_TIME);
+		if (c.longs == null) {
+			c.longs = new long[c.capacity];
+		}
+		c.longs[numRows] = millis;
+	}
+
+	private static final class Column {
+
+		private final QvxCodePage codePage;
+		private int capacity = 0;
+		private long[] nulls = new long[0]; //One bit per row
+		private byte kind = NULL; //The kind of every non-null value, as long as "kinds" is null
+		private byte[] kinds; //The kind of each row, once the column has values of different kinds
+
+		//Type lattice
+		private int kindMask = 0; //Bit (1 << kind) is set for each kind of non-null value
+		private boolean wholeNumbers = true; //Every DOUBLE value is a whole number in the int range
+		private byte textFormat = TEXT_UNKNOWN;
+
+		Column(QvxCodePage codePage) {
+			this.codePage = codePage;
+		}
+
+		private int[] ints;
+		private long[] longs; //LONG and DATE_TIME values
+		private double[] doubles;
+		private byte[] textBytes;
+		private int[] textOffsets; //The text of row i is textBytes[textOffsets[i]:textOffsets[i+1]]
+		private int textLength = 0;
+
+		DataType getType() {
+
+			if (kindMask == 0) { //All values are missing
+				return StringCell.TYPE;
+			}
+			boolean hasNumbers = (kindMask & NUMBER_KINDS) != 0;
+			if (hasKind(TEXT)) {
+				return !hasNumbers && getTextDateFormat() != null ? DateAndTimeCell.TYPE : StringCell.TYPE;
+			}else if (hasKind(DATE_TIME)) {
+				return DateAndTimeCell.TYPE;
+			}else if (hasKind(DOUBLE)) {
+				//Whole numbers are stored in an IntCell column, unless the field also has int or long values
+				return wholeNumbers && kindMask == (1 << DOUBLE) ? IntCell.TYPE : DoubleCell.TYPE;
+			}else if (hasKind(LONG)) {
+				return LongCell.TYPE;
+			}
+			return IntCell.TYPE;
+		}
+
+		Boolean getTextDateFormat() {
+
+			if (kindMask != (1 << TEXT)) {
+				return null;
+			}
+			if (textFormat == TEXT_DATE) {
+				return true;
+			}else if (textFormat == TEXT_TIME) {
+				return false;
+			}
+			return null;
+		}
+
+		boolean hasKind(byte valueKind) {
+			return (kindMask & (1 << valueKind)) != 0;
+		}
+
+		byte getKind(int row) {
+
+			if ((nulls[row >> 6] & (1L << row)) != 0) {
+				return NULL;
+			}
+			return kinds == null ? kind : kinds[row];
+		}
+
+		void set(int row, byte valueKind) {
+
+			if (row >= capacity) {
+				grow();
+			}
+			if (valueKind != NULL) {
+				kindMask |= 1 << valueKind;
+			}
+			if (kinds != null) {
+				kinds[row] = valueKind;
+			}else if (valueKind != NULL && valueKind != kind) {
+				if (kind == NULL) {
+					kind = valueKind;
+				}else {
+					kinds = new byte[capacity];
+					Arrays.fill(kinds, 0, row, kind);
+					kinds[row] = valueKind;
+				}
+			}
+			if (textOffsets != null) {
+				textOffsets[row + 1] = textLength;
+			}
+		}
+
+		void clear() {
+
+			Arrays.fill(nulls, 0);
+			kind = NULL;
+			kinds = null;
+			textLength = 0;
+			kindMask = 0;
+			wholeNumbers = true;
+			textFormat = TEXT_UNKNOWN;
+		}
+
+		private void grow() {
+
+			capacity = capacity == 0 ? INITIAL_CAPACITY : capacity * 2;
+			nulls = Arrays.copyOf(nulls, (capacity + 63) >> 6);
+			if (kinds != null) {
+				kinds = Arrays.copyOf(kinds, capacity);
+			}
+			if (ints != null) {
+				ints = Arrays.copyOf(ints, capacity);
+			}
+			if (longs != null) {
+				longs = Arrays.copyOf(longs, capacity);
+			}
+			if (doubles != null) {
+				doubles = Arrays.copyOf(doubles, capacity);
+			}
+			if (textOffsets != null) {
+				textOffsets = Arrays.copyOf(textOffsets, capacity + 1);
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Detects qvx files that are compressed with gzip or zlib (deflate) and decompresses them while they
+ * are read.
+ *
+ * A qvx file starts with the xml declaration of its header, so the first two bytes tell a plain file
+ * from a gzip stream (0x1F 0x8B) or a zlib stream (a deflate method byte and a check byte). The data
+ * is inflated into the read buffer as it is decoded; it is never inflated into a temporary file or an
+ * array of the whole file. Compressed files can only be read from the start to the end, so they are
+ * not memory-mapped, decoded in parallel or indexed.
+ */
+final class QvxCompressedInput {
+
+	private static final int INFLATER_BUFFER_SIZE = 1 << 16; //64 KB
+
+	private QvxCompressedInput() {
+	}
+
+	static boolean isCompressed(File file) throws IOException {
+
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			return in.length() >= 2 && isCompressed(in.read(), in.read());
+		}
+	}
+
+	static ReadableByteChannel open(File file) throws IOException {
+
+		// Opens a local file that isCompressed() accepted
+		return decompress(new FileInputStream(file));
+	}
+
+	static ReadableByteChannel decompress(ReadableByteChannel channel) throws IOException {
+
+		// Returns a channel with the decompressed bytes of "channel", or with its bytes if it is not compressed
+		return decompress(Channels.newInputStream(channel));
+	}
+
+	private static ReadableByteChannel decompress(InputStream inputStream) throws IOException {
+
+		//Look at the first two bytes and put them back
+		PushbackInputStream in = new PushbackInputStream(inputStream, 2);
+		int b0 = in.read();
+		int b1 = b0 < 0 ? -1 : in.read();
+		if (b1 >= 0) {
+			in.unread(b1);
+		}
+		if (b0 >= 0) {
+			in.unread(b0);
+		}
+
+		try {
+			if (isGzip(b0, b1)) {
+				return Channels.newChannel(new GZIPInputStream(in, INFLATER_BUFFER_SIZE));
+			}else if (isZlib(b0, b1)) {
+				return Channels.newChannel(new InflaterInputStream(in, new Inflater(), INFLATER_BUFFER_SIZE));
+			}
+		}catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		return Channels.newChannel(in);
+	}
+
+	private static boolean isCompressed(int b0, int b1) {
+		return isGzip(b0, b1) || isZlib(b0, b1);
+	}
+
+	private static boolean isGzip(int b0, int b1) {
+		return b0 == 0x1F && b1 == 0x8B;
+	}
+
+	private static boolean isZlib(int b0, int b1) {
+
+		// Method 8 (deflate) with a window of at most 32 KB, and a check value that makes the pair a multiple of 31
+		return b0 >= 0 && b1 >= 0 && (b0 & 0x0F) == 8 && (b0 >> 4) <= 7 && ((b0 << 8) | b1) % 31 == 0;
+	}
+}
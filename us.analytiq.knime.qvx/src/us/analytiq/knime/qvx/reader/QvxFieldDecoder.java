@@ -0,0 +1,517 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Calendar;
+import java.util.List;
+
+import org.knime.core.node.NodeLogger;
+
+import us.analytiq.knime.qvx.jaxb.FieldAttrType;
+import us.analytiq.knime.qvx.jaxb.QvxFieldExtent;
+import us.analytiq.knime.qvx.jaxb.QvxNullRepresentation;
+import us.analytiq.knime.qvx.jaxb.QvxTableHeader.Fields.QvxFieldHeader;
+
+import static us.analytiq.knime.qvx.jaxb.FieldAttrType.DATE;
+import static us.analytiq.knime.qvx.jaxb.FieldAttrType.FIX;
+import static us.analytiq.knime.qvx.jaxb.FieldAttrType.INTERVAL;
+import static us.analytiq.knime.qvx.jaxb.FieldAttrType.MONEY;
+import static us.analytiq.knime.qvx.jaxb.FieldAttrType.REAL;
+import static us.analytiq.knime.qvx.jaxb.FieldAttrType.TIME;
+import static us.analytiq.knime.qvx.jaxb.FieldAttrType.TIMESTAMP;
+import static us.analytiq.knime.qvx.jaxb.QvxFieldType.QVX_QV_DUAL;
+import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_DOUBLE;
+import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_DOUBLE_AND_STRING;
+import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_INT;
+import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_INT_AND_STRING;
+import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_NULL;
+import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_STRING;
+import static us.analytiq.knime.qvx.reader.QvxReaderUtil.getDateFromString;
+import static us.analytiq.knime.qvx.reader.QvxReaderUtil.getMillisFromQvxReal;
+
+/**
+ * Decodes the values of one field of a qvx table.
+ *
+ * The field headers are compiled once, before the body is read, into one decoder per field. Each
+ * decoder is specialized for the type, byte width, byte order, null representation, FIX/REAL/MONEY
+ * rounding and fixPointDecimals of its field, so decoding a value needs no header lookups and no
+ * allocation.
+ */
+abstract class QvxFieldDecoder {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(QvxFieldDecoder.class);
+
+	protected final int column;
+
+	QvxFieldDecoder(int column) {
+		this.column = column;
+	}
+
+	/* Reads the next value of the field from "in" and passes it to "sink" */
+	abstract void decode(QvxInputBuffer in, QvxValueSink sink) throws IOException;
+
+	/* Moves "in" past the next value of the field without decoding it */
+	void skip(QvxInputBuffer in) throws IOException {
+		in.skip(byteWidth());
+	}
+
+	/* Number of bytes of every value of the field, or -1 if the values do not all have the same length */
+	int byteWidth() {
+		return -1;
+	}
+
+	static int recordWidth(QvxFieldDecoder[] decoders) {
+
+		// Returns the number of bytes of every record, or -1 if records do not all have the same length
+
+		int width = 0;
+		for(QvxFieldDecoder decoder : decoders) {
+			if (decoder.byteWidth() < 0) {
+				return -1;
+			}
+			width += decoder.byteWidth();
+		}
+		return width;
+	}
+
+	static QvxFieldDecoder[] compile(List<QvxFieldHeader> fieldHeaders) {
+
+		int[] columns = new int[fieldHeaders.size()];
+		for(int i = 0; i < columns.length; i++) {
+			columns[i] = i;
+		}
+		return compile(fieldHeaders, columns);
+	}
+
+	static QvxFieldDecoder[] compile(List<QvxFieldHeader> fieldHeaders, int[] columns) {
+
+		/* "columns" holds, for each field, the column its values are passed to, or -1 if the values
+		 * of the field are skipped
+		 */
+
+		QvxFieldDecoder[] decoders = new QvxFieldDecoder[fieldHeaders.size()];
+		QvxCodePage[] codePages = QvxCodePage.forFields(fieldHeaders);
+		for(int i = 0; i < decoders.length; i++) {
+			if (columns[i] >= 0) {
+				decoders[i] = compile(fieldHeaders.get(i), columns[i], codePages[i]);
+			}else {
+				decoders[i] = new SkippedFieldDecoder(compile(fieldHeaders.get(i), i, codePages[i]));
+			}
+		}
+		return decoders;
+	}
+
+	private static QvxFieldDecoder compile(QvxFieldHeader fieldHeader, int column, QvxCodePage codePage) {
+
+		int byteWidth = fieldHeader.getByteWidth() == null ? 0 : fieldHeader.getByteWidth().intValue();
+		ByteOrder byteOrder = Boolean.TRUE.equals(fieldHeader.isBigEndian()) ?
+				ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		FieldAttrType fieldAttrType = fieldHeader.getFieldFormat() == null ?
+				null : fieldHeader.getFieldFormat().getType();
+		double roundFactor = getRoundFactor(fieldHeader);
+		int fixPointDecimals = fieldHeader.getFixPointDecimals() == null ?
+				0 : fieldHeader.getFixPointDecimals().intValue();
+
+		if (isDateOrTime(fieldAttrType) && fieldHeader.getType() != QVX_QV_DUAL) {
+			LOGGER.warn("WARNING: Unimplemented QvxFieldType-FieldAttrType combination: " +
+					fieldHeader.getType() + ", " + fieldAttrType + "; This field will not be stored as a " +
+					fieldAttrType);
+		}
+
+		QvxFieldDecoder decoder;
+		switch (fieldHeader.getType()) {
+			case QVX_SIGNED_INTEGER:
+			case QVX_UNSIGNED_INTEGER:
+				if (byteWidth != 2 && byteWidth != 4 && byteWidth != 8) {
+					throw new RuntimeException("Problem with input file: Qvx Reader does not support a " +
+							"byte width of " + byteWidth + " for field " + fieldHeader.getFieldName());
+				}
+				if (fixPointDecimals != 0) {
+					decoder = new FixedPointDecoder(column, byteWidth, byteOrder,
+							Math.pow(10.0, fixPointDecimals), roundFactor);
+				}else if (byteWidth == 2) {
+					decoder = new ShortDecoder(column, byteOrder);
+				}else if (byteWidth == 4) {
+					decoder = new IntDecoder(column, byteOrder);
+				}else {
+					decoder = new LongDecoder(column, byteOrder);
+				}
+				break;
+			case QVX_IEEE_REAL:
+				if (byteWidth == 4) {
+					decoder = new FloatDecoder(column, byteOrder, roundFactor);
+				}else if (byteWidth == 8) {
+					decoder = new DoubleDecoder(column, byteOrder, roundFactor);
+				}else {
+					throw new RuntimeException("Problem with input file: Qvx Reader does not support a " +
+							"byte width of " + byteWidth + " for field " + fieldHeader.getFieldName());
+				}
+				break;
+			case QVX_TEXT:
+				decoder = new TextDecoder(column, codePage.terminatorWidth());
+				break;
+			case QVX_QV_DUAL:
+				if (fieldHeader.getExtent() != QvxFieldExtent.QVX_QV_SPECIAL) {
+					throw new IllegalStateException("Fields of type QVX_QV_DUAL must use field extent" +
+							"QVX_QV_SPECIAL");
+				}
+				//QVX_QV_DUAL fields encode null values in their QvxQvSpecialFlag
+				return new DualDecoder(column, codePage, byteOrder, roundFactor,
+						fixPointDecimals == 0 ? 1.0 : Math.pow(10.0, fixPointDecimals),
+						isDateOrTime(fieldAttrType));
+			default:
+				throw new RuntimeException(
+					"Problem with input file: Qvx Reader does not support QvxFieldType: " + fieldHeader.getType());
+		}
+
+		QvxNullRepresentation nullRepresentation = fieldHeader.getNullRepresentation();
+		if (nullRepresentation == QvxNullRepresentation.QVX_NULL_FLAG_SUPPRESS_DATA) {
+			return new NullFlagDecoder(column, decoder);
+		}else if (nullRepresentation == QvxNullRepresentation.QVX_NULL_NEVER) {
+			return decoder;
+		}
+		throw new RuntimeException("Unrecognized null representation: " + nullRepresentation);
+	}
+
+	private static double getRoundFactor(QvxFieldHeader fieldHeader) {
+
+		// Returns the power of ten that numbers of the field are rounded to, or 0 if they are not rounded
+
+		if (fieldHeader.getFieldFormat() == null) {
+			return 0;
+		}
+		FieldAttrType fieldAttrType = fieldHeader.getFieldFormat().getType();
+		if (fieldAttrType == FIX || fieldAttrType == REAL) {
+			int nDec = 0; //nDec is 0 if not specified
+			if (fieldHeader.getFieldFormat().getNDec() != null) {
+				nDec = fieldHeader.getFieldFormat().getNDec().intValue();
+			}
+			return Math.pow(10, nDec);
+		}else if (fieldAttrType == MONEY) {
+			return 100.0;
+		}
+		return 0;
+	}
+
+	private static boolean isDateOrTime(FieldAttrType fieldAttrType) {
+		return fieldAttrType == DATE || fieldAttrType == INTERVAL || fieldAttrType == TIME
+				|| fieldAttrType == TIMESTAMP;
+	}
+
+	static double round(double value, double roundFactor) {
+		return roundFactor == 0 ? value : Math.round(value * roundFactor) / roundFactor;
+	}
+
+	private static final class SkippedFieldDecoder extends QvxFieldDecoder {
+
+		private final QvxFieldDecoder valueDecoder;
+
+		SkippedFieldDecoder(QvxFieldDecoder valueDecoder) {
+			super(-1);
+			this.valueDecoder = valueDecoder;
+		}
+
+		@Override
+		int byteWidth() {
+			return valueDecoder.byteWidth();
+		}
+
+		@Override
+		void decode(QvxInputBuffer in, QvxValueSink sink) throws IOException {
+			valueDecoder.skip(in);
+		}
+
+		@Override
+		void skip(QvxInputBuffer in) throws IOException {
+			valueDecoder.skip(in);
+		}
+	}
+
+	private static final class NullFlagDecoder extends QvxFieldDecoder {
+
+		private final QvxFieldDecoder valueDecoder;
+
+		NullFlagDecoder(int column, QvxFieldDecoder valueDecoder) {
+			super(column);
+			this.valueDecoder = valueDecoder;
+		}
+
+		@Override
+		void decode(QvxInputBuffer in, QvxValueSink sink) throws IOException {
+
+			byte nullFlag = in.get();
+			if (nullFlag == 0) {
+				valueDecoder.decode(in, sink);
+			}else if (nullFlag == 1) { //Null flag of 1 means a field value is not used
+				sink.putNull(column);
+			}else {
+				throw new IllegalStateException("Unrecognized QVX_NULL_FLAG_SUPPRESS_DATA flag: " + nullFlag);
+			}
+		}
+
+		@Override
+		void skip(QvxInputBuffer in) throws IOException {
+
+			byte nullFlag = in.get();
+			if (nullFlag == 0) {
+				valueDecoder.skip(in);
+			}else if (nullFlag != 1) {
+				throw new IllegalStateException("Unrecognized QVX_NULL_FLAG_SUPPRESS_DATA flag: " + nullFlag);
+			}
+		}
+	}
+
+	private static final class ShortDecoder extends QvxFieldDecoder {
+
+		private final ByteOrder byteOrder;
+
+		ShortDecoder(int column, ByteOrder byteOrder) {
+			super(column);
+			this.byteOrder = byteOrder;
+		}
+
+		@Override
+		int byteWidth() {
+			return 2;
+		}
+
+		@Override
+		void decode(QvxInputBuffer in, QvxValueSink sink) throws IOException {
+			sink.putInt(column, in.getShort(byteOrder));
+		}
+	}
+
+	private static final class IntDecoder extends QvxFieldDecoder {
+
+		private final ByteOrder byteOrder;
+
+		IntDecoder(int column, ByteOrder byteOrder) {
+			super(column);
+			this.byteOrder = byteOrder;
+		}
+
+		@Override
+		int byteWidth() {
+			return 4;
+		}
+
+		@Override
+		void decode(QvxInputBuffer in, QvxValueSink sink) throws IOException {
+			sink.putInt(column, in.getInt(byteOrder));
+		}
+	}
+
+	private static final class LongDecoder extends QvxFieldDecoder {
+
+		private final ByteOrder byteOrder;
+
+		LongDecoder(int column, ByteOrder byteOrder) {
+			super(column);
+			this.byteOrder = byteOrder;
+		}
+
+		@Override
+		int byteWidth() {
+			return 8;
+		}
+
+		@Override
+		void decode(QvxInputBuffer in, QvxValueSink sink) throws IOException {
+			sink.putLong(column, in.getLong(byteOrder));
+		}
+	}
+
+	private static final class FixedPointDecoder extends QvxFieldDecoder {
+
+		private final int byteWidth;
+		private final ByteOrder byteOrder;
+		private final double divisor; //10 ^ fixPointDecimals
+		private final double roundFactor;
+
+		FixedPointDecoder(int column, int byteWidth, ByteOrder byteOrder, double divisor, double roundFactor) {
+			super(column);
+			this.byteWidth = byteWidth;
+			this.byteOrder = byteOrder;
+			this.divisor = divisor;
+			this.roundFactor = roundFactor;
+		}
+
+		@Override
+		int byteWidth() {
+			return byteWidth;
+		}
+
+		@Override
+		void decode(QvxInputBuffer in, QvxValueSink sink) throws IOException {
+
+			double value;
+			if (byteWidth == 2) {
+				value = in.getShort(byteOrder);
+			}else if (byteWidth == 4) {
+				value = in.getInt(byteOrder);
+			}else {
+				value = in.getLong(byteOrder);
+			}
+			sink.putDouble(column, round(value / divisor, roundFactor));
+		}
+	}
+
+	private static final class FloatDecoder extends QvxFieldDecoder {
+
+		private final ByteOrder byteOrder;
+		private final double roundFactor;
+
+		FloatDecoder(int column, ByteOrder byteOrder, double roundFactor) {
+			super(column);
+			this.byteOrder = byteOrder;
+			this.roundFactor = roundFactor;
+		}
+
+		@Override
+		int byteWidth() {
+			return 4;
+		}
+
+		@Override
+		void decode(QvxInputBuffer in, QvxValueSink sink) throws IOException {
+			sink.putDouble(column, round(in.getFloat(byteOrder), roundFactor));
+		}
+	}
+
+	private static final class DoubleDecoder extends QvxFieldDecoder {
+
+		private final ByteOrder byteOrder;
+		private final double roundFactor;
+
+		DoubleDecoder(int column, ByteOrder byteOrder, double roundFactor) {
+			super(column);
+			this.byteOrder = byteOrder;
+			this.roundFactor = roundFactor;
+		}
+
+		@Override
+		int byteWidth() {
+			return 8;
+		}
+
+		@Override
+		void decode(QvxInputBuffer in, QvxValueSink sink) throws IOException {
+			sink.putDouble(column, round(in.getDouble(byteOrder), roundFactor));
+		}
+	}
+
+	private static final class TextDecoder extends QvxFieldDecoder {
+
+		private final int terminatorWidth;
+
+		TextDecoder(int column, int terminatorWidth) {
+			super(column);
+			this.terminatorWidth = terminatorWidth;
+		}
+
+		@Override
+		void decode(QvxInputBuffer in, QvxValueSink sink) throws IOException {
+
+			int length = in.readZeroTerminated(terminatorWidth);
+			sink.putText(column, in.textArray(), in.textOffset(), length);
+		}
+
+		@Override
+		void skip(QvxInputBuffer in) throws IOException {
+			in.skipZeroTerminated(terminatorWidth);
+		}
+	}
+
+	private static final class DualDecoder extends QvxFieldDecoder {
+
+		private final QvxCodePage codePage;
+		private final ByteOrder byteOrder;
+		private final double roundFactor;
+		private final double divisor; //10 ^ fixPointDecimals
+		private final boolean isDateOrTime;
+
+		DualDecoder(int column, QvxCodePage codePage, ByteOrder byteOrder, double roundFactor, double divisor,
+				boolean isDateOrTime) {
+			super(column);
+			this.codePage = codePage;
+			this.byteOrder = byteOrder;
+			this.roundFactor = roundFactor;
+			this.divisor = divisor;
+			this.isDateOrTime = isDateOrTime;
+		}
+
+		@Override
+		void decode(QvxInputBuffer in, QvxValueSink sink) throws IOException {
+
+			byte flag = in.get();
+			if (flag == QVX_QV_SPECIAL_NULL.getValue()) {
+				sink.putNull(column);
+
+			}else if(flag == QVX_QV_SPECIAL_DOUBLE.getValue()){
+				putNumber(in.getDouble(byteOrder), sink);
+
+			}else if(flag == QVX_QV_SPECIAL_STRING.getValue()) {
+				int length = in.readZeroTerminated(codePage.terminatorWidth());
+				putText(in.textArray(), in.textOffset(), length, sink);
+
+			}else if(flag == QVX_QV_SPECIAL_DOUBLE_AND_STRING.getValue()) {
+				in.skip(8); //Skip the "double" part of this value; it is not used
+				int length = in.readZeroTerminated(codePage.terminatorWidth());
+				double value;
+				try {
+					value = Double.parseDouble(codePage.decode(in.textArray(), in.textOffset(), length));
+				}catch(NumberFormatException e) { //If it is not a number
+					putText(in.textArray(), in.textOffset(), length, sink);
+					return;
+				}
+				putNumber(value, sink);
+
+			}else if(flag == QVX_QV_SPECIAL_INT.getValue() || flag == QVX_QV_SPECIAL_INT_AND_STRING.getValue()) {
+				throw new RuntimeException(
+					"Problem with input file: Qvx Reader does not support QvxSpecialFlag: " + flag);
+			}else {
+				throw new RuntimeException("Unknown QvxQvSpecialFlag: " + flag);
+			}
+		}
+
+		@Override
+		void skip(QvxInputBuffer in) throws IOException {
+
+			byte flag = in.get();
+			if (flag == QVX_QV_SPECIAL_DOUBLE.getValue()) {
+				in.skip(8);
+			}else if (flag == QVX_QV_SPECIAL_STRING.getValue()) {
+				in.skipZeroTerminated(codePage.terminatorWidth());
+			}else if (flag == QVX_QV_SPECIAL_DOUBLE_AND_STRING.getValue()) {
+				in.skip(8);
+				in.skipZeroTerminated(codePage.terminatorWidth());
+			}else if (flag != QVX_QV_SPECIAL_NULL.getValue()) {
+				throw new RuntimeException("Unsupported QvxQvSpecialFlag: " + flag);
+			}
+		}
+
+		private void putNumber(double value, QvxValueSink sink) {
+
+			if (isDateOrTime) {
+				//It is expected that value is a double that represents days since 1900
+				sink.putDateTime(column, getMillisFromQvxReal(value));
+			}else {
+				sink.putDouble(column, round(value, roundFactor) / divisor);
+			}
+		}
+
+		private void putText(byte[] bytes, int offset, int length, QvxValueSink sink) {
+
+			if (isDateOrTime) {
+				Calendar cal = getDateFromString(codePage.decode(bytes, offset, length));
+				if (cal == null) {
+					sink.putNull(column);
+				}else {
+					sink.putDateTime(column, cal.getTimeInMillis());
+				}
+			}else {
+				sink.putText(column, bytes, offset, length);
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.streamable.RowOutput;
+
+/**
+ * Row iterator of a {@link QvxFileTable}.
+ *
+ * Each iterator opens the file itself and decodes it with its own {@link QvxBinaryReader}, so
+ * several iterators of a table can be used at the same time. The records are decoded when rows are
+ * asked for, one batch of QvxBinaryReader.STREAMING_BATCH_SIZE rows at a time; an iterator that is
+ * not read to the end only decodes the records up to the rows it returned.
+ */
+final class QvxFileRowIterator extends CloseableRowIterator {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(QvxFileRowIterator.class);
+
+	private final QvxBinaryReader reader = new QvxBinaryReader();
+	private final ArrayDeque<DataRow> rows = new ArrayDeque<DataRow>(); //Decoded rows that were not returned yet
+	private final String fileName;
+	private boolean moreRecords = true;
+
+	QvxFileRowIterator(QvxReaderNodeSettings settings, DataTableSpec spec, ExecutionContext exec) throws IOException {
+
+		fileName = settings.getFileName();
+		reader.openRows(settings, spec, new RowOutput() {
+			@Override
+			public void push(DataRow row) {
+				rows.add(row);
+			}
+
+			@Override
+			public void close() {
+				// The rows are returned by the iterator
+			}
+		}, exec);
+	}
+
+	@Override
+	public boolean hasNext() {
+
+		// Decode the next batch when the rows of the previous one have been returned
+		while (rows.isEmpty() && moreRecords) {
+			try {
+				moreRecords = reader.readRows(QvxBinaryReader.STREAMING_BATCH_SIZE);
+			}catch (IOException | CanceledExecutionException e) {
+				close();
+				String errorMessage = "Error reading " + fileName + ": " + e.getMessage();
+				LOGGER.error(errorMessage);
+				throw new RuntimeException(errorMessage, e);
+			}
+		}
+		return !rows.isEmpty();
+	}
+
+	@Override
+	public DataRow next() {
+
+		if (!hasNext()) {
+			throw new NoSuchElementException("No more rows in " + fileName);
+		}
+		return rows.poll();
+	}
+
+	@Override
+	public void close() {
+
+		// Releases the file; the iterator returns no more rows
+		moreRecords = false;
+		rows.clear();
+		try {
+			reader.closeInput();
+		}catch (IOException e) {
+			LOGGER.warn("Cannot close " + fileName + ": " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The local qvx files that a directory or a glob pattern stands for.
+ *
+ * A directory stands for the qvx files in it (".qvx" and ".qvx.gz"); a path whose last part contains
+ * a glob pattern ("*", "?", "[...]" or "{...}"), for example "/data/sales_2019-*.qvx", for the files
+ * in its directory whose names match the pattern and end in ".qvx" or ".qvx.gz". Subdirectories are
+ * not searched. The files are sorted by name, which is the order in which their rows are concatenated.
+ */
+final class QvxFileSet {
+
+	private QvxFileSet() {
+	}
+
+	static boolean isFileSet(String fileName) {
+
+		// Returns true if "fileName" is a directory or a glob pattern rather than a single file
+		if (fileName == null || fileName.isEmpty() || fileName.startsWith("http")) {
+			return false;
+		}
+		File file = new File(fileName);
+		return file.isDirectory() || (!file.exists() && isPattern(file.getName()));
+	}
+
+	static List<File> list(String fileName) throws FileNotFoundException {
+
+		File file = new File(fileName);
+		File directory;
+		PathMatcher matcher;
+		if (file.isDirectory()) {
+			directory = file;
+			matcher = null;
+		}else {
+			directory = file.getAbsoluteFile().getParentFile();
+			matcher = FileSystems.getDefault().getPathMatcher("glob:" + file.getName());
+		}
+
+		File[] candidates = directory == null ? null : directory.listFiles();
+		List<File> files = new ArrayList<File>();
+		if (candidates != null) {
+			Arrays.sort(candidates);
+			for(File candidate : candidates) {
+				String name = candidate.getName();
+				if (!candidate.isFile()) {
+					continue;
+				}
+				//A pattern such as "sales*" must not pick up the record index files next to the qvx files
+				if (isQvxFile(name) && (matcher == null || matcher.matches(Paths.get(name)))) {
+					files.add(candidate);
+				}
+			}
+		}
+		if (files.isEmpty()) {
+			throw new FileNotFoundException("No qvx files found for " + fileName);
+		}
+		return files;
+	}
+
+	private static boolean isPattern(String name) {
+
+		for(char c : new char[] {'*', '?', '[', '{'}) {
+			if (name.indexOf(c) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isQvxFile(String name) {
+
+		String lowerCaseName = name.toLowerCase();
+		return lowerCaseName.endsWith(".qvx") || lowerCaseName.endsWith(".qvx.gz");
+	}
+}
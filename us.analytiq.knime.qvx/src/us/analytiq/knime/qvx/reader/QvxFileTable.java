@@ -0,0 +1,91 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.LinkedList;
+
+import org.knime.core.data.DataTable;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.NodeLogger;
+
+/**
+ * A {@link DataTable} that decodes the rows of a qvx file while they are iterated.
+ *
+ * Nothing but the table header and a sample of the records is read when the table is created; each
+ * {@link #iterator()} reads the file again from the start, with its own cursor, and decodes only the
+ * records of the rows it returns. The columns have the types that the reader chooses in streaming
+ * mode, which do not depend on the records after the sample; an iterator fails on a later value that
+ * does not fit its column's type. All settings of the reader apply,
+ * including directories and glob patterns, which are read one file after the other.
+ */
+public final class QvxFileTable implements DataTable {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(QvxFileTable.class);
+
+	private final QvxReaderNodeSettings settings;
+	private final DataTableSpec spec;
+	private final ExecutionContext exec; //Progress and cancellation of the iterators, or null
+
+	//The iterators that were created, so that dispose() can close the files they read
+	private final LinkedList<WeakReference<QvxFileRowIterator>> iterators = new LinkedList<WeakReference<QvxFileRowIterator>>();
+
+	public QvxFileTable(String fileName) throws IOException {
+		this(createSettings(fileName), null);
+	}
+
+	QvxFileTable(QvxReaderNodeSettings settings, ExecutionContext exec) throws IOException {
+
+		//A copy, so that the settings of the caller are not changed
+		this.settings = new QvxReaderNodeSettings(settings);
+		this.settings.setStreaming(true); //The types are chosen without reading the whole file
+		this.spec = new QvxBinaryReader().readSpec(this.settings);
+		this.exec = exec;
+	}
+
+	private static QvxReaderNodeSettings createSettings(String fileName) {
+
+		QvxReaderNodeSettings settings = new QvxReaderNodeSettings();
+		settings.setFileName(fileName);
+		return settings;
+	}
+
+	@Override
+	public DataTableSpec getDataTableSpec() {
+		return spec;
+	}
+
+	@Override
+	public QvxFileRowIterator iterator() {
+
+		try {
+			QvxFileRowIterator iterator = new QvxFileRowIterator(settings, spec, exec);
+			synchronized (iterators) {
+				iterators.removeIf(reference -> reference.get() == null);
+				iterators.add(new WeakReference<QvxFileRowIterator>(iterator));
+			}
+			return iterator;
+		}catch (IOException e) {
+			String errorMessage = "Error opening " + settings.getFileName() + ": " + e.getMessage();
+			LOGGER.error(errorMessage);
+			throw new RuntimeException(errorMessage, e);
+		}
+	}
+
+	/**
+	 * Closes the files of all iterators of the table, including those that were not read to the end.
+	 * The iterators return no more rows afterwards; new iterators can still be created.
+	 */
+	public void dispose() {
+
+		synchronized (iterators) {
+			for(WeakReference<QvxFileRowIterator> reference : iterators) {
+				QvxFileRowIterator iterator = reference.get();
+				if (iterator != null) {
+					iterator.close();
+				}
+			}
+			iterators.clear();
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Channel over a qvx file on a web server that downloads segments of the file in parallel.
+ *
+ * A single connection is often much slower than the network it runs over. When the server supports
+ * range requests, the file is cut into SEGMENT_SIZE segments that are downloaded on CONNECTIONS
+ * connections at the same time, at most MAX_SEGMENTS_AHEAD segments ahead of the reader, and the
+ * channel returns them in file order, so they are decoded while the next ones arrive. The later
+ * requests send the strong ETag of the first response (or else its Last-Modified date) in If-Range,
+ * so a file that changes during the download fails instead of being mixed up. Servers without range
+ * support, or without either of them, are read over one connection, directly from the response.
+ */
+final class QvxHttpChannel implements ReadableByteChannel {
+
+	static final int SEGMENT_SIZE = 4 << 20; //4 MB
+	private static final int CONNECTIONS = 4;
+	private static final int MAX_SEGMENTS_AHEAD = 2 * CONNECTIONS;
+
+	private final URL url;
+	private final long fileSize;
+	private final String validator; //Strong entity tag or Last-Modified date of the first response
+	private final ExecutorService pool;
+	private final ArrayDeque<Future<ByteBuffer>> segments = new ArrayDeque<>(); //Requested segments, in file order
+	private long nextSegmentStart; //Offset of the first segment that has not been requested yet
+	private ByteBuffer segment; //The segment being read
+	private boolean open = true;
+
+	private QvxHttpChannel(URL url, long fileSize, String validator, ByteBuffer firstSegment) {
+
+		this.url = url;
+		this.fileSize = fileSize;
+		this.validator = validator;
+		this.segment = firstSegment;
+		this.nextSegmentStart = firstSegment.remaining();
+		this.pool = Executors.newFixedThreadPool(CONNECTIONS, runnable -> {
+			Thread thread = new Thread(runnable, "QVX download " + url);
+			thread.setDaemon(true);
+			return thread;
+		});
+		requestSegments();
+	}
+
+	static ReadableByteChannel open(URL url, boolean parallel) throws IOException {
+
+		/* Opens the file at "url". With "parallel", the first segment is requested with a range; if
+		 * the server answers with the part, the size of the file and a value for If-Range, the rest is
+		 * downloaded in parallel. Otherwise the file is read as it arrives.
+		 */
+
+		URLConnection connection = url.openConnection();
+		if (!parallel || !(connection instanceof HttpURLConnection)) {
+			return Channels.newChannel(connection.getInputStream());
+		}
+
+		connection.setRequestProperty("Range", "bytes=0-" + (SEGMENT_SIZE - 1));
+		InputStream in = connection.getInputStream();
+		long fileSize = getFileSize((HttpURLConnection)connection);
+		long firstLength = connection.getContentLengthLong();
+		if (fileSize <= SEGMENT_SIZE || firstLength <= 0 || firstLength > SEGMENT_SIZE) {
+			return Channels.newChannel(in); //No range support, or the whole file is in this response
+		}
+		String validator = getValidator(connection);
+		try {
+			if (validator == null) { //Segments could come from different versions of the file
+				return Channels.newChannel(url.openConnection().getInputStream());
+			}
+			ByteBuffer firstSegment = readFully(in, (int)firstLength);
+			return new QvxHttpChannel(url, fileSize, validator, firstSegment);
+		}finally {
+			in.close();
+		}
+	}
+
+	private static String getValidator(URLConnection connection) {
+
+		/* Returns what If-Range can compare to tell that the file has not changed: a strong ETag, since
+		 * weak ones (W/"...") are not allowed there, or else the Last-Modified date. Returns null if
+		 * there is neither.
+		 */
+		String etag = connection.getHeaderField("ETag");
+		if (etag != null && !etag.startsWith("W/")) {
+			return etag;
+		}
+		return connection.getHeaderField("Last-Modified");
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+
+		if (!open) {
+			throw new ClosedChannelException();
+		}
+		if (!segment.hasRemaining()) {
+			if (segments.isEmpty()) {
+				return -1;
+			}
+			segment = takeSegment();
+			requestSegments();
+		}
+		int n = Math.min(dst.remaining(), segment.remaining());
+		ByteBuffer part = segment.duplicate();
+		part.limit(part.position() + n);
+		dst.put(part);
+		segment.position(segment.position() + n);
+		return n;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public void close() {
+
+		// Stops the downloads that are still running
+		open = false;
+		for(Future<ByteBuffer> pending : segments) {
+			pending.cancel(true);
+		}
+		segments.clear();
+		pool.shutdownNow();
+	}
+
+	private void requestSegments() {
+
+		// Keeps MAX_SEGMENTS_AHEAD segments requested, or all that are left
+		while (segments.size() < MAX_SEGMENTS_AHEAD && nextSegmentStart < fileSize) {
+			final long start = nextSegmentStart;
+			final int length = (int)Math.min(SEGMENT_SIZE, fileSize - start);
+			segments.add(pool.submit(() -> downloadSegment(start, length)));
+			nextSegmentStart += length;
+		}
+	}
+
+	private ByteBuffer takeSegment() throws IOException {
+
+		try {
+			return segments.poll().get();
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Download of " + url + " was interrupted", e);
+		}catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			}
+			throw new IOException("Download of " + url + " failed: " + e.getCause(), e.getCause());
+		}
+	}
+
+	private ByteBuffer downloadSegment(long start, int length) throws IOException {
+
+		HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+		connection.setRequestProperty("Range", "bytes=" + start + "-" + (start + length - 1));
+		connection.setRequestProperty("If-Range", validator);
+		try (InputStream in = connection.getInputStream()) {
+			String contentRange = connection.getHeaderField("Content-Range");
+			if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL || contentRange == null
+					|| !contentRange.startsWith("bytes " + start + "-")) {
+				throw new IOException("The file changed during the download, or the server stopped "
+						+ "answering range requests: " + url);
+			}
+			return readFully(in, length);
+		}
+	}
+
+	private static long getFileSize(HttpURLConnection connection) throws IOException {
+
+		// Returns the size of the file from a partial response ("bytes 0-n/size"), or -1
+		String contentRange = connection.getHeaderField("Content-Range");
+		if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL || contentRange == null) {
+			return -1;
+		}
+		int slash = contentRange.lastIndexOf('/');
+		try {
+			return slash < 0 ? -1 : Long.parseLong(contentRange.substring(slash + 1).trim());
+		}catch (NumberFormatException e) { //The size is "*" if the server does not know it
+			return -1;
+		}
+	}
+
+	private static ByteBuffer readFully(InputStream in, int length) throws IOException {
+
+		byte[] bytes = new byte[length];
+		int n = 0;
+		while (n < length) {
+			int count = in.read(bytes, n, length - n);
+			if (count < 0) {
+				throw new IOException("Unexpected end of a downloaded segment after " + n + " of " + length + " bytes");
+			}
+			n += count;
+		}
+		return ByteBuffer.wrap(bytes);
+	}
+}
@@ -0,0 +1,318 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Fixed-size, refillable window over the bytes of a qvx file.
+ *
+ * Bytes are read relative to a cursor. When a read runs past the end of the window, the unread
+ * bytes (and those after the mark, if one is set) are moved to the front of the window and the rest
+ * of it is refilled from the underlying stream, so the memory used does not depend on the size of
+ * the file. Subclasses may provide the
+ * window in a different way by overriding {@link #fill(int)}.
+ */
+class QvxInputBuffer implements Closeable {
+
+	static final int DEFAULT_CAPACITY = 1 << 20; //1 MB
+
+	private final ReadableByteChannel channel;
+	protected ByteBuffer buffer; //position() is the cursor, limit() is the end of the valid bytes
+	protected long bufferStart = 0; //Offset in the file of buffer[0]
+	private boolean endOfStream = false;
+	protected long mark = -1; //Offset that reset() returns to, or -1; the window always keeps it
+
+	//Bytes of the last zero-terminated value; see readZeroTerminated()
+	private byte[] textArray;
+	private int textOffset;
+	private byte[] scratch = new byte[256];
+
+	QvxInputBuffer(InputStream inputStream, int capacity) {
+
+		this(Channels.newChannel(inputStream), ByteBuffer.allocate(capacity), 0);
+	}
+
+	QvxInputBuffer(ReadableByteChannel channel, int capacity) {
+
+		this(channel, ByteBuffer.allocate(capacity), 0);
+	}
+
+	protected QvxInputBuffer(ReadableByteChannel channel, ByteBuffer buffer, long start) {
+
+		// "start" is the offset in the file of the next byte the channel will return
+		this.channel = channel;
+		this.buffer = buffer;
+		this.buffer.limit(0);
+		this.bufferStart = start;
+	}
+
+	static QvxInputBuffer open(File file, long start, boolean memoryMapped) throws IOException {
+
+		// Opens a local file for reading from the given offset
+
+		FileChannel fileChannel = new RandomAccessFile(file, "r").getChannel();
+		if (memoryMapped) {
+			return new QvxMappedInputBuffer(fileChannel, QvxMappedInputBuffer.DEFAULT_WINDOW_SIZE, start);
+		}
+		fileChannel.position(start);
+		return new QvxInputBuffer(fileChannel, ByteBuffer.allocate(DEFAULT_CAPACITY), start);
+	}
+
+	long position() {
+
+		// Offset in the file of the next byte that will be read
+		return bufferStart + buffer.position();
+	}
+
+	boolean hasRemaining() throws IOException {
+
+		return buffer.hasRemaining() || fill(1);
+	}
+
+	byte peek() throws IOException {
+
+		require(1);
+		return buffer.get(buffer.position());
+	}
+
+	byte get() throws IOException {
+
+		require(1);
+		return buffer.get();
+	}
+
+	void get(byte[] dst) throws IOException {
+
+		require(dst.length);
+		buffer.get(dst);
+	}
+
+	short getShort(ByteOrder order) throws IOException {
+
+		require(2);
+		return buffer.order(order).getShort();
+	}
+
+	int getInt(ByteOrder order) throws IOException {
+
+		require(4);
+		return buffer.order(order).getInt();
+	}
+
+	long getLong(ByteOrder order) throws IOException {
+
+		require(8);
+		return buffer.order(order).getLong();
+	}
+
+	float getFloat(ByteOrder order) throws IOException {
+
+		require(4);
+		return buffer.order(order).getFloat();
+	}
+
+	double getDouble(ByteOrder order) throws IOException {
+
+		require(8);
+		return buffer.order(order).getDouble();
+	}
+
+	void skip(int n) throws IOException {
+
+		require(n);
+		buffer.position(buffer.position() + n);
+	}
+
+	int readZeroTerminated(int terminatorWidth) throws IOException {
+
+		/* Reads a value that ends with "terminatorWidth" zero bytes (2 for UTF-16 text, 1 otherwise)
+		 * and returns its length, without the zero bytes. Until the next call, the bytes of the value
+		 * are available in textArray() starting at textOffset().
+		 */
+
+		int end = findValueEnd(terminatorWidth);
+		int start = buffer.position();
+		exposeText(start, end - start);
+		buffer.position(end + terminatorWidth);
+		return end - start;
+	}
+
+	void skipZeroTerminated(int terminatorWidth) throws IOException {
+
+		// Moves the cursor past a zero-terminated value without exposing its bytes
+		int end = findValueEnd(terminatorWidth); //May replace the window
+		buffer.position(end + terminatorWidth);
+	}
+
+	long length() throws IOException {
+
+		// Returns the length of the file, or -1 if it is not known
+		return channel instanceof SeekableByteChannel ? ((SeekableByteChannel)channel).size() : -1;
+	}
+
+	void mark() {
+
+		// Remembers the position of the cursor; until clearMark(), refills keep the bytes from here on
+		mark = position();
+	}
+
+	void reset() throws IOException {
+
+		// Moves the cursor back to the mark
+		seek(mark);
+		mark = -1;
+	}
+
+	void clearMark() {
+		mark = -1;
+	}
+
+	void seek(long position) throws IOException {
+
+		/* Moves the cursor to the given offset in the file. Offsets in the window are reached by moving
+		 * the cursor, others by repositioning the channel (or, if it cannot be repositioned, by reading
+		 * forward).
+		 */
+
+		long relative = position - bufferStart;
+		if (relative >= 0 && relative <= buffer.limit()) {
+			buffer.position((int)relative);
+		}else if (channel instanceof SeekableByteChannel) {
+			((SeekableByteChannel)channel).position(position);
+			buffer.limit(0);
+			bufferStart = position;
+			endOfStream = false;
+			mark = -1;
+		}else if (position > position()) {
+			while (position() < position) {
+				buffer.position(buffer.limit());
+				require((int)Math.min(buffer.capacity(), position - position()));
+				buffer.position(buffer.position() + (int)Math.min(buffer.remaining(), position - position()));
+			}
+		}else {
+			throw new IOException("Cannot move back to offset " + position + " of the qvx file");
+		}
+	}
+
+	byte[] textArray() {
+		return textArray;
+	}
+
+	int textOffset() {
+		return textOffset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private int findValueEnd(int terminatorWidth) throws IOException {
+
+		/* Returns the index in the window of the terminator of the value at the cursor, refilling the
+		 * window until the terminator is in it
+		 */
+
+		int length = 0;
+		while (true) {
+			int start = buffer.position();
+			int end = findTerminator(start, start + length, terminatorWidth);
+			if (end >= 0) {
+				return end;
+			}
+			//Scan the rest of the value after the window has been refilled
+			length = buffer.remaining() - buffer.remaining() % terminatorWidth;
+			require(length + terminatorWidth);
+		}
+	}
+
+	private int findTerminator(int start, int from, int terminatorWidth) {
+
+		// Returns the index of the first terminator at or after "from", or -1 if it is not in the window
+
+		int limit = buffer.limit() - terminatorWidth + 1;
+		if (buffer.hasArray()) { //Scan the backing array directly
+			byte[] array = buffer.array();
+			int arrayOffset = buffer.arrayOffset();
+			for(int i = from; i < limit; i += terminatorWidth) {
+				if (array[arrayOffset + i] == 0 && (terminatorWidth == 1 || array[arrayOffset + i + 1] == 0)) {
+					return i;
+				}
+			}
+		}else {
+			for(int i = from; i < limit; i += terminatorWidth) {
+				if (buffer.get(i) == 0 && (terminatorWidth == 1 || buffer.get(i + 1) == 0)) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private void exposeText(int start, int length) {
+
+		if (buffer.hasArray()) {
+			textArray = buffer.array();
+			textOffset = buffer.arrayOffset() + start;
+			return;
+		}
+
+		//Memory-mapped windows have no backing array, so copy the value in one bulk get
+		if (scratch.length < length) {
+			scratch = new byte[Math.max(length, 2 * scratch.length)];
+		}
+		ByteBuffer view = buffer.duplicate();
+		view.position(start);
+		view.get(scratch, 0, length);
+		textArray = scratch;
+		textOffset = 0;
+	}
+
+	private void require(int n) throws IOException {
+
+		if (buffer.remaining() < n && !fill(n)) {
+			throw new EOFException("Unexpected end of qvx file at offset " + position());
+		}
+	}
+
+	protected boolean fill(int n) throws IOException {
+
+		/* Move the unread bytes to the front of the window and read from the channel until at least
+		 * n bytes are available. Returns false if the stream ends first.
+		 */
+
+		if (buffer.remaining() >= n) {
+			return true;
+		}
+		int keep = mark >= 0 ? (int)(position() - mark) : 0; //Bytes before the cursor that are kept
+		buffer.position(buffer.position() - keep);
+		if (keep + n > buffer.capacity()) { //A single value is larger than the window; grow it
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(keep + n, 2 * buffer.capacity()));
+			larger.put(buffer);
+			larger.flip();
+			bufferStart += buffer.position() - larger.limit();
+			buffer = larger;
+		}
+
+		bufferStart += buffer.position();
+		buffer.compact();
+		while (!endOfStream && buffer.position() < keep + n) {
+			if (channel.read(buffer) == -1) {
+				endOfStream = true;
+			}
+		}
+		buffer.flip();
+		buffer.position(keep);
+		return buffer.remaining() >= n;
+	}
+}
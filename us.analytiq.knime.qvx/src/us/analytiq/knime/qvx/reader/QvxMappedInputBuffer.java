@@ -0,0 +1,53 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Window over a local qvx file that is memory-mapped instead of copied.
+ *
+ * Each window maps a region of the file starting at the cursor. When a read runs past the end of
+ * the window, the next region is mapped; file offsets are longs, so files larger than 2 GB are
+ * walked window by window. Only the current window is referenced, so the pages of earlier windows
+ * can be reclaimed by the operating system.
+ */
+final class QvxMappedInputBuffer extends QvxInputBuffer {
+
+	static final int DEFAULT_WINDOW_SIZE = 1 << 28; //256 MB
+
+	private final FileChannel fileChannel;
+	private final long fileSize;
+	private final int windowSize;
+
+	QvxMappedInputBuffer(FileChannel fileChannel, int windowSize, long start) throws IOException {
+
+		super(fileChannel, ByteBuffer.allocate(0), start);
+		this.fileChannel = fileChannel;
+		this.fileSize = fileChannel.size();
+		this.windowSize = windowSize;
+	}
+
+	@Override
+	protected boolean fill(int n) throws IOException {
+
+		/* Map the region that starts at the cursor (or at the mark, if there is one). Returns false if
+		 * fewer than n bytes are left.
+		 */
+
+		if (buffer.remaining() >= n) {
+			return true;
+		}
+		long start = mark >= 0 ? mark : position();
+		int keep = (int)(position() - start);
+		long size = Math.min(Math.max(windowSize, keep + n), fileSize - start);
+		if (size < keep + n) {
+			return false;
+		}
+		buffer = fileChannel.map(MapMode.READ_ONLY, start, size);
+		buffer.position(keep);
+		bufferStart = start;
+		return true;
+	}
+}
@@ -0,0 +1,270 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+
+/**
+ * Decodes the body of a local qvx file on several threads.
+ *
+ * The body is cut into chunks that are decoded at the same time on a fork-join pool, each into its
+ * own {@link QvxColumnStore}; the stores are returned in file order. When every record has the same
+ * length, chunks start at multiples of the record length. Otherwise, with UsesSeparatorByte, a chunk
+ * starts at the first record separator byte after an evenly spaced offset from which a few records
+ * can be read. That byte can also be part of a value, so a separator is skipped if the records after
+ * it cannot be read, and the chunk is only kept if the chunk before it ended exactly where it starts;
+ * if not, it is decoded again from the offset where the chunk before it ended. When the file has a
+ * {@link QvxRecordIndex}, chunks start at the records of its entries instead.
+ */
+final class QvxParallelDecoder {
+
+	private static final long MIN_CHUNK_SIZE = 8L << 20; //8 MB
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final int SCAN_SIZE = 1 << 16; //Bytes read at a time while looking for a separator
+	private static final int CHECKED_RECORDS = 2; //Records read from a separator before a chunk starts at it
+
+	private final File file;
+	private final boolean memoryMapped;
+	private final QvxRecordDecoder recordDecoder;
+	private final QvxCodePage[] codePages;
+	private final int parallelism;
+	private volatile boolean stopped = false; //Set when the remaining chunks are no longer needed
+	private long numRecords; //Number of records of the body, once it has been decoded
+
+	QvxParallelDecoder(File file, boolean memoryMapped, QvxRecordDecoder recordDecoder, QvxCodePage[] codePages) {
+
+		this.file = file;
+		this.memoryMapped = memoryMapped;
+		this.recordDecoder = recordDecoder;
+		this.codePages = codePages;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+	}
+
+	List<QvxColumnStore> decode(long bodyStart, QvxRecordIndex index, QvxRecordIndex newIndex,
+			ExecutionContext exec) throws IOException, CanceledExecutionException {
+
+		/* Decodes the body that starts at "bodyStart", using "index" (if not null) to split it.
+		 * The entries of "newIndex" (if not null) are added while decoding. Returns null if the body
+		 * cannot be split into chunks, in which case it has to be read sequentially.
+		 */
+
+		long[] starts = split(bodyStart, index);
+		if (starts == null) {
+			return null;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, starts.length));
+		try {
+			List<ForkJoinTask<Chunk>> tasks = new ArrayList<>(starts.length);
+			for(int i = 0; i < starts.length; i++) {
+				final long start = starts[i];
+				final long limit = getLimit(starts, i);
+				tasks.add(pool.submit(() -> decodeChunk(start, limit, newIndex != null)));
+			}
+
+			List<QvxColumnStore> stores = new ArrayList<>(starts.length);
+			long expectedStart = bodyStart;
+			long numRecords = 0;
+			for(int i = 0; i < starts.length; i++) {
+				Chunk chunk = tasks.get(i).join();
+				if (chunk.start != expectedStart) {
+					//The chunk did not start at a record; decode it again from the right offset
+					chunk = decodeChunk(expectedStart, getLimit(starts, i), newIndex != null);
+				}
+				if (chunk.error instanceof IOException) {
+					throw (IOException)chunk.error;
+				}else if (chunk.error != null) {
+					throw (RuntimeException)chunk.error;
+				}
+				chunk.store.shiftRecords(numRecords); //Record numbers of the chunk start at 0
+				stores.add(chunk.store);
+				if (newIndex != null) {
+					for(int j = 0; j < chunk.indexOffsets.length; j++) {
+						newIndex.add(numRecords + (long)j * QvxRecordIndex.INTERVAL, chunk.indexOffsets[j]);
+					}
+				}
+				numRecords += chunk.numRecords;
+				if (chunk.end < 0) { //End of the body
+					break;
+				}
+				expectedStart = chunk.end;
+
+				exec.checkCanceled();
+				exec.setProgress((double)(i + 1) / starts.length,
+						"Decoded " + (i + 1) + " of " + starts.length + " chunks");
+			}
+			if (newIndex != null) {
+				newIndex.setNumRecords(numRecords);
+			}
+			this.numRecords = numRecords;
+			return stores;
+		}finally {
+			stopped = true;
+			pool.shutdownNow();
+		}
+	}
+
+	long getNumRecords() {
+		return numRecords;
+	}
+
+	private long[] split(long bodyStart, QvxRecordIndex index) throws IOException {
+
+		// Returns the offset of the first record of each chunk, or null if the body cannot be split
+
+		long bodyLength = file.length() - bodyStart;
+		int numChunks = (int)Math.min((long)parallelism * CHUNKS_PER_THREAD, bodyLength / MIN_CHUNK_SIZE);
+		if (parallelism < 2 || numChunks < 2) {
+			return null;
+		}
+
+		long[] starts = new long[numChunks];
+		starts[0] = bodyStart;
+		if (index != null && index.getNumEntries() >= numChunks) { //Split on the records of index entries
+			for(int i = 1; i < numChunks; i++) {
+				starts[i] = index.getOffset((int)((long)index.getNumEntries() * i / numChunks));
+			}
+			return starts;
+		}
+		int recordWidth = recordDecoder.recordWidth();
+		if (recordWidth > 0) { //Split on a multiple of the record length
+			long numRecords = bodyLength / recordWidth;
+			for(int i = 1; i < numChunks; i++) {
+				starts[i] = bodyStart + numRecords * i / numChunks * recordWidth;
+			}
+			return starts;
+		}else if (!recordDecoder.usesSeparatorByte()) {
+			return null;
+		}
+
+		/* Split on the first record separator byte after each evenly spaced offset that starts a record;
+		 * a chunk without one before the next offset is left to the chunk before it
+		 */
+		int count = 1;
+		try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+			ByteBuffer block = ByteBuffer.allocate(SCAN_SIZE);
+			for(int i = 1; i < numChunks; i++) {
+				long from = Math.max(bodyStart + bodyLength * i / numChunks, starts[count - 1] + 1);
+				long to = bodyStart + bodyLength * (i + 1) / numChunks;
+				long separator = findRecordSeparator(channel, block, from);
+				while (separator >= 0 && separator < to && !isRecordStart(separator)) {
+					separator = findRecordSeparator(channel, block, separator + 1);
+				}
+				if (separator >= 0 && separator < to) {
+					starts[count++] = separator;
+				}
+			}
+		}
+		return count < 2 ? null : Arrays.copyOf(starts, count);
+	}
+
+	private boolean isRecordStart(long offset) {
+
+		/* Returns true if the records from "offset" on can be read, and the last of them is followed by
+		 * another record or the end of the body. A separator byte in a value rarely passes this check.
+		 */
+		try (QvxInputBuffer in = QvxInputBuffer.open(file, offset, false)) {
+			if (recordDecoder.copy().skip(in, CHECKED_RECORDS) < CHECKED_RECORDS) {
+				return true; //End of the body
+			}
+			byte next = in.peek();
+			return next == QvxRecordDecoder.RS_BYTE || next == QvxRecordDecoder.FS_BYTE;
+		}catch (IOException | RuntimeException e) {
+			return false;
+		}
+	}
+
+	private static long findRecordSeparator(FileChannel channel, ByteBuffer block, long from) throws IOException {
+
+		// Returns the offset of the first record separator byte at or after "from", or -1 if there is none
+
+		long position = from;
+		while (true) {
+			block.clear();
+			if (channel.read(block, position) <= 0) {
+				return -1;
+			}
+			block.flip();
+			for(int i = 0; i < block.limit(); i++) {
+				if (block.get(i) == QvxRecordDecoder.RS_BYTE) {
+					return position + i;
+				}
+			}
+			position += block.limit();
+		}
+	}
+
+	private static long getLimit(long[] starts, int chunk) {
+
+		// The chunk ends with the last record that starts before the next chunk
+		return chunk + 1 < starts.length ? starts[chunk + 1] : Long.MAX_VALUE;
+	}
+
+	private Chunk decodeChunk(long start, long limit, boolean collectIndexOffsets) {
+
+		/* Decodes the records that start at or after "start" and before "limit". Errors are returned
+		 * instead of thrown, because a chunk that did not start at a record is expected to fail.
+		 */
+
+		QvxRecordDecoder decoder = recordDecoder.copy();
+		QvxColumnStore store = new QvxColumnStore(codePages, true);
+		long[] indexOffsets = new long[collectIndexOffsets ? 16 : 0]; //Offset of every INTERVAL-th record
+		int numIndexOffsets = 0;
+		long record = 0; //Number of the record within the chunk
+		try (QvxInputBuffer in = QvxInputBuffer.open(file, start, memoryMapped)) {
+			while (in.position() < limit) {
+				long recordStart = in.position();
+				int result = decoder.decode(in, store);
+				if (result == QvxRecordDecoder.END_OF_BODY) {
+					return new Chunk(start, -1, store, record, Arrays.copyOf(indexOffsets, numIndexOffsets), null);
+				}
+				if (collectIndexOffsets && record % QvxRecordIndex.INTERVAL == 0) {
+					if (numIndexOffsets == indexOffsets.length) {
+						indexOffsets = Arrays.copyOf(indexOffsets, 2 * numIndexOffsets);
+					}
+					indexOffsets[numIndexOffsets++] = recordStart;
+				}
+				if (result == QvxRecordDecoder.DECODED) {
+					store.endRow(record);
+				}
+				record++;
+				if (stopped) {
+					return new Chunk(start, -1, null, 0, null, new IllegalStateException("Decoding was stopped"));
+				}
+			}
+			return new Chunk(start, in.position(), store, record, Arrays.copyOf(indexOffsets, numIndexOffsets), null);
+		}catch (IOException | RuntimeException e) {
+			return new Chunk(start, -1, null, 0, null, e);
+		}
+	}
+
+	private static final class Chunk {
+
+		private final long start;
+		private final long end; //Offset of the first record of the next chunk, or -1 at the end of the body
+		private final QvxColumnStore store; //The records of the chunk that were not rejected by the filter
+		private final long numRecords;
+		private final long[] indexOffsets; //Offsets of the records of the chunk that are index entries
+		private final Exception error;
+
+		Chunk(long start, long end, QvxColumnStore store, long numRecords, long[] indexOffsets, Exception error) {
+
+			this.start = start;
+			this.end = end;
+			this.store = store;
+			this.numRecords = numRecords;
+			this.indexOffsets = indexOffsets;
+			this.error = error;
+		}
+	}
+}
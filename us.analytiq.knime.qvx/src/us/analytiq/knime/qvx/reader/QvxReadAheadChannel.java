@@ -0,0 +1,125 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Channel that reads the next parts of another channel on a thread of its own.
+ *
+ * While the records of one part are decoded, the thread reads (and, for compressed files, inflates)
+ * the following ones into CHUNKS_AHEAD chunks of CHUNK_SIZE bytes. When all chunks are full, the
+ * thread waits until the reader has used one, so at most CHUNKS_AHEAD chunks are read ahead. The
+ * chunks are reused, and the channel returns their bytes in order.
+ */
+final class QvxReadAheadChannel implements ReadableByteChannel {
+
+	static final int CHUNK_SIZE = 1 << 18; //256 KB
+	private static final int CHUNKS_AHEAD = 8;
+	private static final ByteBuffer END = ByteBuffer.allocate(0); //Follows the last chunk
+
+	private final ReadableByteChannel channel;
+	private final BlockingQueue<ByteBuffer> chunks = new ArrayBlockingQueue<>(CHUNKS_AHEAD + 2); //Read chunks, in order
+	private final BlockingQueue<ByteBuffer> freeChunks = new ArrayBlockingQueue<>(CHUNKS_AHEAD + 1);
+	private final Thread thread;
+	private volatile IOException failure; //Error of the read-ahead thread, thrown by read() after the last chunk
+	private ByteBuffer chunk; //The chunk being read, or null
+	private boolean open = true;
+
+	QvxReadAheadChannel(ReadableByteChannel channel, String name) {
+
+		this.channel = channel;
+		for(int i = 0; i < CHUNKS_AHEAD + 1; i++) {
+			freeChunks.add(ByteBuffer.allocate(CHUNK_SIZE));
+		}
+		thread = new Thread(this::readAhead, "QVX read-ahead " + name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+
+		if (!open) {
+			throw new ClosedChannelException();
+		}
+		if (chunk == END) {
+			return -1;
+		}
+		if (chunk == null || !chunk.hasRemaining()) {
+			if (chunk != null) {
+				freeChunks.add(chunk);
+			}
+			chunk = take();
+			if (chunk == END) {
+				if (failure != null) {
+					throw failure;
+				}
+				return -1;
+			}
+		}
+		int n = Math.min(dst.remaining(), chunk.remaining());
+		ByteBuffer part = chunk.duplicate();
+		part.limit(part.position() + n);
+		dst.put(part);
+		chunk.position(chunk.position() + n);
+		return n;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		// Stops the read-ahead thread, which may be waiting for a free chunk
+		open = false;
+		thread.interrupt();
+		channel.close();
+	}
+
+	private void readAhead() {
+
+		try {
+			while (true) {
+				ByteBuffer buffer = freeChunks.take();
+				buffer.clear();
+				int n = 0;
+				while (buffer.hasRemaining() && (n = channel.read(buffer)) >= 0) {
+					//Fill the chunk, so that the reader gets few large parts
+				}
+				buffer.flip();
+				if (buffer.hasRemaining()) {
+					chunks.put(buffer);
+				}
+				if (n < 0) {
+					chunks.put(END);
+					return;
+				}
+			}
+		}catch (InterruptedException e) {
+			// Closed by the reader
+		}catch (IOException e) {
+			if (open) {
+				failure = e;
+				chunks.offer(END);
+			}
+		}
+	}
+
+	private ByteBuffer take() throws IOException {
+
+		try {
+			return chunks.take();
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Reading ahead was interrupted");
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.util.List;
 import javax.xml.bind.JAXBException;
 
 import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
 import org.knime.core.node.ExecutionContext;
 
 import us.analytiq.knime.qvx.jaxb.QvxTableHeader.Fields.QvxFieldHeader;
@@ -18,12 +19,24 @@ public class QvxReader {
 	private BufferedDataTable[] qvxTableData = null;
 	private QvxBinaryReader qvxBinaryReader = null;
 	
-	public QvxReader(String filepath, final ExecutionContext exec) throws JAXBException, IOException  {
-		this.filepath = filepath;
+	public QvxReader(String filepath, final ExecutionContext exec)
+			throws JAXBException, IOException, CanceledExecutionException  {
+		this(createSettings(filepath), exec);
+	}
+	
+	QvxReader(QvxReaderNodeSettings settings, final ExecutionContext exec)
+			throws JAXBException, IOException, CanceledExecutionException  {
+		this.filepath = settings.getFileName();
 	    
 	    qvxBinaryReader = new QvxBinaryReader();
 	    
-	    qvxTableData = qvxBinaryReader.readQvx(filepath, exec);    
+	    qvxTableData = qvxBinaryReader.readQvx(settings, exec);    
+	}
+	
+	private static QvxReaderNodeSettings createSettings(String filepath) {
+		QvxReaderNodeSettings settings = new QvxReaderNodeSettings();
+		settings.setFileName(filepath);
+		return settings;
 	}
 	
 	public BufferedDataTable[] getTableData() {
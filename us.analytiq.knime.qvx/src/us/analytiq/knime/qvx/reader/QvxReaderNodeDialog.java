@@ -3,6 +3,9 @@ package us.analytiq.knime.qvx.reader;
 import javax.swing.JFileChooser;
 
 import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentString;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.core.node.defaultnodesettings.DialogComponentFileChooser;
 
@@ -30,7 +33,35 @@ public class QvxReaderNodeDialog extends DefaultNodeSettingsPane {
     	addDialogComponent(new DialogComponentFileChooser(
     			new SettingsModelString(QvxReaderNodeModel.CFGKEY_FILE_PATH,
     					QvxReaderNodeModel.DEFAULT_PATH),
-    			"Qvx file", JFileChooser.OPEN_DIALOG, ".qvx"));             
+    			"Qvx file", JFileChooser.OPEN_DIALOG, ".qvx", ".qvx.gz"));
+    	addDialogComponent(new DialogComponentBoolean(
+    			QvxReaderNodeModel.createSourceColumnModel(), "Add a column with the name of the source file"));
+    	
+    	addDialogComponent(new DialogComponentBoolean(
+    			QvxReaderNodeModel.createStreamingModel(), "Stream records into the output table"));
+    	addDialogComponent(new DialogComponentBoolean(
+    			QvxReaderNodeModel.createMemoryMappedModel(), "Memory-map local files"));
+    	addDialogComponent(new DialogComponentBoolean(
+    			QvxReaderNodeModel.createParallelModel(), "Decode local files and download remote files in parallel"));
+    	addDialogComponent(new DialogComponentBoolean(
+    			QvxReaderNodeModel.createPipelinedModel(), "Pipeline reading, decoding and row creation"));
+    	addDialogComponent(new DialogComponentBoolean(
+    			QvxReaderNodeModel.createRecordIndexModel(), "Keep a record index next to local files"));
+    	addDialogComponent(new DialogComponentBoolean(
+    			QvxReaderNodeModel.createRemoteCacheModel(), "Cache remote files on disk"));
+    	addDialogComponent(new DialogComponentNumber(
+    			QvxReaderNodeModel.createRemoteCacheSizeModel(), "Cache size (MB)", 256));
+    	
+    	addDialogComponent(new DialogComponentNumber(
+    			QvxReaderNodeModel.createRowOffsetModel(), "Skip first records", 1000));
+    	addDialogComponent(new DialogComponentNumber(
+    			QvxReaderNodeModel.createRowLimitModel(), "Maximum number of rows (0 = all)", 1000));
+    	addDialogComponent(new DialogComponentNumber(
+    			QvxReaderNodeModel.createRowStepModel(), "Read every n-th record", 1));
+    	addDialogComponent(new DialogComponentString(
+    			QvxReaderNodeModel.createColumnsModel(), "Columns to read (comma-separated, empty = all)"));
+    	addDialogComponent(new DialogComponentString(
+    			QvxReaderNodeModel.createRowFilterModel(), "Row filter (empty = all records)"));
     }
 }
 
@@ -7,15 +7,24 @@ import java.net.URL;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.core.node.util.CheckUtils;
 import org.knime.core.util.FileUtil;
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.ExecutionMonitor;
 import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
 import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
 
 /**
  * This is the model implementation of Qvx.
@@ -25,11 +34,78 @@ import org.knime.core.node.NodeSettingsWO;
  */
 public class QvxReaderNodeModel extends NodeModel {
         
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(QvxReaderNodeModel.class);
+
 	public static final String DEFAULT_PATH = "./";
 
 	public static final String CFGKEY_FILE_PATH = "FilePath";
 
     private final SettingsModelString filepath = new SettingsModelString(CFGKEY_FILE_PATH, DEFAULT_PATH);
+    private final SettingsModelBoolean streaming = createStreamingModel();
+    private final SettingsModelBoolean memoryMapped = createMemoryMappedModel();
+    private final SettingsModelBoolean parallel = createParallelModel();
+    private final SettingsModelBoolean pipelined = createPipelinedModel();
+    private final SettingsModelBoolean recordIndex = createRecordIndexModel();
+    private final SettingsModelBoolean remoteCache = createRemoteCacheModel();
+    private final SettingsModelIntegerBounded remoteCacheSize = createRemoteCacheSizeModel();
+    private final SettingsModelIntegerBounded rowOffset = createRowOffsetModel();
+    private final SettingsModelIntegerBounded rowLimit = createRowLimitModel();
+    private final SettingsModelIntegerBounded rowStep = createRowStepModel();
+    private final SettingsModelString columns = createColumnsModel();
+    private final SettingsModelString rowFilter = createRowFilterModel();
+    private final SettingsModelBoolean sourceColumn = createSourceColumnModel();
+    
+    static SettingsModelBoolean createStreamingModel() {
+    	return new SettingsModelBoolean(QvxReaderNodeSettings.CFGKEY_STREAMING, false);
+    }
+    
+    static SettingsModelBoolean createMemoryMappedModel() {
+    	return new SettingsModelBoolean(QvxReaderNodeSettings.CFGKEY_MEMORY_MAPPED, false);
+    }
+
+    static SettingsModelBoolean createParallelModel() {
+    	return new SettingsModelBoolean(QvxReaderNodeSettings.CFGKEY_PARALLEL, false);
+    }
+
+    static SettingsModelBoolean createPipelinedModel() {
+    	return new SettingsModelBoolean(QvxReaderNodeSettings.CFGKEY_PIPELINED, false);
+    }
+
+    static SettingsModelBoolean createRecordIndexModel() {
+    	return new SettingsModelBoolean(QvxReaderNodeSettings.CFGKEY_RECORD_INDEX, false);
+    }
+
+    static SettingsModelBoolean createRemoteCacheModel() {
+    	return new SettingsModelBoolean(QvxReaderNodeSettings.CFGKEY_REMOTE_CACHE, false);
+    }
+
+    static SettingsModelIntegerBounded createRemoteCacheSizeModel() {
+    	return new SettingsModelIntegerBounded(QvxReaderNodeSettings.CFGKEY_REMOTE_CACHE_SIZE, 1024, 1, Integer.MAX_VALUE);
+    }
+
+    static SettingsModelIntegerBounded createRowOffsetModel() {
+    	return new SettingsModelIntegerBounded(QvxReaderNodeSettings.CFGKEY_ROW_OFFSET, 0, 0, Integer.MAX_VALUE);
+    }
+    
+    static SettingsModelIntegerBounded createRowLimitModel() {
+    	return new SettingsModelIntegerBounded(QvxReaderNodeSettings.CFGKEY_ROW_LIMIT, 0, 0, Integer.MAX_VALUE);
+    }
+    
+    static SettingsModelIntegerBounded createRowStepModel() {
+    	return new SettingsModelIntegerBounded(QvxReaderNodeSettings.CFGKEY_ROW_STEP, 1, 1, Integer.MAX_VALUE);
+    }
+
+    static SettingsModelString createColumnsModel() {
+    	return new SettingsModelString(QvxReaderNodeSettings.CFGKEY_COLUMNS, "");
+    }
+
+    static SettingsModelString createRowFilterModel() {
+    	return new SettingsModelString(QvxReaderNodeSettings.CFGKEY_ROW_FILTER, "");
+    }
+
+    static SettingsModelBoolean createSourceColumnModel() {
+    	return new SettingsModelBoolean(QvxReaderNodeSettings.CFGKEY_SOURCE_COLUMN, false);
+    }
 
     protected QvxReaderNodeModel() {
     	super(0, 1);
@@ -41,13 +117,35 @@ public class QvxReaderNodeModel extends NodeModel {
     	
         QvxFileReaderNodeSettings settings = new QvxFileReaderNodeSettings();
 
-        CheckUtils.checkSourceFile(filepath.getStringValue());
+        if (!QvxFileSet.isFileSet(filepath.getStringValue())) {
+        	CheckUtils.checkSourceFile(filepath.getStringValue());
+        }
         URL url = FileUtil.toURL(filepath.getStringValue());
 
         settings.setDataFileLocationAndUpdateTableName(url);
-        settings.setQvxReader(new QvxReader(filepath.getStringValue(), exec));
+        settings.setQvxReader(new QvxReader(createReaderSettings(), exec));
         return settings.getQvxReader().getTableData();
     }
+    
+    private QvxReaderNodeSettings createReaderSettings() {
+    	
+    	QvxReaderNodeSettings readerSettings = new QvxReaderNodeSettings();
+    	readerSettings.setFileName(filepath.getStringValue());
+    	readerSettings.setStreaming(streaming.getBooleanValue());
+    	readerSettings.setMemoryMapped(memoryMapped.getBooleanValue());
+    	readerSettings.setParallel(parallel.getBooleanValue());
+    	readerSettings.setPipelined(pipelined.getBooleanValue());
+    	readerSettings.setRecordIndex(recordIndex.getBooleanValue());
+    	readerSettings.setRemoteCache(remoteCache.getBooleanValue());
+    	readerSettings.setRemoteCacheSize(remoteCacheSize.getIntValue());
+    	readerSettings.setRowOffset(rowOffset.getIntValue());
+    	readerSettings.setRowLimit(rowLimit.getIntValue());
+    	readerSettings.setRowStep(rowStep.getIntValue());
+    	readerSettings.setColumns(columns.getStringValue());
+    	readerSettings.setRowFilter(rowFilter.getStringValue());
+    	readerSettings.setSourceColumn(sourceColumn.getBooleanValue());
+    	return readerSettings;
+    }
 
     @Override
     protected void reset() {
@@ -58,7 +156,58 @@ public class QvxReaderNodeModel extends NodeModel {
     protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
             throws InvalidSettingsException {
     	
-        return new DataTableSpec[]{null};
+    	/* In streaming mode, publish the spec from the table header, so that the nodes after this one
+    	 * can be configured before the file is read; a directory or glob pattern is read as several
+    	 * files. Otherwise the column types depend on all values, so they are only known once the
+    	 * node has been executed */
+    	if (filepath.getStringValue().isEmpty()) {
+    		throw new InvalidSettingsException("No qvx file selected");
+    	}
+    	if (!streaming.getBooleanValue()) {
+    		return new DataTableSpec[]{null};
+    	}
+    	try {
+    		return new DataTableSpec[]{readStreamingSpec()};
+    	}catch (IOException | RuntimeException e) {
+    		//The file may not exist yet, e.g. when a node before this one writes it, or be offline
+    		LOGGER.warn("Cannot read the table header of " + filepath.getStringValue() + ": " + e.getMessage());
+    		return new DataTableSpec[]{null};
+    	}
+    }
+    
+    private DataTableSpec readStreamingSpec() throws IOException {
+    	
+    	/* The column types of streaming mode are taken from the table header (and, for dual fields, the
+    	 * first records), so rows can be created with them while the file is read, as in the streaming
+    	 * executor
+    	 */
+    	return new QvxBinaryReader().readSpec(createReaderSettings());
+    }
+
+    @Override
+    public StreamableOperator createStreamableOperator(final PartitionInfo partitionInfo,
+    		final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+    	
+    	// In a streamed workflow, rows are pushed downstream while the records are decoded
+    	if (!streaming.getBooleanValue()) {
+    		throw new InvalidSettingsException("The streaming executor needs the column types before the file is"
+    				+ " read; check \"Stream records into the output table\"");
+    	}
+    	final DataTableSpec spec;
+    	try {
+    		spec = readStreamingSpec();
+    	}catch (IOException | RuntimeException e) {
+    		throw new InvalidSettingsException("Cannot read the table header of " + filepath.getStringValue()
+    				+ ": " + e.getMessage(), e);
+    	}
+    	return new StreamableOperator() {
+    		@Override
+    		public void runFinal(final PortInput[] inputs, final PortOutput[] outputs,
+    				final ExecutionContext exec) throws Exception {
+    			
+    			new QvxBinaryReader().readQvx(createReaderSettings(), spec, (RowOutput)outputs[0], exec);
+    		}
+    	};
     }
 
 
@@ -66,6 +215,19 @@ public class QvxReaderNodeModel extends NodeModel {
     protected void saveSettingsTo(final NodeSettingsWO settings) {
         
     	filepath.saveSettingsTo(settings);
+    	streaming.saveSettingsTo(settings);
+    	memoryMapped.saveSettingsTo(settings);
+    	parallel.saveSettingsTo(settings);
+    	pipelined.saveSettingsTo(settings);
+    	recordIndex.saveSettingsTo(settings);
+    	remoteCache.saveSettingsTo(settings);
+    	remoteCacheSize.saveSettingsTo(settings);
+    	rowOffset.saveSettingsTo(settings);
+    	rowLimit.saveSettingsTo(settings);
+    	rowStep.saveSettingsTo(settings);
+    	columns.saveSettingsTo(settings);
+    	rowFilter.saveSettingsTo(settings);
+    	sourceColumn.saveSettingsTo(settings);
     }
 
     @Override
@@ -73,6 +235,41 @@ public class QvxReaderNodeModel extends NodeModel {
             throws InvalidSettingsException {
     	
         filepath.loadSettingsFrom(settings);
+        
+        //Workflows saved before this option existed do not contain it
+        if (settings.containsKey(QvxReaderNodeSettings.CFGKEY_STREAMING)) {
+        	streaming.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(QvxReaderNodeSettings.CFGKEY_MEMORY_MAPPED)) {
+        	memoryMapped.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(QvxReaderNodeSettings.CFGKEY_PARALLEL)) {
+        	parallel.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(QvxReaderNodeSettings.CFGKEY_PIPELINED)) {
+        	pipelined.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(QvxReaderNodeSettings.CFGKEY_RECORD_INDEX)) {
+        	recordIndex.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(QvxReaderNodeSettings.CFGKEY_REMOTE_CACHE)) {
+        	remoteCache.loadSettingsFrom(settings);
+        	remoteCacheSize.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(QvxReaderNodeSettings.CFGKEY_ROW_OFFSET)) {
+        	rowOffset.loadSettingsFrom(settings);
+        	rowLimit.loadSettingsFrom(settings);
+        	rowStep.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(QvxReaderNodeSettings.CFGKEY_COLUMNS)) {
+        	columns.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(QvxReaderNodeSettings.CFGKEY_ROW_FILTER)) {
+        	rowFilter.loadSettingsFrom(settings);
+        }
+        if (settings.containsKey(QvxReaderNodeSettings.CFGKEY_SOURCE_COLUMN)) {
+        	sourceColumn.loadSettingsFrom(settings);
+        }
     }
 
     @Override
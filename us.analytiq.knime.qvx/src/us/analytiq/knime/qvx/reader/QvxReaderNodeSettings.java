@@ -1,5 +1,8 @@
 package us.analytiq.knime.qvx.reader;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
@@ -7,26 +10,227 @@ import org.knime.core.node.NodeSettingsWO;
 public class QvxReaderNodeSettings {
 
 	static final String CFGKEY_FILE_NAME = "fileName";
+	static final String CFGKEY_STREAMING = "streaming";
+	static final String CFGKEY_MEMORY_MAPPED = "memoryMapped";
+	static final String CFGKEY_PARALLEL = "parallel";
+	static final String CFGKEY_PIPELINED = "pipelined";
+	static final String CFGKEY_RECORD_INDEX = "recordIndex";
+	static final String CFGKEY_REMOTE_CACHE = "remoteCache";
+	static final String CFGKEY_REMOTE_CACHE_SIZE = "remoteCacheSize";
+	static final String CFGKEY_ROW_OFFSET = "rowOffset";
+	static final String CFGKEY_ROW_LIMIT = "rowLimit";
+	static final String CFGKEY_ROW_STEP = "rowStep";
+	static final String CFGKEY_COLUMNS = "columns";
+	static final String CFGKEY_ROW_FILTER = "rowFilter";
+	static final String CFGKEY_SOURCE_COLUMN = "sourceColumn";
 	
 	private String fileName;
+	private boolean streaming;
+	private boolean memoryMapped;
+	private boolean parallel;
+	private boolean pipelined; //True to read ahead and create the rows on threads of their own
+	private boolean recordIndex;
+	private boolean remoteCache;
+	private int remoteCacheSize; //Maximum size of the cached copies of remote files, in MB
+	private int rowOffset; //Number of records skipped at the start of the body
+	private int rowLimit; //Maximum number of rows read, 0 for no limit
+	private int rowStep; //1 to read every record, n to read every n-th record
+	private String columns; //Comma-separated names of the fields to read; empty for all fields
+	private String rowFilter; //Conditions that records must satisfy to be read; empty for all records
+	private boolean sourceColumn; //True to add a column with the name of the file of each row
 	
 	QvxReaderNodeSettings(){
 		fileName = null;
+		streaming = false;
+		memoryMapped = false;
+		parallel = false;
+		pipelined = false;
+		recordIndex = false;
+		remoteCache = false;
+		remoteCacheSize = 1024;
+		rowOffset = 0;
+		rowLimit = 0;
+		rowStep = 1;
+		columns = "";
+		rowFilter = "";
+		sourceColumn = false;
 	}
 	
 	QvxReaderNodeSettings(NodeSettingsRO settings) throws InvalidSettingsException {
 		fileName = settings.getString(CFGKEY_FILE_NAME);
+		streaming = settings.getBoolean(CFGKEY_STREAMING, false);
+		memoryMapped = settings.getBoolean(CFGKEY_MEMORY_MAPPED, false);
+		parallel = settings.getBoolean(CFGKEY_PARALLEL, false);
+		pipelined = settings.getBoolean(CFGKEY_PIPELINED, false);
+		recordIndex = settings.getBoolean(CFGKEY_RECORD_INDEX, false);
+		remoteCache = settings.getBoolean(CFGKEY_REMOTE_CACHE, false);
+		remoteCacheSize = settings.getInt(CFGKEY_REMOTE_CACHE_SIZE, 1024);
+		rowOffset = settings.getInt(CFGKEY_ROW_OFFSET, 0);
+		rowLimit = settings.getInt(CFGKEY_ROW_LIMIT, 0);
+		rowStep = settings.getInt(CFGKEY_ROW_STEP, 1);
+		columns = settings.getString(CFGKEY_COLUMNS, "");
+		rowFilter = settings.getString(CFGKEY_ROW_FILTER, "");
+		sourceColumn = settings.getBoolean(CFGKEY_SOURCE_COLUMN, false);
+	}
+	
+	QvxReaderNodeSettings(QvxReaderNodeSettings other) {
+		fileName = other.fileName;
+		streaming = other.streaming;
+		memoryMapped = other.memoryMapped;
+		parallel = other.parallel;
+		pipelined = other.pipelined;
+		recordIndex = other.recordIndex;
+		remoteCache = other.remoteCache;
+		remoteCacheSize = other.remoteCacheSize;
+		rowOffset = other.rowOffset;
+		rowLimit = other.rowLimit;
+		rowStep = other.rowStep;
+		columns = other.columns;
+		rowFilter = other.rowFilter;
+		sourceColumn = other.sourceColumn;
 	}
 	
 	void saveSettingsTo(NodeSettingsWO settings) {
 		settings.addString(CFGKEY_FILE_NAME, fileName);
+		settings.addBoolean(CFGKEY_STREAMING, streaming);
+		settings.addBoolean(CFGKEY_MEMORY_MAPPED, memoryMapped);
+		settings.addBoolean(CFGKEY_PARALLEL, parallel);
+		settings.addBoolean(CFGKEY_PIPELINED, pipelined);
+		settings.addBoolean(CFGKEY_RECORD_INDEX, recordIndex);
+		settings.addBoolean(CFGKEY_REMOTE_CACHE, remoteCache);
+		settings.addInt(CFGKEY_REMOTE_CACHE_SIZE, remoteCacheSize);
+		settings.addInt(CFGKEY_ROW_OFFSET, rowOffset);
+		settings.addInt(CFGKEY_ROW_LIMIT, rowLimit);
+		settings.addInt(CFGKEY_ROW_STEP, rowStep);
+		settings.addString(CFGKEY_COLUMNS, columns);
+		settings.addString(CFGKEY_ROW_FILTER, rowFilter);
+		settings.addBoolean(CFGKEY_SOURCE_COLUMN, sourceColumn);
 	}
 	
 	public String getFileName() {
 		return fileName;
 	}
 	
+	boolean isStreaming() {
+		return streaming;
+	}
+	
+	boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+	
+	boolean isPipelined() {
+		return pipelined;
+	}
+	
+	boolean isParallel() {
+		return parallel;
+	}
+	
+	boolean isRecordIndex() {
+		return recordIndex;
+	}
+	
+	boolean isRemoteCache() {
+		return remoteCache;
+	}
+	
+	int getRemoteCacheSize() {
+		return remoteCacheSize;
+	}
+	
+	int getRowOffset() {
+		return rowOffset;
+	}
+	
+	int getRowLimit() {
+		return rowLimit;
+	}
+	
+	int getRowStep() {
+		return rowStep;
+	}
+	
+	String getColumns() {
+		return columns;
+	}
+	
+	String getRowFilter() {
+		return rowFilter == null ? "" : rowFilter.trim();
+	}
+	
+	boolean isSourceColumn() {
+		return sourceColumn;
+	}
+	
+	String[] getColumnNames() {
+		
+		// Returns the names of the fields to read, or null if all fields are read
+		
+		List<String> names = new ArrayList<String>();
+		if (columns != null) {
+			for(String name : columns.split(",")) {
+				if (!name.trim().isEmpty()) {
+					names.add(name.trim());
+				}
+			}
+		}
+		return names.isEmpty() ? null : names.toArray(new String[names.size()]);
+	}
+	
 	void setFileName(String fileName) {
 		this.fileName = fileName;
 	}
+	
+	void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+	
+	void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+	
+	void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+	
+	void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+	
+	void setRecordIndex(boolean recordIndex) {
+		this.recordIndex = recordIndex;
+	}
+	
+	void setRemoteCache(boolean remoteCache) {
+		this.remoteCache = remoteCache;
+	}
+	
+	void setRemoteCacheSize(int remoteCacheSize) {
+		this.remoteCacheSize = remoteCacheSize;
+	}
+	
+	void setRowOffset(int rowOffset) {
+		this.rowOffset = rowOffset;
+	}
+	
+	void setRowLimit(int rowLimit) {
+		this.rowLimit = rowLimit;
+	}
+	
+	void setRowStep(int rowStep) {
+		this.rowStep = rowStep;
+	}
+	
+	void setColumns(String columns) {
+		this.columns = columns;
+	}
+	
+	void setRowFilter(String rowFilter) {
+		this.rowFilter = rowFilter;
+	}
+	
+	void setSourceColumn(boolean sourceColumn) {
+		this.sourceColumn = sourceColumn;
+	}
 }
\ No newline at end of file
@@ -16,6 +16,18 @@ public class QvxReaderUtil {
     
 	private static final long SECONDS_PER_DAY = 86400;
 	private static final long MILLISECONDS_PER_DAY = 86400000;
+	
+	//Date and time formats recognized in text fields
+	private static final String DATE_SEPS = "-/";
+	private static final Pattern DATE_PATTERN_A =
+		Pattern.compile("^[0-9]{1,2}[" + DATE_SEPS + "][0-9]{1,2}[" + DATE_SEPS + "][0-9]{4}$");
+	private static final Pattern DATE_PATTERN_B =
+		Pattern.compile("^[0-9]{4}[" + DATE_SEPS + "][0-9]{1,2}[" + DATE_SEPS + "][0-9]{1,2}$");
+	private static final Pattern DATE_PATTERN_C =
+		Pattern.compile("^[0-9]{1,2}[" + DATE_SEPS + "][0-9]{1,2}[" + DATE_SEPS + "][0-9]{1,3}$");
+	private static final Pattern TIME_PATTERN_A = Pattern.compile("^[0-9]{1,2}:[0-9]{1,2}:[0-9]{1,2}$");
+	private static final Pattern TIME_PATTERN_B = Pattern.compile("^[0-9]{1,2}:[0-9]{1,2}$");
+	
 	private static Date epoch;
 	private static Date startDate;
 	static {
@@ -48,18 +60,9 @@ public class QvxReaderUtil {
 		
 		//If s can be converted to a Calendar format, return that calendar. Otherwise, return null.
 		
-		String dateSeps = "-/";
-		String formatA = "^[0-9]{1,2}[" + dateSeps + "][0-9]{1,2}[" + dateSeps + "][0-9]{4}$";
-		String formatB = "^[0-9]{4}[" + dateSeps + "][0-9]{1,2}[" + dateSeps + "][0-9]{1,2}$";
-		String formatC = "^[0-9]{1,2}[" + dateSeps + "][0-9]{1,2}[" + dateSeps + "][0-9]{1,3}$";
-		
-		Pattern patternA = Pattern.compile(formatA);
-		Pattern patternB = Pattern.compile(formatB);
-		Pattern patternC = Pattern.compile(formatC);
-		
-		Matcher matcherA = patternA.matcher(s);
-		Matcher matcherB = patternB.matcher(s);
-		Matcher matcherC = patternC.matcher(s);
+		Matcher matcherA = DATE_PATTERN_A.matcher(s);
+		Matcher matcherB = DATE_PATTERN_B.matcher(s);
+		Matcher matcherC = DATE_PATTERN_C.matcher(s);
 		boolean matchA = matcherA.find();
 		boolean matchB = matcherB.find();
 		boolean matchC = matcherC.find();
@@ -70,7 +73,7 @@ public class QvxReaderUtil {
 			//Find separator
 			String sep = "";
 			for(int i = 0; i < s.length(); i++) {
-				if (dateSeps.contains("" + s.charAt(i))) {
+				if (DATE_SEPS.indexOf(s.charAt(i)) >= 0) {
 					sep = "" + s.charAt(i);
 					break;
 				}
@@ -101,17 +104,24 @@ public class QvxReaderUtil {
 	
 	public static Calendar getDateFromQvxReal(double daysSince) {
 		
+		return getCalendarFromMillis(getMillisFromQvxReal(daysSince));
+	}
+	
+	public static long getMillisFromQvxReal(double daysSince) {
+		
 		long fullDaysSince = Math.round(daysSince);
 		double partialDaysSince = daysSince - fullDaysSince;
 		long remainingSeconds = Math.round(partialDaysSince*SECONDS_PER_DAY);
 		
-		long dateInMilliseconds = (startDate.getTime()-epoch.getTime()) +
+		return (startDate.getTime()-epoch.getTime()) +
 				(fullDaysSince*MILLISECONDS_PER_DAY) +
 				(remainingSeconds*1000);
+	}
+	
+	public static Calendar getCalendarFromMillis(long millis) {
 		
-		Date date = new Date(dateInMilliseconds);
 		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("EDT"));
-		cal.setTime(date);
+		cal.setTime(new Date(millis));
 		
 		return cal;
 	}
@@ -120,14 +130,8 @@ public class QvxReaderUtil {
 		
 		//If s can be converted to a Calendar format, return that calendar. Otherwise, return null.
 
-		String formatA = "^[0-9]{1,2}:[0-9]{1,2}:[0-9]{1,2}$";
-		String formatB = "^[0-9]{1,2}:[0-9]{1,2}$";
-		
-		Pattern patternA = Pattern.compile(formatA);
-		Pattern patternB = Pattern.compile(formatB);
-		
-		Matcher matcherA = patternA.matcher(s);
-		Matcher matcherB = patternB.matcher(s);
+		Matcher matcherA = TIME_PATTERN_A.matcher(s);
+		Matcher matcherB = TIME_PATTERN_B.matcher(s);
 		boolean matchA = matcherA.find();
 		boolean matchB = matcherB.find();
 		
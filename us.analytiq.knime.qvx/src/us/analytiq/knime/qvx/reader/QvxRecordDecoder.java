@@ -0,0 +1,148 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.IOException;
+
+/**
+ * Decodes the records of the body of a qvx table, one {@link QvxFieldDecoder} per field.
+ *
+ * With UsesSeparatorByte, every record starts with a record separator byte and the body ends with a
+ * file separator byte; otherwise the body ends with the file.
+ *
+ * With a {@link QvxRowFilter}, each record is first read with decoders that only decode the fields
+ * the filter uses and skip the others. Only if the filter accepts the record is the input moved back
+ * to the start of the record and the record decoded into the sink.
+ */
+final class QvxRecordDecoder {
+
+	static final byte FS_BYTE = 0x1C;
+	static final byte RS_BYTE = 0x1E;
+
+	//Results of decode()
+	static final int END_OF_BODY = 0;
+	static final int DECODED = 1;
+	static final int REJECTED = 2;
+
+	private final QvxFieldDecoder[] decoders;
+	private final boolean usesSeparatorByte;
+	private QvxRowFilter filter;
+	private QvxFieldDecoder[] filterDecoders; //Pass the values the filter uses to its slots
+
+	QvxRecordDecoder(QvxFieldDecoder[] decoders, boolean usesSeparatorByte) {
+
+		this.decoders = decoders;
+		this.usesSeparatorByte = usesSeparatorByte;
+	}
+
+	void setFilter(QvxRowFilter filter, QvxFieldDecoder[] filterDecoders) {
+
+		this.filter = filter;
+		this.filterDecoders = filterDecoders;
+	}
+
+	QvxRecordDecoder copy() {
+
+		// Returns a decoder for another thread; the filter keeps state for the current record
+		QvxRecordDecoder copy = new QvxRecordDecoder(decoders, usesSeparatorByte);
+		if (filter != null) {
+			copy.setFilter(filter.copy(), filterDecoders);
+		}
+		return copy;
+	}
+
+	boolean usesSeparatorByte() {
+		return usesSeparatorByte;
+	}
+
+	int recordWidth() {
+
+		// Returns the number of bytes of every record, or -1 if records do not all have the same length
+
+		int width = QvxFieldDecoder.recordWidth(decoders);
+		return width < 0 || !usesSeparatorByte ? width : width + 1;
+	}
+
+	int decode(QvxInputBuffer in, QvxValueSink sink) throws IOException {
+
+		/* Reads the next record from "in" and passes its values to "sink". Returns DECODED, or, without
+		 * passing any values, REJECTED if the filter rejects the record or END_OF_BODY if the end of the
+		 * body has been reached.
+		 */
+
+		if (!startRecord(in)) {
+			return END_OF_BODY;
+		}
+
+		if (filter != null) {
+			in.mark();
+			filter.startRecord();
+			for(QvxFieldDecoder decoder : filterDecoders) {
+				if (filter.isRejected()) { //The rest of the record is not needed
+					decoder.skip(in);
+				}else {
+					decoder.decode(in, filter);
+				}
+			}
+			if (filter.isRejected()) {
+				in.clearMark();
+				return REJECTED;
+			}
+			in.reset();
+		}
+
+		for(QvxFieldDecoder decoder : decoders) {
+			decoder.decode(in, sink);
+		}
+		return DECODED;
+	}
+
+	long skip(QvxInputBuffer in, long count) throws IOException {
+
+		/* Moves "in" past the next "count" records without decoding them. Returns the number of records
+		 * skipped, which is less than "count" if the end of the body was reached.
+		 */
+
+		//Records of the same length are skipped by moving the cursor, when the end of the file is known
+		int width = recordWidth();
+		long length = width > 0 ? in.length() : -1;
+		if (length >= 0) {
+			long skipped = Math.min(count, (length - in.position()) / width);
+			in.seek(in.position() + skipped * width);
+			return skipped;
+		}
+
+		for(long i = 0; i < count; i++) {
+			if (!skipRecord(in)) {
+				return i;
+			}
+		}
+		return count;
+	}
+
+	private boolean skipRecord(QvxInputBuffer in) throws IOException {
+
+		if (!startRecord(in)) {
+			return false;
+		}
+		for(QvxFieldDecoder decoder : decoders) {
+			decoder.skip(in);
+		}
+		return true;
+	}
+
+	private boolean startRecord(QvxInputBuffer in) throws IOException {
+
+		// Moves "in" past the record separator, if any. Returns false at the end of the body.
+
+		if (usesSeparatorByte) {
+			byte separator = in.get();
+			if (separator == FS_BYTE) {
+				return false;
+			}else if (separator != RS_BYTE) {
+				throw new IllegalStateException("Record separator byte is expected");
+			}
+		}else if (!in.hasRemaining()) {
+			return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,163 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.knime.core.node.NodeLogger;
+
+/**
+ * Offsets of records in the body of a local qvx file, kept in a sidecar file next to it.
+ *
+ * QVX files have no row count and no offset table, so finding a record or counting the records
+ * means decoding the whole body. The index keeps the number of records and the offset of one record
+ * in every INTERVAL records, and is written to "&lt;file&gt;.idx" once the body has been read. It is
+ * only used as long as the size and modification time of the qvx file match the ones it was built
+ * for.
+ */
+final class QvxRecordIndex {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(QvxRecordIndex.class);
+
+	static final String SUFFIX = ".idx";
+	static final int INTERVAL = 16384; //Maximum number of records between two entries
+	private static final int MAGIC = 0x51565849; //"QVXI"
+	private static final int VERSION = 1;
+
+	private final long fileSize;
+	private final long lastModified;
+	private long[] records = new long[64]; //Record number of each entry, ascending
+	private long[] offsets = new long[64]; //File offset of the record of each entry
+	private int numEntries = 0;
+	private long numRecords = -1; //-1 while the index is being built
+
+	QvxRecordIndex(File qvxFile) {
+
+		// Creates an empty index for the current version of the file
+		this(qvxFile.length(), qvxFile.lastModified());
+	}
+
+	private QvxRecordIndex(long fileSize, long lastModified) {
+
+		this.fileSize = fileSize;
+		this.lastModified = lastModified;
+	}
+
+	void add(long record, long offset) {
+
+		if (numEntries > 0 && record <= records[numEntries - 1]) {
+			throw new IllegalStateException("Index entries must be added in record order");
+		}
+		if (numEntries == records.length) {
+			records = Arrays.copyOf(records, 2 * numEntries);
+			offsets = Arrays.copyOf(offsets, 2 * numEntries);
+		}
+		records[numEntries] = record;
+		offsets[numEntries] = offset;
+		numEntries++;
+	}
+
+	void setNumRecords(long numRecords) {
+		this.numRecords = numRecords;
+	}
+
+	long getNumRecords() {
+		return numRecords;
+	}
+
+	int getNumEntries() {
+		return numEntries;
+	}
+
+	long getRecord(int entry) {
+		return records[entry];
+	}
+
+	long getOffset(int entry) {
+		return offsets[entry];
+	}
+
+	int findEntry(long record) {
+
+		// Returns the last entry at or before the given record, or -1 if there is none
+
+		int entry = Arrays.binarySearch(records, 0, numEntries, record);
+		return entry >= 0 ? entry : -entry - 2;
+	}
+
+	static File getIndexFile(File qvxFile) {
+		return new File(qvxFile.getPath() + SUFFIX);
+	}
+
+	static QvxRecordIndex load(File qvxFile) {
+
+		/* Returns the index of the file, or null if there is none or if it was built for a different
+		 * version of the file
+		 */
+
+		File indexFile = getIndexFile(qvxFile);
+		if (!indexFile.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				LOGGER.warn("Ignoring record index of an unknown format: " + indexFile);
+				return null;
+			}
+			QvxRecordIndex index = new QvxRecordIndex(in.readLong(), in.readLong());
+			if (index.fileSize != qvxFile.length() || index.lastModified != qvxFile.lastModified()) {
+				LOGGER.info("Record index is out of date and will be rebuilt: " + indexFile);
+				return null;
+			}
+			index.numRecords = in.readLong();
+			int numEntries = in.readInt();
+			for(int i = 0; i < numEntries; i++) {
+				index.add(in.readLong(), in.readLong());
+			}
+			return index;
+		}catch (IOException | RuntimeException e) {
+			LOGGER.warn("Ignoring unreadable record index " + indexFile + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	void save(File qvxFile) {
+
+		/* Writes the index next to the file. The index is written to a temporary file first, so other
+		 * readers never see a partial index. Failures are logged, since the index is only an
+		 * optimization.
+		 */
+
+		if (numRecords < 0) {
+			throw new IllegalStateException("The record index is not complete");
+		}
+		File indexFile = getIndexFile(qvxFile);
+		File tempFile = new File(indexFile.getPath() + ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(fileSize);
+				out.writeLong(lastModified);
+				out.writeLong(numRecords);
+				out.writeInt(numEntries);
+				for(int i = 0; i < numEntries; i++) {
+					out.writeLong(records[i]);
+					out.writeLong(offsets[i]);
+				}
+			}
+			Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}catch (IOException e) {
+			LOGGER.warn("Could not write record index " + indexFile + ": " + e.getMessage());
+			tempFile.delete();
+		}
+	}
+}
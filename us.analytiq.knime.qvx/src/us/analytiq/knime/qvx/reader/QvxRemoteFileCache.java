@@ -0,0 +1,273 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.knime.core.node.NodeLogger;
+
+/**
+ * Copies of remote qvx files on the local disk.
+ *
+ * Each file is kept as "&lt;hash of the url&gt;.qvx" in the cache directory, next to a ".meta" file
+ * with the ETag and Last-Modified values of the response it was downloaded from. Before a copy is
+ * used, the server is asked with a conditional request whether the file has changed; only if it has
+ * is it downloaded again. The copies are read like any local file. When the copies take more than the
+ * maximum size, the least recently used ones are deleted; the modification time of the ".meta" file
+ * is the time of the last use, since the one of the copy must stay that of the download for the
+ * {@link QvxRecordIndex} and the {@link QvxTableHeaderCache}.
+ *
+ * Each url has a lock of its own, so a long download only delays readers of the same url. A copy that
+ * {@link #get} returned is in use until it is passed to {@link #release}; copies in use are neither
+ * deleted nor replaced, and a file that changed while its copy is in use is read from the url.
+ */
+final class QvxRemoteFileCache {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(QvxRemoteFileCache.class);
+
+	private static final String FILE_SUFFIX = ".qvx";
+	private static final String META_SUFFIX = ".meta";
+	private static final File DIRECTORY = new File(System.getProperty("java.io.tmpdir"), "qvx-reader-cache");
+	private static final int COPY_BUFFER_SIZE = 1 << 16;
+
+	private static final ConcurrentHashMap<String, Object> LOCKS = new ConcurrentHashMap<String, Object>(); //By key
+	private static final Map<String, Integer> USERS = new HashMap<String, Integer>(); //Copies in use, by key
+
+	private QvxRemoteFileCache() {
+	}
+
+	static File get(URL url, long maxSize, boolean download) throws IOException {
+
+		/* Returns the local copy of the current version of the file at "url", downloading it if there
+		 * is no copy or the file has changed. Returns null if the file cannot be cached, because the
+		 * response has neither an ETag nor a Last-Modified value or the file is larger than "maxSize",
+		 * if the file would have to be downloaded but "download" is false, or if it changed while the
+		 * copy is in use. The copy that is returned must be released once it has been read.
+		 */
+
+		URLConnection connection = url.openConnection();
+		if (!(connection instanceof HttpURLConnection)) {
+			return null;
+		}
+		String key = getKey(url);
+		File file;
+		synchronized (LOCKS.computeIfAbsent(key, k -> new Object())) {
+			file = get(url, (HttpURLConnection)connection, key, maxSize, download);
+			if (file == null) {
+				return null;
+			}
+			synchronized (USERS) {
+				USERS.merge(key, 1, Integer::sum);
+			}
+		}
+
+		//The copy is in use, so it is not evicted
+		evict(maxSize);
+		return file;
+	}
+
+	static void release(File file) {
+
+		// Ends a use of a copy that get() returned
+		String name = file.getName();
+		String key = name.substring(0, name.length() - FILE_SUFFIX.length());
+		synchronized (USERS) {
+			USERS.computeIfPresent(key, (k, users) -> users == 1 ? null : users - 1);
+		}
+	}
+
+	private static boolean isInUse(String key) {
+
+		synchronized (USERS) {
+			return USERS.containsKey(key);
+		}
+	}
+
+	private static File get(URL url, HttpURLConnection httpConnection, String key, long maxSize, boolean download)
+			throws IOException {
+
+		// Called with the lock of "key"
+		File file = new File(DIRECTORY, key + FILE_SUFFIX);
+		File metaFile = new File(DIRECTORY, key + META_SUFFIX);
+		Properties meta = loadMeta(metaFile);
+
+		//Ask for the file only if it is not the version of the copy
+		if (meta != null && file.length() == Long.parseLong(meta.getProperty("size", "-1"))) {
+			if (meta.getProperty("etag") != null) {
+				httpConnection.setRequestProperty("If-None-Match", meta.getProperty("etag"));
+			}
+			if (meta.getProperty("lastModified") != null) {
+				httpConnection.setRequestProperty("If-Modified-Since", meta.getProperty("lastModified"));
+			}
+		}
+		if (httpConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+			httpConnection.disconnect();
+			metaFile.setLastModified(System.currentTimeMillis());
+			LOGGER.debug("Reading unchanged " + url + " from " + file);
+			return file;
+		}
+
+		String etag = httpConnection.getHeaderField("ETag");
+		String lastModified = httpConnection.getHeaderField("Last-Modified");
+		long size = httpConnection.getContentLengthLong(); //-1 if the response is chunked
+		if (!download || (etag == null && lastModified == null) || size > maxSize) {
+			httpConnection.disconnect();
+			return null;
+		}
+		if (isInUse(key)) { //The copy is still read, so the new version is not cached
+			httpConnection.disconnect();
+			LOGGER.debug("Reading " + url + " directly, since its old copy " + file + " is in use");
+			return null;
+		}
+
+		//Download to a temporary file, so that a failed download does not replace the copy
+		if (!DIRECTORY.isDirectory() && !DIRECTORY.mkdirs()) {
+			throw new IOException("Cannot create the cache directory " + DIRECTORY);
+		}
+		File tempFile = File.createTempFile(key, ".tmp", DIRECTORY);
+		try {
+			if (!download(httpConnection, tempFile, maxSize)) {
+				LOGGER.debug("Reading " + url + " directly, since it is larger than the cache");
+				return null;
+			}
+			removeIndex(file);
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}finally {
+			tempFile.delete();
+		}
+
+		meta = new Properties();
+		meta.setProperty("url", url.toString());
+		meta.setProperty("size", Long.toString(file.length()));
+		if (etag != null) {
+			meta.setProperty("etag", etag);
+		}
+		if (lastModified != null) {
+			meta.setProperty("lastModified", lastModified);
+		}
+		try (OutputStream out = new FileOutputStream(metaFile)) {
+			meta.store(out, null);
+		}
+		LOGGER.debug("Downloaded " + url + " to " + file);
+		return file;
+	}
+
+	private static boolean download(HttpURLConnection httpConnection, File tempFile, long maxSize)
+			throws IOException {
+
+		/* Copies the body of the response to "tempFile"; returns false, with the copy incomplete, as
+		 * soon as it is larger than "maxSize", which chunked responses do not announce
+		 */
+		byte[] bytes = new byte[COPY_BUFFER_SIZE];
+		long copied = 0;
+		try (InputStream in = httpConnection.getInputStream(); OutputStream out = new FileOutputStream(tempFile)) {
+			int n;
+			while ((n = in.read(bytes)) >= 0) {
+				copied += n;
+				if (copied > maxSize) {
+					return false;
+				}
+				out.write(bytes, 0, n);
+			}
+		}
+		return true;
+	}
+
+	private static String getKey(URL url) {
+
+		// Returns the name of the files of the url in the cache directory
+		try {
+			StringBuilder sb = new StringBuilder();
+			for(byte b : MessageDigest.getInstance("SHA-1").digest(url.toString().getBytes(StandardCharsets.UTF_8))) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		}catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Properties loadMeta(File metaFile) {
+
+		if (!metaFile.isFile()) {
+			return null;
+		}
+		try (InputStream in = new FileInputStream(metaFile)) {
+			Properties meta = new Properties();
+			meta.load(in);
+			return meta;
+		}catch (IOException | IllegalArgumentException e) {
+			LOGGER.warn("Ignoring unreadable cache entry " + metaFile + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static void removeIndex(File file) {
+
+		// The record index of a replaced copy must not be used for the new one
+		QvxRecordIndex.getIndexFile(file).delete();
+	}
+
+	private static void evict(long maxSize) {
+
+		/* Deletes the least recently used copies until the copies take at most "maxSize" bytes; copies
+		 * in use are kept
+		 */
+
+		File[] metaFiles = DIRECTORY.listFiles((dir, name) -> name.endsWith(META_SUFFIX));
+		if (metaFiles == null) {
+			return;
+		}
+		List<File> entries = new ArrayList<File>();
+		long totalSize = 0;
+		for(File metaFile : metaFiles) {
+			entries.add(metaFile);
+			totalSize += getFile(metaFile).length();
+		}
+		Collections.sort(entries, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+		for(File metaFile : entries) {
+			if (totalSize <= maxSize) {
+				break;
+			}
+			File file = getFile(metaFile);
+			String key = getKey(metaFile);
+			synchronized (LOCKS.computeIfAbsent(key, k -> new Object())) {
+				if (!isInUse(key) && metaFile.exists()) {
+					totalSize -= file.length();
+					LOGGER.debug("Removing " + file + " from the cache");
+					removeIndex(file);
+					file.delete();
+					metaFile.delete();
+				}
+			}
+		}
+	}
+
+	private static File getFile(File metaFile) {
+		return new File(metaFile.getParentFile(), getKey(metaFile) + FILE_SUFFIX);
+	}
+
+	private static String getKey(File metaFile) {
+
+		String name = metaFile.getName();
+		return name.substring(0, name.length() - META_SUFFIX.length());
+	}
+}
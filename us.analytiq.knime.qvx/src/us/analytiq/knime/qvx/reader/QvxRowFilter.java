@@ -0,0 +1,416 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import us.analytiq.knime.qvx.jaxb.QvxTableHeader.Fields.QvxFieldHeader;
+
+/**
+ * Row filter that is evaluated while the records of a qvx file are decoded.
+ *
+ * The filter is a list of conditions joined by AND, for example
+ * {@code amount >= 100 AND region IN ('NJ', 'NY') AND email IS NOT NULL}. A condition compares a field
+ * with a number (=, !=, &lt;&gt;, &lt;, &lt;=, &gt;, &gt;=) or with text in single quotes (=, !=, &lt;&gt;),
+ * tests whether the value is in a list of numbers or texts (IN, NOT IN), or tests for null (IS NULL,
+ * IS NOT NULL). Field names that are not plain identifiers are written in double quotes.
+ *
+ * The filter receives the values of the fields its conditions use, one slot per field, as they are
+ * decoded, so a record can be rejected before any of its values is stored. Numbers are compared as
+ * doubles and text is compared with the bytes in the file, encoded in the code page of the field, so
+ * evaluating a condition does not allocate. Like in SQL, only IS NULL holds for a null value. A value
+ * of the other kind (text for a number condition, a number, date or time for a text condition) only
+ * satisfies !=, &lt;&gt;, NOT IN and IS NOT NULL.
+ */
+final class QvxRowFilter implements QvxValueSink {
+
+	private static final int EQ = 0;
+	private static final int NE = 1;
+	private static final int LT = 2;
+	private static final int LE = 3;
+	private static final int GT = 4;
+	private static final int GE = 5;
+	private static final int IN = 6;
+	private static final int NOT_IN = 7;
+	private static final int IS_NULL = 8;
+	private static final int IS_NOT_NULL = 9;
+
+	private final int[] fieldSlots; //For each field of the file, its slot, or -1 if no condition uses it
+	private final Condition[][] conditions; //The conditions on the field of each slot
+	private boolean rejected = false;
+
+	private QvxRowFilter(int[] fieldSlots, Condition[][] conditions) {
+
+		this.fieldSlots = fieldSlots;
+		this.conditions = conditions;
+	}
+
+	static QvxRowFilter parse(String expression, List<QvxFieldHeader> fieldHeaders) {
+
+		// Parses the filter for a file with the given fields
+
+		QvxCodePage[] codePages = QvxCodePage.forFields(fieldHeaders);
+		int[] fieldSlots = new int[fieldHeaders.size()];
+		Arrays.fill(fieldSlots, -1);
+		List<List<Condition>> slots = new ArrayList<List<Condition>>();
+
+		Parser parser = new Parser(expression);
+		do {
+			String fieldName = parser.nextName();
+			int field = -1;
+			for(int i = 0; i < fieldHeaders.size() && field < 0; i++) {
+				if (fieldName.equals(fieldHeaders.get(i).getFieldName())) {
+					field = i;
+				}
+			}
+			if (field < 0) {
+				throw new IllegalArgumentException("Row filter: \"" + fieldName + "\" is not a field of the qvx file");
+			}
+			if (fieldSlots[field] < 0) {
+				fieldSlots[field] = slots.size();
+				slots.add(new ArrayList<Condition>());
+			}
+			slots.get(fieldSlots[field]).add(parser.nextCondition(codePages[field]));
+		}while (parser.nextKeyword("AND"));
+		parser.expectEnd();
+
+		Condition[][] conditions = new Condition[slots.size()][];
+		for(int i = 0; i < conditions.length; i++) {
+			conditions[i] = slots.get(i).toArray(new Condition[0]);
+		}
+		return new QvxRowFilter(fieldSlots, conditions);
+	}
+
+	QvxRowFilter copy() {
+
+		// Returns a filter with the same conditions, for decoding on another thread
+		return new QvxRowFilter(fieldSlots, conditions);
+	}
+
+	int[] getFieldSlots() {
+		return fieldSlots;
+	}
+
+	void startRecord() {
+		rejected = false;
+	}
+
+	boolean isRejected() {
+		return rejected;
+	}
+
+	@Override
+	public void putNull(int slot) {
+
+		for(Condition condition : conditions[slot]) {
+			rejected |= condition.op != IS_NULL;
+		}
+	}
+
+	@Override
+	public void putInt(int slot, int value) {
+		putNumber(slot, value);
+	}
+
+	@Override
+	public void putLong(int slot, long value) {
+		putNumber(slot, value);
+	}
+
+	@Override
+	public void putDouble(int slot, double value) {
+		putNumber(slot, value);
+	}
+
+	@Override
+	public void putText(int slot, byte[] bytes, int offset, int length) {
+
+		for(Condition condition : conditions[slot]) {
+			rejected |= !condition.acceptsText(bytes, offset, length);
+		}
+	}
+
+	@Override
+	public void putDateTime(int slot, long millis) {
+
+		for(Condition condition : conditions[slot]) {
+			rejected |= !condition.acceptsOtherKind();
+		}
+	}
+
+	private void putNumber(int slot, double value) {
+
+		for(Condition condition : conditions[slot]) {
+			rejected |= !condition.acceptsNumber(value);
+		}
+	}
+
+	private static final class Condition {
+
+		private final int op;
+		private final double[] numbers; //The numbers the value is compared with, or null
+		private final byte[][] texts; //The encoded texts the value is compared with, or null
+
+		Condition(int op, double[] numbers, byte[][] texts) {
+
+			this.op = op;
+			this.numbers = numbers;
+			this.texts = texts;
+		}
+
+		boolean acceptsNumber(double value) {
+
+			if (numbers == null) {
+				return acceptsOtherKind();
+			}
+			switch (op) {
+				case EQ: return value == numbers[0];
+				case NE: return value != numbers[0];
+				case LT: return value < numbers[0];
+				case LE: return value <= numbers[0];
+				case GT: return value > numbers[0];
+				case GE: return value >= numbers[0];
+				case IN: return contains(value);
+				case NOT_IN: return !contains(value);
+				default: return op == IS_NOT_NULL;
+			}
+		}
+
+		boolean acceptsText(byte[] bytes, int offset, int length) {
+
+			if (texts == null) {
+				return acceptsOtherKind();
+			}
+			switch (op) {
+				case EQ:
+				case IN: return contains(bytes, offset, length);
+				case NE:
+				case NOT_IN: return !contains(bytes, offset, length);
+				default: return op == IS_NOT_NULL;
+			}
+		}
+
+		boolean acceptsOtherKind() {
+			return op == NE || op == NOT_IN || op == IS_NOT_NULL;
+		}
+
+		private boolean contains(double value) {
+
+			for(double number : numbers) {
+				if (value == number) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean contains(byte[] bytes, int offset, int length) {
+
+			for(byte[] text : texts) {
+				if (text.length == length && equals(text, bytes, offset)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean equals(byte[] text, byte[] bytes, int offset) {
+
+			for(int i = 0; i < text.length; i++) {
+				if (text[i] != bytes[offset + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static final class Parser {
+
+		// Splits the expression into tokens and reads conditions from them
+
+		private final String expression;
+		private int position = 0;
+
+		Parser(String expression) {
+			this.expression = expression;
+		}
+
+		String nextName() {
+
+			skipSpaces();
+			if (position < expression.length() && expression.charAt(position) == '"') {
+				return nextQuoted('"');
+			}
+			int start = position;
+			while (position < expression.length() && (Character.isLetterOrDigit(expression.charAt(position))
+					|| expression.charAt(position) == '_' || expression.charAt(position) == '.')) {
+				position++;
+			}
+			if (start == position) {
+				throw error("a field name");
+			}
+			return expression.substring(start, position);
+		}
+
+		Condition nextCondition(QvxCodePage codePage) {
+
+			if (nextKeyword("IS")) {
+				boolean not = nextKeyword("NOT");
+				if (!nextKeyword("NULL")) {
+					throw error("NULL");
+				}
+				return new Condition(not ? IS_NOT_NULL : IS_NULL, null, null);
+			}else if (nextKeyword("NOT")) {
+				if (!nextKeyword("IN")) {
+					throw error("IN");
+				}
+				return nextList(NOT_IN, codePage);
+			}else if (nextKeyword("IN")) {
+				return nextList(IN, codePage);
+			}
+
+			int op = nextOperator();
+			skipSpaces();
+			if (position < expression.length() && expression.charAt(position) == '\'') {
+				if (op != EQ && op != NE) {
+					throw new IllegalArgumentException("Row filter: text can only be compared with = and !=");
+				}
+				return new Condition(op, null, new byte[][] {codePage.encode(nextQuoted('\''))});
+			}
+			return new Condition(op, new double[] {nextNumber()}, null);
+		}
+
+		boolean nextKeyword(String keyword) {
+
+			// Reads the keyword (in any case) if it comes next, and returns whether it did
+
+			skipSpaces();
+			int end = position + keyword.length();
+			if (expression.regionMatches(true, position, keyword, 0, keyword.length())
+					&& (end == expression.length() || !Character.isLetterOrDigit(expression.charAt(end)))) {
+				position = end;
+				return true;
+			}
+			return false;
+		}
+
+		void expectEnd() {
+
+			skipSpaces();
+			if (position < expression.length()) {
+				throw error("AND or the end of the filter");
+			}
+		}
+
+		private Condition nextList(int op, QvxCodePage codePage) {
+
+			// Reads "(value, value, ...)" where the values are all numbers or all texts
+
+			expect('(');
+			List<Double> numbers = new ArrayList<Double>();
+			List<byte[]> texts = new ArrayList<byte[]>();
+			do {
+				skipSpaces();
+				if (position < expression.length() && expression.charAt(position) == '\'') {
+					texts.add(codePage.encode(nextQuoted('\'')));
+				}else {
+					numbers.add(nextNumber());
+				}
+				skipSpaces();
+			}while (next(','));
+			expect(')');
+
+			if (!numbers.isEmpty() && !texts.isEmpty()) {
+				throw new IllegalArgumentException("Row filter: a list cannot contain both numbers and texts");
+			}else if (!texts.isEmpty()) {
+				return new Condition(op, null, texts.toArray(new byte[0][]));
+			}
+			double[] values = new double[numbers.size()];
+			for(int i = 0; i < values.length; i++) {
+				values[i] = numbers.get(i);
+			}
+			return new Condition(op, values, null);
+		}
+
+		private int nextOperator() {
+
+			skipSpaces();
+			String[] operators = {"<=", ">=", "!=", "<>", "=", "<", ">"};
+			int[] ops = {LE, GE, NE, NE, EQ, LT, GT};
+			for(int i = 0; i < operators.length; i++) {
+				if (expression.startsWith(operators[i], position)) {
+					position += operators[i].length();
+					return ops[i];
+				}
+			}
+			throw error("an operator");
+		}
+
+		private double nextNumber() {
+
+			skipSpaces();
+			int start = position;
+			while (position < expression.length() && "+-.0123456789eE".indexOf(expression.charAt(position)) >= 0) {
+				position++;
+			}
+			try {
+				return Double.parseDouble(expression.substring(start, position));
+			}catch (NumberFormatException e) {
+				position = start;
+				throw error("a number or a text in single quotes");
+			}
+		}
+
+		private String nextQuoted(char quote) {
+
+			// Reads a quoted name or text; a doubled quote stands for the quote itself
+
+			StringBuilder sb = new StringBuilder();
+			position++;
+			while (true) {
+				if (position >= expression.length()) {
+					throw error("a closing " + quote);
+				}
+				char c = expression.charAt(position++);
+				if (c != quote) {
+					sb.append(c);
+				}else if (position < expression.length() && expression.charAt(position) == quote) {
+					sb.append(quote);
+					position++;
+				}else {
+					return sb.toString();
+				}
+			}
+		}
+
+		private boolean next(char c) {
+
+			if (position < expression.length() && expression.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+
+			skipSpaces();
+			if (!next(c)) {
+				throw error("'" + c + "'");
+			}
+		}
+
+		private void skipSpaces() {
+
+			while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+				position++;
+			}
+		}
+
+		private IllegalArgumentException error(String expected) {
+			return new IllegalArgumentException("Row filter: expected " + expected + " at position " +
+					(position + 1) + " of \"" + expression + "\"");
+		}
+	}
+}
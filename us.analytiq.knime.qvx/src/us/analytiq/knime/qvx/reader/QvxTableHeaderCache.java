@@ -0,0 +1,73 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import us.analytiq.knime.qvx.jaxb.QvxTableHeader;
+
+/**
+ * Table headers of the local qvx files that were read last.
+ *
+ * Configuring and executing a reader both need the table header of its file; with the cache, the
+ * header is only parsed once. An entry is keyed by the path of the file and is only used as long as
+ * the size and modification time of the file are the ones the header was read from. The cached
+ * headers are shared, so they must not be modified.
+ */
+final class QvxTableHeaderCache {
+
+	private static final int MAX_ENTRIES = 64;
+
+	//Least recently used entries first
+	private static final Map<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private QvxTableHeaderCache() {
+	}
+
+	static synchronized Entry get(File file) {
+
+		// Returns the header of the current version of the file, or null if it is not cached
+
+		Entry entry = ENTRIES.get(file.getAbsolutePath());
+		if (entry == null || entry.fileSize != file.length() || entry.lastModified != file.lastModified()) {
+			return null;
+		}
+		return entry;
+	}
+
+	static synchronized void put(File file, QvxTableHeader header, long bodyStart) {
+		ENTRIES.put(file.getAbsolutePath(), new Entry(header, bodyStart, file.length(), file.lastModified()));
+	}
+
+	static final class Entry {
+
+		private final QvxTableHeader header;
+		private final long bodyStart; //Offset of the first byte after the zero byte that ends the header
+		private final long fileSize;
+		private final long lastModified;
+
+		private Entry(QvxTableHeader header, long bodyStart, long fileSize, long lastModified) {
+
+			this.header = header;
+			this.bodyStart = bodyStart;
+			this.fileSize = fileSize;
+			this.lastModified = lastModified;
+		}
+
+		QvxTableHeader getHeader() {
+			return header;
+		}
+
+		long getBodyStart() {
+			return bodyStart;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.util.List;
+
+import org.knime.core.data.DataType;
+import org.knime.core.data.date.DateAndTimeCell;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.LongCell;
+import org.knime.core.data.def.StringCell;
+
+import us.analytiq.knime.qvx.jaxb.FieldAttrType;
+import us.analytiq.knime.qvx.jaxb.QvxTableHeader.Fields.QvxFieldHeader;
+
+import static us.analytiq.knime.qvx.jaxb.FieldAttrType.DATE;
+import static us.analytiq.knime.qvx.jaxb.FieldAttrType.INTERVAL;
+import static us.analytiq.knime.qvx.jaxb.FieldAttrType.TIME;
+import static us.analytiq.knime.qvx.jaxb.FieldAttrType.TIMESTAMP;
+
+/**
+ * Determines the KNIME column types of a qvx table before all of its records have been read.
+ *
+ * The types are taken from the field headers. The only fields whose type the header leaves open
+ * are QVX_QV_DUAL fields without a date/time format; for those, a sample of the first records
+ * decides between a number and a string column.
+ */
+final class QvxTableSpecCreator {
+
+	static final int SAMPLE_SIZE = 1000;
+
+	private final List<QvxFieldHeader> fieldHeaders;
+
+	QvxTableSpecCreator(List<QvxFieldHeader> fieldHeaders) {
+		this.fieldHeaders = fieldHeaders;
+	}
+
+	boolean needsSample() {
+
+		// Returns whether the type of some field depends on the values in the field
+		for(QvxFieldHeader fieldHeader : fieldHeaders) {
+			if (getTypeFromHeader(fieldHeader) == null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	DataType[] createTypes(QvxColumnStore sample) {
+
+		// "sample" may only be null if no sample is needed
+
+		DataType[] dataTypes = new DataType[fieldHeaders.size()];
+		for(int i = 0; i < dataTypes.length; i++) {
+			dataTypes[i] = getTypeFromHeader(fieldHeaders.get(i));
+			if (dataTypes[i] == null) {
+				dataTypes[i] = getTypeFromSample(sample, i);
+			}
+		}
+		return dataTypes;
+	}
+
+	static DataType getTypeFromHeader(QvxFieldHeader fieldHeader) {
+
+		// Returns the KNIME type of the field, or null if it depends on the values in the field
+
+		boolean usesFixedPointDecimals = fieldHeader.getFixPointDecimals() != null
+			&& fieldHeader.getFixPointDecimals().intValue() != 0;
+		int byteWidth = fieldHeader.getByteWidth() == null ? 0 : fieldHeader.getByteWidth().intValue();
+
+		switch (fieldHeader.getType()) {
+			case QVX_SIGNED_INTEGER:
+			case QVX_UNSIGNED_INTEGER:
+				if (usesFixedPointDecimals) {
+					return DoubleCell.TYPE;
+				}
+				return byteWidth == 8 ? LongCell.TYPE : IntCell.TYPE;
+			case QVX_IEEE_REAL:
+				return DoubleCell.TYPE;
+			case QVX_TEXT:
+				return StringCell.TYPE;
+			case QVX_QV_DUAL:
+				return isDateOrTime(fieldHeader) ? DateAndTimeCell.TYPE : null;
+			default:
+				throw new RuntimeException(
+					"Problem with input file: Qvx Reader does not support QvxFieldType: " + fieldHeader.getType());
+		}
+	}
+
+	private static DataType getTypeFromSample(QvxColumnStore sample, int column) {
+
+		/* A dual field is read as numbers only if every non-null value in the sample is a number;
+		 * a string column can hold any value that comes later.
+		 */
+
+		if (sample.hasKind(column, QvxColumnStore.TEXT) || sample.hasKind(column, QvxColumnStore.DATE_TIME)) {
+			return StringCell.TYPE;
+		}
+		boolean hasNumber = sample.hasKind(column, QvxColumnStore.INT)
+			|| sample.hasKind(column, QvxColumnStore.LONG) || sample.hasKind(column, QvxColumnStore.DOUBLE);
+		return hasNumber ? DoubleCell.TYPE : StringCell.TYPE;
+	}
+
+	private static boolean isDateOrTime(QvxFieldHeader fieldHeader) {
+
+		if (fieldHeader.getFieldFormat() == null) {
+			return false;
+		}
+		FieldAttrType fieldAttrType = fieldHeader.getFieldFormat().getType();
+		return fieldAttrType == DATE || fieldAttrType == TIME || fieldAttrType == TIMESTAMP
+			|| fieldAttrType == INTERVAL;
+	}
+}
@@ -0,0 +1,87 @@
+package us.analytiq.knime.qvx.reader;
+
+import java.util.Arrays;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.def.StringCell;
+
+/**
+ * Bounded cache of the string cells of one text column, keyed on the raw bytes of the values.
+ *
+ * Repeated values (status codes, regions, currencies, ...) share one String and one StringCell
+ * instead of creating new ones for every row. The cache switches itself off for good once the column
+ * turns out to have many distinct values, or once too few lookups are hits, so high-cardinality
+ * columns only pay for the first lookups.
+ */
+final class QvxTextCellCache {
+
+	static final int MAX_ENTRIES = 4096;
+	private static final int MAX_VALUE_LENGTH = 256; //Longer values are not cached
+	private static final int TABLE_SIZE = 2 * MAX_ENTRIES; //Power of 2; at most half full
+	private static final int MIN_LOOKUPS = 16384; //Lookups before the hit rate is judged
+
+	private final QvxCodePage codePage;
+	private boolean enabled = true;
+	private byte[][] keys = new byte[TABLE_SIZE][];
+	private DataCell[] cells = new DataCell[TABLE_SIZE];
+	private int numEntries = 0;
+	private int lookups = 0;
+	private int hits = 0;
+
+	QvxTextCellCache(QvxCodePage codePage) {
+		this.codePage = codePage;
+	}
+
+	DataCell getCell(byte[] bytes, int offset, int length) {
+
+		if (!enabled || length > MAX_VALUE_LENGTH) {
+			return new StringCell(codePage.decode(bytes, offset, length));
+		}
+
+		int hash = 1;
+		for(int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		hash ^= hash >>> 16;
+
+		lookups++;
+		int slot = hash & (TABLE_SIZE - 1);
+		while (keys[slot] != null) {
+			if (equals(keys[slot], bytes, offset, length)) {
+				hits++;
+				return cells[slot];
+			}
+			slot = (slot + 1) & (TABLE_SIZE - 1);
+		}
+
+		DataCell cell = new StringCell(codePage.decode(bytes, offset, length));
+		if (numEntries == MAX_ENTRIES || (lookups >= MIN_LOOKUPS && hits < lookups / 2)) {
+			disable(); //The column has too many distinct values to benefit from the cache
+			return cell;
+		}
+		keys[slot] = Arrays.copyOfRange(bytes, offset, offset + length);
+		cells[slot] = cell;
+		numEntries++;
+		return cell;
+	}
+
+	private void disable() {
+
+		enabled = false;
+		keys = null;
+		cells = null;
+	}
+
+	private static boolean equals(byte[] key, byte[] bytes, int offset, int length) {
+
+		if (key.length != length) {
+			return false;
+		}
+		for(int i = 0; i < length; i++) {
+			if (key[i] != bytes[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,22 @@
+package us.analytiq.knime.qvx.reader;
+
+/**
+ * Receives the values decoded by the {@link QvxFieldDecoder}s of a qvx table, one call per field of
+ * each record.
+ */
+interface QvxValueSink {
+
+	void putNull(int column);
+
+	void putInt(int column, int value);
+
+	void putLong(int column, long value);
+
+	void putDouble(int column, double value);
+
+	/* The bytes are only valid during the call; they belong to the input buffer */
+	void putText(int column, byte[] bytes, int offset, int length);
+
+	/* Milliseconds since 1970-01-01 */
+	void putDateTime(int column, long millis);
+}
@@ -9,6 +9,8 @@ import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.border.TitledBorder;
 
 import org.knime.core.node.InvalidSettingsException;
@@ -29,6 +31,14 @@ class AdvancedPanel extends JPanel {
 	private final JRadioButton littleEndianButton;
 	private final JLabel endiannessDescription;
 	
+	private final JPanel compressionPanel;
+	private final JSpinner compressionLevelSpinner;
+	private final JLabel compressionDescription;
+	
+	private final JPanel encodingPanel;
+	private final JCheckBox parallelEncodingCheckBox;
+	private final JLabel encodingDescription;
+	
 	public AdvancedPanel() {
 		
 		setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
@@ -106,8 +116,60 @@ class AdvancedPanel extends JPanel {
         gbc.gridy = 0;
         endiannessPanel.add(endiannessDescription, gbc);
         
+        //Compression panel
+        compressionPanel = new JPanel();
+        compressionPanel.setLayout(new GridBagLayout());
+        compressionPanel.setBorder(new TitledBorder("Compression"));
+        
+        compressionDescription = new JLabel(
+        	"<html>Specifies the gzip compression level of files whose name ends with \".qvx.gz\" "
+        	+ "(1 = fastest, 9 = smallest).</html>");
+        compressionLevelSpinner = new JSpinner(new SpinnerNumberModel(
+        	QvxWriterNodeSettings.DEFAULT_COMPRESSION_LEVEL, 1, 9, 1));
+        
+        gbc = new GridBagConstraints();
+        
+        gbc.anchor = GridBagConstraints.NORTHWEST;
+        gbc.fill = GridBagConstraints.NONE;
+        
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.weightx = 1;
+        gbc.weighty = 1;
+        compressionPanel.add(compressionDescription, gbc);
+        
+        gbc.gridy += 1;
+        compressionPanel.add(compressionLevelSpinner, gbc);
+        
+        //Encoding panel
+        encodingPanel = new JPanel();
+        encodingPanel.setLayout(new GridBagLayout());
+        encodingPanel.setBorder(new TitledBorder("Encoding"));
+        
+        encodingDescription = new JLabel(
+        	"<html>Specifies if the records should be encoded on one thread per processor core. "
+        	+ "The records are written in the order of the rows either way.</html>");
+        parallelEncodingCheckBox = new JCheckBox("Encode rows in parallel");
+        parallelEncodingCheckBox.setSelected(false);
+        
+        gbc = new GridBagConstraints();
+        
+        gbc.anchor = GridBagConstraints.NORTHWEST;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.weightx = 1;
+        gbc.weighty = 1;
+        encodingPanel.add(encodingDescription, gbc);
+        
+        gbc.gridy += 1;
+        encodingPanel.add(parallelEncodingCheckBox, gbc);
+        
         add(recordSeparatorPanel);
         add(endiannessPanel);
+        add(compressionPanel);
+        add(encodingPanel);
 	}
 	
 	void saveSettingsInto(final QvxWriterNodeSettings settings) {
@@ -129,6 +191,12 @@ class AdvancedPanel extends JPanel {
 			usesSeparatorByte = false;
 		}
 		settings.setUsesSeparatorByte(usesSeparatorByte);
+		
+		//compressionLevel
+		settings.setCompressionLevel((Integer)compressionLevelSpinner.getValue());
+		
+		//parallelEncoding
+		settings.setParallelEncoding(parallelEncodingCheckBox.isSelected());
 	}
 	
 	void loadValuesIntoPanel(final NodeSettingsRO settings) throws InvalidSettingsException {
@@ -147,12 +215,18 @@ class AdvancedPanel extends JPanel {
 			QvxWriterNodeModel.LOGGER.warn("\"Use Record Separator\" setting has not been set");
 		}
 		
+		int compressionLevel = settings.getInt(QvxWriterNodeSettings.CFGKEY_COMPRESSION_LEVEL,
+			QvxWriterNodeSettings.DEFAULT_COMPRESSION_LEVEL);
+		boolean parallelEncoding = settings.getBoolean(QvxWriterNodeSettings.CFGKEY_PARALLEL_ENCODING, false);
+		
 		if (isBigEndian) {
 			bigEndianButton.setSelected(true);
 		}else {
 			littleEndianButton.setSelected(true);
 		}
 		
-		recordSeparatorCheckBox.setSelected(usesRecordSeparator);		
+		recordSeparatorCheckBox.setSelected(usesRecordSeparator);
+		compressionLevelSpinner.setValue(compressionLevel);
+		parallelEncodingCheckBox.setSelected(parallelEncoding);
 	}
 }
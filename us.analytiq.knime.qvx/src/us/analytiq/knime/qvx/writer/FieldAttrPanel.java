@@ -159,7 +159,7 @@ class FieldAttrPanel extends JPanel {
 		//The allowed FieldAttrTypes are different for each KNIME DataType; this method gets the allowed FieldAttrTypes for spec.getType()
 		
 		String type = spec.getType().getName();
-		if (type.equals("Number (integer)")) {
+		if (type.equals("Number (integer)") || type.equals("Number (long)")) {
 			return new String[] {
 					FieldAttrType.INTEGER.value(),
 					FieldAttrType.REAL.value(),
@@ -222,7 +222,7 @@ class FieldAttrPanel extends JPanel {
 		//Get the default FieldAttrType of spec.getType()
 		
 		String type = spec.getType().getName();
-		if (type.equals("Number (integer)")) {
+		if (type.equals("Number (integer)") || type.equals("Number (long)")) {
 			return FieldAttrType.INTEGER.value();
 		}else if (type.equals("Number (double)")) {
 			return FieldAttrType.UNKNOWN.value();
@@ -0,0 +1,336 @@
+package us.analytiq.knime.qvx.writer;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DoubleValue;
+import org.knime.core.data.IntValue;
+import org.knime.core.data.LongValue;
+import org.knime.core.data.StringValue;
+import org.knime.core.data.date.DateAndTimeValue;
+import org.knime.core.data.time.localdate.LocalDateValue;
+import org.knime.core.data.time.localdatetime.LocalDateTimeValue;
+import org.knime.core.data.time.localtime.LocalTimeValue;
+import org.knime.core.node.NodeLogger;
+
+import us.analytiq.knime.qvx.jaxb.FieldAttrType;
+import us.analytiq.knime.qvx.jaxb.QvxNullRepresentation;
+import us.analytiq.knime.qvx.jaxb.QvxTableHeader.Fields.QvxFieldHeader;
+
+import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_DOUBLE;
+import static us.analytiq.knime.qvx.jaxb.QvxQvSpecialFlag.QVX_QV_SPECIAL_NULL;
+import static us.analytiq.knime.qvx.writer.QvxWriterUtil.dateToDaysSince;
+import static us.analytiq.knime.qvx.writer.QvxWriterUtil.timeToDaysSince;
+
+/**
+ * Encodes the cells of one column into the values of a field of a qvx table.
+ *
+ * The field headers are compiled once, before the body is written, into one encoder per field. Each
+ * encoder is specialized for the type, byte width, byte order and null representation of its field,
+ * and reads the numbers and dates of the cells through their typed value interfaces, so encoding a
+ * value needs no header lookups and no conversion to and from strings. Missing values are taken
+ * from {@link DataCell#isMissing()}.
+ */
+abstract class QvxFieldEncoder {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(QvxFieldEncoder.class);
+
+	/* Puts the value of "cell" into "out" */
+	abstract void encode(DataCell cell, QvxOutputBuffer out) throws IOException;
+
+	static QvxFieldEncoder[] compile(List<QvxFieldHeader> fieldHeaders) {
+
+		QvxFieldEncoder[] encoders = new QvxFieldEncoder[fieldHeaders.size()];
+		for(int i = 0; i < encoders.length; i++) {
+			encoders[i] = compile(fieldHeaders.get(i));
+		}
+		return encoders;
+	}
+
+	private static QvxFieldEncoder compile(QvxFieldHeader fieldHeader) {
+
+		int byteWidth = fieldHeader.getByteWidth() == null ? 0 : fieldHeader.getByteWidth().intValue();
+		ByteOrder byteOrder = Boolean.TRUE.equals(fieldHeader.isBigEndian()) ?
+				ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+
+		QvxFieldEncoder encoder;
+		switch (fieldHeader.getType()) {
+			case QVX_SIGNED_INTEGER:
+			case QVX_UNSIGNED_INTEGER:
+				if (byteWidth == 4) {
+					encoder = new IntEncoder(byteOrder);
+				}else if (byteWidth == 8) {
+					encoder = new LongEncoder(byteOrder);
+				}else {
+					throw unsupported("a byte width of " + byteWidth + " for field " + fieldHeader.getFieldName());
+				}
+				break;
+			case QVX_IEEE_REAL:
+				if (byteWidth == 4) {
+					encoder = new FloatEncoder(byteOrder);
+				}else if (byteWidth == 8) {
+					encoder = new DoubleEncoder(byteOrder);
+				}else {
+					throw unsupported("a byte width of " + byteWidth + " for field " + fieldHeader.getFieldName());
+				}
+				break;
+			case QVX_TEXT:
+				if (fieldHeader.getCodePage() != null) {
+					int codePage = fieldHeader.getCodePage().intValue();
+					String errorMessage = codePage == 1020 || codePage == 1021 ? //UTF-16
+							"UTF-16 is not supported by Qvx Writer" :
+							"Code page " + codePage + " is not supported by Qvx Writer";
+					LOGGER.error(errorMessage);
+					throw new IllegalStateException(errorMessage);
+				}
+				encoder = new TextEncoder();
+				break;
+			case QVX_QV_DUAL:
+				//Only used for writing Dates/Intervals/Time/Timestamps, whose null values are encoded in the QvxQvSpecialFlag
+				return new DualEncoder(fieldHeader.getFieldFormat().getType(), byteOrder);
+			default:
+				throw unsupported("QvxFieldType " + fieldHeader.getType() + " for field " + fieldHeader.getFieldName());
+		}
+
+		QvxNullRepresentation nullRepresentation = fieldHeader.getNullRepresentation();
+		if (nullRepresentation == QvxNullRepresentation.QVX_NULL_FLAG_SUPPRESS_DATA) {
+			return new NullFlagEncoder(encoder);
+		}else if (nullRepresentation == QvxNullRepresentation.QVX_NULL_NEVER) {
+			return new NotNullEncoder(encoder, fieldHeader.getFieldName());
+		}
+		String errorMessage = "Unrecognized or unimplemented null representation: " + nullRepresentation;
+		LOGGER.error(errorMessage);
+		throw new RuntimeException(errorMessage);
+	}
+
+	private static RuntimeException unsupported(String what) {
+
+		String errorMessage = "Error writing to qvx file: Qvx Writer does not support " + what;
+		LOGGER.error(errorMessage);
+		return new RuntimeException(errorMessage);
+	}
+
+	//Encoders --------------------------------------------------------
+
+	private static final class NullFlagEncoder extends QvxFieldEncoder {
+
+		private final QvxFieldEncoder encoder;
+
+		NullFlagEncoder(QvxFieldEncoder encoder) {
+			this.encoder = encoder;
+		}
+
+		@Override
+		void encode(DataCell cell, QvxOutputBuffer out) throws IOException {
+
+			// A flag of 1 stands for a missing value, which has no data
+			if (cell.isMissing()) {
+				out.put((byte)1);
+			}else {
+				out.put((byte)0);
+				encoder.encode(cell, out);
+			}
+		}
+	}
+
+	private static final class NotNullEncoder extends QvxFieldEncoder {
+
+		private final QvxFieldEncoder encoder;
+		private final String fieldName;
+
+		NotNullEncoder(QvxFieldEncoder encoder, String fieldName) {
+			this.encoder = encoder;
+			this.fieldName = fieldName;
+		}
+
+		@Override
+		void encode(DataCell cell, QvxOutputBuffer out) throws IOException {
+
+			if (cell.isMissing()) {
+				String errorMessage = "Error writing to qvx file: Field " + fieldName +
+						" cannot hold missing values";
+				LOGGER.error(errorMessage);
+				throw new IllegalStateException(errorMessage);
+			}
+			encoder.encode(cell, out);
+		}
+	}
+
+	private static final class IntEncoder extends QvxFieldEncoder {
+
+		private final ByteOrder byteOrder;
+
+		IntEncoder(ByteOrder byteOrder) {
+			this.byteOrder = byteOrder;
+		}
+
+		@Override
+		void encode(DataCell cell, QvxOutputBuffer out) throws IOException {
+			out.putInt(cell instanceof IntValue ?
+					((IntValue)cell).getIntValue() : Integer.parseInt(cell.toString()), byteOrder);
+		}
+	}
+
+	private static final class LongEncoder extends QvxFieldEncoder {
+
+		private final ByteOrder byteOrder;
+
+		LongEncoder(ByteOrder byteOrder) {
+			this.byteOrder = byteOrder;
+		}
+
+		@Override
+		void encode(DataCell cell, QvxOutputBuffer out) throws IOException {
+			out.putLong(cell instanceof LongValue ?
+					((LongValue)cell).getLongValue() : Long.parseLong(cell.toString()), byteOrder);
+		}
+	}
+
+	private static final class FloatEncoder extends QvxFieldEncoder {
+
+		private final ByteOrder byteOrder;
+
+		FloatEncoder(ByteOrder byteOrder) {
+			this.byteOrder = byteOrder;
+		}
+
+		@Override
+		void encode(DataCell cell, QvxOutputBuffer out) throws IOException {
+			out.putFloat(cell instanceof DoubleValue ?
+					(float)((DoubleValue)cell).getDoubleValue() : Float.parseFloat(cell.toString()), byteOrder);
+		}
+	}
+
+	private static final class DoubleEncoder extends QvxFieldEncoder {
+
+		private final ByteOrder byteOrder;
+
+		DoubleEncoder(ByteOrder byteOrder) {
+			this.byteOrder = byteOrder;
+		}
+
+		@Override
+		void encode(DataCell cell, QvxOutputBuffer out) throws IOException {
+			out.putDouble(cell instanceof DoubleValue ?
+					((DoubleValue)cell).getDoubleValue() : Double.parseDouble(cell.toString()), byteOrder);
+		}
+	}
+
+	private static final class TextEncoder extends QvxFieldEncoder {
+
+		@Override
+		void encode(DataCell cell, QvxOutputBuffer out) throws IOException {
+			out.putZeroTerminated(cell instanceof StringValue ?
+					((StringValue)cell).getStringValue() : cell.toString());
+		}
+	}
+
+	private static final class DualEncoder extends QvxFieldEncoder {
+
+		private static final double NO_DATE = dateToDaysSince(0, 1, 2); //Used for times without a date
+
+		private final FieldAttrType fieldAttrType;
+		private final ByteOrder byteOrder;
+
+		DualEncoder(FieldAttrType fieldAttrType, ByteOrder byteOrder) {
+
+			if (fieldAttrType != FieldAttrType.DATE && fieldAttrType != FieldAttrType.INTERVAL &&
+					fieldAttrType != FieldAttrType.TIME && fieldAttrType != FieldAttrType.TIMESTAMP) {
+				String errorMessage = "Error writing to qvx file: Unknown FieldAttrType: " + fieldAttrType;
+				LOGGER.error(errorMessage);
+				throw new RuntimeException(errorMessage);
+			}
+			this.fieldAttrType = fieldAttrType;
+			this.byteOrder = byteOrder;
+		}
+
+		@Override
+		void encode(DataCell cell, QvxOutputBuffer out) throws IOException {
+
+			double value;
+			if (cell.isMissing()) {
+				out.put(QVX_QV_SPECIAL_NULL.getValue());
+				return;
+			}else if (cell instanceof LocalDateTimeValue) {
+				LocalDateTime dateTime = ((LocalDateTimeValue)cell).getLocalDateTime();
+				value = daysSince(daysSince(dateTime.toLocalDate()), daysSince(dateTime.toLocalTime()));
+			}else if (cell instanceof LocalDateValue) {
+				value = daysSince(daysSince(((LocalDateValue)cell).getLocalDate()), Double.NaN);
+			}else if (cell instanceof LocalTimeValue) {
+				value = daysSince(Double.NaN, daysSince(((LocalTimeValue)cell).getLocalTime()));
+			}else if (cell instanceof DateAndTimeValue) {
+				DateAndTimeValue dateAndTime = (DateAndTimeValue)cell;
+				double date = dateAndTime.hasDate() ? dateToDaysSince(dateAndTime.getYear(),
+						dateAndTime.getMonth() + 1, dateAndTime.getDayOfMonth()) : Double.NaN;
+				double time = dateAndTime.hasTime() ? timeToDaysSince(dateAndTime.getHourOfDay(),
+						dateAndTime.getMinute(), dateAndTime.hasMillis() ?
+						(dateAndTime.getSecond() * 1000 + dateAndTime.getMillis()) / 1000.0 :
+						dateAndTime.getSecond()) : Double.NaN;
+				value = daysSince(date, time);
+			}else {
+				//Other cells, such as strings, are parsed from their text
+				String s = cell.toString();
+				if (s.isEmpty()) {
+					out.put(QVX_QV_SPECIAL_NULL.getValue());
+					return;
+				}
+				value = dateTimeToDouble(s);
+			}
+			out.put(QVX_QV_SPECIAL_DOUBLE.getValue());
+			out.putDouble(value, byteOrder);
+		}
+
+		private static double daysSince(LocalDate date) {
+			return dateToDaysSince(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+		}
+
+		private static double daysSince(LocalTime time) {
+
+			/* The seconds are divided as a whole, so they have the same value as when they are parsed
+			 * from text
+			 */
+			double seconds = time.getNano() == 0 ? time.getSecond() :
+				(time.getSecond() * 1000000000L + time.getNano()) / 1e9;
+			return timeToDaysSince(time.getHour(), time.getMinute(), seconds);
+		}
+
+		private double daysSince(double date, double time) {
+
+			// "date" and "time" are NaN if the value has no date or time part
+			switch (fieldAttrType) {
+				case DATE:
+					return Double.isNaN(date) ? NO_DATE : date;
+				case INTERVAL:
+				case TIME:
+					return Double.isNaN(time) ? 0 : time;
+				default: //TIMESTAMP
+					return (Double.isNaN(date) ? NO_DATE : date) + (Double.isNaN(time) ? 0 : time);
+			}
+		}
+
+		private double dateTimeToDouble(String sDate) {
+
+			// Extract the date and time parts from the combined date-time string
+			String datePart = null;
+			String timePart = null;
+			String[] dateTimeParts = sDate.split("T");
+			if (dateTimeParts.length == 2) {
+				datePart = dateTimeParts[0];
+				timePart = dateTimeParts[1];
+			}else {
+				if (sDate.contains(":")){
+					timePart = sDate;
+				}else if (sDate.contains("-")) {
+					datePart = sDate;
+				}
+			}
+			return daysSince(datePart == null ? Double.NaN : dateToDaysSince(datePart),
+					timePart == null ? Double.NaN : timeToDaysSince(timePart));
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package us.analytiq.knime.qvx.writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Fixed-size window for the bytes of the body of a qvx file.
+ *
+ * Values are put into the window as primitives, with relative puts in the byte order of their
+ * field. When a value does not fit into the rest of the window, the window is drained to the
+ * underlying channel and the value is put at its front, so the memory used does not depend on the
+ * size of the file. The window is a direct buffer that is allocated once, so putting a number
+ * allocates nothing, and the channel of a file writes the window without copying it.
+ *
+ * A buffer without a channel holds a part of the body in memory instead; it grows when a value does
+ * not fit, and is written to another buffer with {@link #write(QvxOutputBuffer)}.
+ */
+final class QvxOutputBuffer implements Closeable {
+
+	static final int DEFAULT_CAPACITY = 1 << 20; //1 MB
+
+	private final WritableByteChannel channel; //Or null if the bytes are kept in memory
+	private ByteBuffer buffer; //position() is the end of the bytes that were not written yet
+
+	QvxOutputBuffer(WritableByteChannel channel, int capacity) {
+
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(capacity);
+	}
+
+	QvxOutputBuffer(int capacity) {
+
+		this.channel = null;
+		this.buffer = ByteBuffer.allocate(capacity);
+	}
+
+	void put(byte value) throws IOException {
+
+		require(1);
+		buffer.put(value);
+	}
+
+	void putInt(int value, ByteOrder byteOrder) throws IOException {
+
+		require(4);
+		buffer.order(byteOrder).putInt(value);
+	}
+
+	void putLong(long value, ByteOrder byteOrder) throws IOException {
+
+		require(8);
+		buffer.order(byteOrder).putLong(value);
+	}
+
+	void putFloat(float value, ByteOrder byteOrder) throws IOException {
+
+		require(4);
+		buffer.order(byteOrder).putFloat(value);
+	}
+
+	void putDouble(double value, ByteOrder byteOrder) throws IOException {
+
+		require(8);
+		buffer.order(byteOrder).putDouble(value);
+	}
+
+	void putZeroTerminated(String s) throws IOException {
+
+		/* Puts the low byte of each character of "s", followed by a zero byte. Long strings are put in
+		 * parts, so they need not fit into the window
+		 */
+
+		int length = s.length();
+		int i = 0;
+		while (i < length) {
+			require(1);
+			int end = Math.min(length, i + buffer.remaining());
+			for(; i < end; i++) {
+				buffer.put((byte)s.charAt(i));
+			}
+		}
+		put((byte)0);
+	}
+
+	void write(QvxOutputBuffer part) throws IOException {
+
+		// Writes the bytes of a buffer without a channel after the bytes of this one, and clears it
+		flush();
+		drain(part.buffer);
+	}
+
+	void clear() {
+		buffer.clear();
+	}
+
+	void flush() throws IOException {
+
+		// Writes the bytes in the window to the channel
+		drain(buffer);
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		try {
+			flush();
+		}finally {
+			channel.close();
+		}
+	}
+
+	private void require(int n) throws IOException {
+
+		if (buffer.remaining() >= n) {
+			return;
+		}
+		if (channel != null) {
+			flush();
+		}else { //Grow the buffer, which is kept for the next parts
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + n));
+			buffer.flip();
+			buffer = larger.put(buffer);
+		}
+	}
+
+	private void drain(ByteBuffer bytes) throws IOException {
+
+		bytes.flip();
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		bytes.clear();
+	}
+}
@@ -0,0 +1,130 @@
+package us.analytiq.knime.qvx.writer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.knime.core.data.DataRow;
+
+/**
+ * Encodes the records of a qvx body on several threads and writes them in the order of the rows.
+ *
+ * The rows are collected into chunks of CHUNK_ROWS rows, and each chunk is encoded on a pool of
+ * threads into a buffer of its own, which works because a record does not depend on the records
+ * before it. The buffers are written to the file in the order of their chunks. At most
+ * CHUNKS_PER_THREAD chunks per thread are encoded or waiting to be written; when all of them are,
+ * the rows wait until the oldest chunk has been written. Chunks and their buffers are reused.
+ */
+final class QvxParallelEncoder {
+
+	static final int CHUNK_ROWS = 4096;
+	private static final int CHUNKS_PER_THREAD = 2;
+	private static final int CHUNK_CAPACITY = 1 << 16; //Initial size of the buffer of a chunk
+
+	interface RecordEncoder {
+		void writeRecord(DataRow row, QvxOutputBuffer out) throws IOException;
+	}
+
+	private static final class Chunk {
+		private final DataRow[] rows = new DataRow[CHUNK_ROWS];
+		private final QvxOutputBuffer buffer = new QvxOutputBuffer(CHUNK_CAPACITY);
+		private int numRows = 0;
+	}
+
+	private final RecordEncoder recordEncoder;
+	private final QvxOutputBuffer out;
+	private final ExecutorService pool;
+	private final int maxChunks; //Chunks that are encoded or waiting to be written
+	private final ArrayDeque<Future<Chunk>> tasks = new ArrayDeque<>(); //In the order of the rows
+	private final ArrayDeque<Chunk> freeChunks = new ArrayDeque<>();
+	private Chunk chunk = new Chunk(); //The chunk that rows are added to
+
+	QvxParallelEncoder(RecordEncoder recordEncoder, QvxOutputBuffer out, int parallelism) {
+
+		this.recordEncoder = recordEncoder;
+		this.out = out;
+		AtomicInteger threadCount = new AtomicInteger();
+		this.pool = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "QVX writer encoder " + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.maxChunks = parallelism * CHUNKS_PER_THREAD;
+	}
+
+	void add(DataRow row) throws IOException {
+
+		chunk.rows[chunk.numRows++] = row;
+		if (chunk.numRows == CHUNK_ROWS) {
+			submit();
+		}
+	}
+
+	void finish() throws IOException {
+
+		// Writes the records of all rows that were added
+		if (chunk.numRows > 0) {
+			submit();
+		}
+		while (!tasks.isEmpty()) {
+			writeNext();
+		}
+		pool.shutdown();
+	}
+
+	void close() {
+
+		// Stops the threads without writing the chunks that are left
+		pool.shutdownNow();
+	}
+
+	private void submit() throws IOException {
+
+		if (tasks.size() == maxChunks) {
+			writeNext();
+		}
+		final Chunk full = chunk;
+		tasks.add(pool.submit(() -> encode(full)));
+		chunk = freeChunks.isEmpty() ? new Chunk() : freeChunks.poll();
+	}
+
+	private Chunk encode(Chunk chunk) throws IOException {
+
+		for(int i = 0; i < chunk.numRows; i++) {
+			recordEncoder.writeRecord(chunk.rows[i], chunk.buffer);
+		}
+		return chunk;
+	}
+
+	private void writeNext() throws IOException {
+
+		// Waits for the oldest chunk and writes it; an error of its thread is thrown here
+		Chunk done;
+		try {
+			done = tasks.poll().get();
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new InterruptedIOException("Writing was interrupted");
+		}catch (ExecutionException e) {
+			close();
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException)cause;
+			}else if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			throw new RuntimeException(cause);
+		}
+		out.write(done.buffer);
+		Arrays.fill(done.rows, 0, done.numRows, null); //The rows need not be kept in memory
+		done.numRows = 0;
+		freeChunks.add(done);
+	}
+}
@@ -75,7 +75,7 @@ public class QvxWriterNodeDialog extends NodeDialogPane {
         filesPanel.setBorder(new TitledBorder("Output Location"));
         filesHistoryPanel = new FilesHistoryPanel(
         		createFlowVariableModel("CFGKEY_FILE", FlowVariable.Type.STRING),
-        		"History ID", LocationValidation.FileOutput, ".qvx");
+        		"History ID", LocationValidation.FileOutput, ".qvx", ".qvx.gz");
         filesHistoryPanel.setDialogTypeSaveWithExtension(".qvx");
         filesPanel.add(filesHistoryPanel);
         
@@ -101,7 +101,7 @@ public class QvxWriterNodeDialog extends NodeDialogPane {
         		String tableName = filesHistoryPanel.getSelectedFile();
         		File f = new File(tableName);
         		tableName = f.getName();	
-        		tableName = removeSuffix(tableName, ".qvx");
+        		tableName = removeSuffix(removeSuffix(tableName, ".gz"), ".qvx");
         		tableName = toTitleCase(tableName);
         		tableNamePanel.setDefaultName(tableName);
         	}
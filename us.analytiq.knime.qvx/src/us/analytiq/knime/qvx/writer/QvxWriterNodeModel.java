@@ -13,6 +13,13 @@ import org.knime.core.node.NodeLogger;
 import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.StreamableOperator;
 import org.knime.core.node.util.CheckUtils;
 
 import us.analytiq.knime.qvx.writer.QvxWriterNodeSettings.OverwritePolicy;
@@ -64,6 +71,29 @@ public class QvxWriterNodeModel extends NodeModel {
     	qvxWriter.writeQvxFile(table, outFileName, mSettings);
     }
 
+    @Override
+    public InputPortRole[] getInputPortRoles() {
+    	return new InputPortRole[] {InputPortRole.NONDISTRIBUTED_STREAMABLE};
+    }
+    
+    @Override
+    public StreamableOperator createStreamableOperator(final PartitionInfo partitionInfo,
+            final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+    	
+    	if (mSettings.getFileName().equals("")) {
+            throw new InvalidSettingsException("No settings available");
+        }
+    	
+    	//Rows are encoded to the file as they arrive from the upstream node
+    	return new StreamableOperator() {
+    		@Override
+    		public void runFinal(final PortInput[] inputs, final PortOutput[] outputs,
+    				final ExecutionContext exec) throws Exception {
+    			new QvxWriter().writeQvxFile((RowInput)inputs[0], mSettings.getFileName(), mSettings);
+    		}
+    	};
+    }
+
     @Override
     protected void reset() {
     	// No additional action needs to be taken on reset
@@ -136,8 +166,8 @@ public class QvxWriterNodeModel extends NodeModel {
     	
     	CheckUtils.checkDestinationFile(fileName, overwriteFile);
     	
-    	if(!fileName.endsWith(".qvx")) {
-    		throw new InvalidSettingsException("Invalid file extension: \".qvx\" expected");
+    	if(!fileName.endsWith(".qvx") && !fileName.endsWith(".qvx.gz")) {
+    		throw new InvalidSettingsException("Invalid file extension: \".qvx\" or \".qvx.gz\" expected");
     	}
     }
 }
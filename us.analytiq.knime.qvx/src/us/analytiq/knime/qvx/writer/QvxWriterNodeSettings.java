@@ -46,6 +46,10 @@ public class QvxWriterNodeSettings {
 	static final String CFGKEY_OVERWRITE_POLICY = "overwritePolicy";
 	static final String CFGKEY_IS_BIG_ENDIAN = "isBigEndian";
 	static final String CFGKEY_USES_RECORD_SEPARATOR = "usesRecordSeparator";
+	static final String CFGKEY_COMPRESSION_LEVEL = "compressionLevel";
+	static final String CFGKEY_PARALLEL_ENCODING = "parallelEncoding";
+	
+	static final int DEFAULT_COMPRESSION_LEVEL = 6;
 	
 	static final String CFGKEY_CUSTOM_TABLE_NAME = "customTableName";
 	static final String CFGKEY_DEFAULT_TABLE_NAME = "defaultTableName";
@@ -60,6 +64,8 @@ public class QvxWriterNodeSettings {
 	private boolean isBigEndian;
 	private String overwritePolicy;
 	private boolean usesRecordSeparator;
+	private int compressionLevel; //Deflate level (1-9) of files whose name ends with ".gz"
+	private boolean parallelEncoding; //Encode the records on one thread per processor core
 	
 	private String customTableName;
 	private String defaultTableName;
@@ -80,6 +86,8 @@ public class QvxWriterNodeSettings {
 		tableName = "";
 		useDefaultTableName = true;
 		usesRecordSeparator = false;
+		compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+		parallelEncoding = false;
 		
 		//FieldAttrPanel settings
 		dataTableColumns = null;
@@ -96,6 +104,8 @@ public class QvxWriterNodeSettings {
 		tableName = settings.getString(CFGKEY_TABLE_NAME);
 		useDefaultTableName = settings.getBoolean(CFGKEY_USE_DEFAULT_TABLE_NAME);
 		usesRecordSeparator = settings.getBoolean(CFGKEY_USES_RECORD_SEPARATOR);
+		compressionLevel = settings.getInt(CFGKEY_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL);
+		parallelEncoding = settings.getBoolean(CFGKEY_PARALLEL_ENCODING, false);
 		
 		//FieldAttrPanel settings
 		dataTableColumns = settings.getStringArray(CFGKEY_DATA_TABLE_COLUMNS);
@@ -112,6 +122,8 @@ public class QvxWriterNodeSettings {
 		settings.addString(CFGKEY_TABLE_NAME, tableName);
 		settings.addBoolean(CFGKEY_USE_DEFAULT_TABLE_NAME, useDefaultTableName);
 		settings.addBoolean(CFGKEY_USES_RECORD_SEPARATOR, usesRecordSeparator);
+		settings.addInt(CFGKEY_COMPRESSION_LEVEL, compressionLevel);
+		settings.addBoolean(CFGKEY_PARALLEL_ENCODING, parallelEncoding);
 		
 		//FieldAttributesPanel settings
 		settings.addStringArray(CFGKEY_DATA_TABLE_COLUMNS, dataTableColumns);
@@ -151,6 +163,14 @@ public class QvxWriterNodeSettings {
 		return usesRecordSeparator;
 	}
 	
+	int getCompressionLevel() {
+		return compressionLevel;
+	}
+	
+	boolean getParallelEncoding() {
+		return parallelEncoding;
+	}
+	
 	String[] getDataTableColumns() {
 		return dataTableColumns;
 	}
@@ -195,6 +215,14 @@ public class QvxWriterNodeSettings {
 		this.usesRecordSeparator = usesSeparatorByte;
 	}
 	
+	void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+	
+	void setParallelEncoding(boolean parallelEncoding) {
+		this.parallelEncoding = parallelEncoding;
+	}
+	
 	void setDataTableColumns(String[] dataTableColumns) {
 		this.dataTableColumns = dataTableColumns;
 	}
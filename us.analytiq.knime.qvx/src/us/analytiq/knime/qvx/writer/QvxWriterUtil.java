@@ -2,6 +2,9 @@ package us.analytiq.knime.qvx.writer;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
@@ -14,6 +17,7 @@ public class QvxWriterUtil {
 
 	private static final long MILLISECONDS_PER_DAY = 86400000;
 	private static final double SECONDS_PER_DAY = 86400;
+	private static final long DAYS_BEFORE_EPOCH = 25569; //From 12/30/1899 to 1/1/1970
 	private static Date epoch;
 	private static Date startDate;
 	static {
@@ -46,12 +50,21 @@ public class QvxWriterUtil {
 	public static double dateToDaysSince(String day) {
 		
 		String[] parts = day.split("-");
-		int year = Integer.parseInt(parts[0]);
-		int month = Integer.parseInt(parts[1])-1;
-		int dayOfMonth= Integer.parseInt(parts[2]);
+		return dateToDaysSince(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+	}
+	
+	public static double dateToDaysSince(int year, int month, int dayOfMonth) {
+		
+		//"month" is 1 for January
+		
+		if (year >= 1900 && month >= 1 && month <= 12 && dayOfMonth >= 1 &&
+				dayOfMonth <= Month.of(month).length(Year.isLeap(year))) {
+			//Dates of the Gregorian calendar are counted without a Calendar object
+			return LocalDate.of(year, month, dayOfMonth).toEpochDay() + DAYS_BEFORE_EPOCH;
+		}
 		
 		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("EDT"));
-		cal.set(Calendar.MONTH, month);
+		cal.set(Calendar.MONTH, month - 1);
 		cal.set(Calendar.DAY_OF_MONTH, dayOfMonth);
 		cal.set(Calendar.YEAR, year);
 		resolveDateOffset(cal);
@@ -74,6 +87,11 @@ public class QvxWriterUtil {
 		
 		return (hours*3600 + minutes*60 + seconds)/SECONDS_PER_DAY;
 	}
+	
+	public static double timeToDaysSince(int hours, int minutes, double seconds) {
+		
+		return (hours*3600.0 + minutes*60.0 + seconds)/SECONDS_PER_DAY;
+	}
 		
 	public static String removeSuffix(String s, String suffix) {
 		if (s.endsWith(suffix)) {